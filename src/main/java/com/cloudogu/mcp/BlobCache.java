@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.OptionalLong;
+
+/**
+ * Caches the content of small files in front of the {@link sonia.scm.repository.api.CatCommandBuilder}. As the
+ * content of a file at a resolved revision never changes, the entries never have to be invalidated. The cache is
+ * bounded by the overall size of the cached content; larger files are not cached at all but streamed from the
+ * repository.
+ */
+@Slf4j
+@Singleton
+class BlobCache {
+
+  static final int MAXIMUM_BLOB_SIZE = 1024 * 1024;
+  private static final long MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+  private final Cache<BlobKey, byte[]> cache = CacheBuilder.newBuilder()
+    .maximumWeight(MAXIMUM_WEIGHT)
+    .weigher((BlobKey key, byte[] content) -> content.length)
+    .recordStats()
+    .build();
+
+  /**
+   * Opens a stream for the content of the file. For cached files, this will be a {@link ByteArrayInputStream}. Files
+   * that are known to be too large by their length are streamed from the repository right away; only if the length is
+   * unknown, the start of the file is read to decide whether it can be cached.
+   */
+  InputStream openStream(BlobKey key, OptionalLong length, RepositoryService repositoryService) throws IOException {
+    if (length.isPresent() && length.getAsLong() > MAXIMUM_BLOB_SIZE) {
+      log.trace("file {} is too large to be cached", key);
+      return repositoryService.getCatCommand().setRevision(key.revision()).getStream(key.path());
+    }
+    byte[] cachedContent = cache.getIfPresent(key);
+    if (cachedContent != null) {
+      log.trace("cache hit for {}; {}", key, cache.stats());
+      return new ByteArrayInputStream(cachedContent);
+    }
+    log.trace("cache miss for {}; {}", key, cache.stats());
+
+    InputStream inputStream = repositoryService.getCatCommand().setRevision(key.revision()).getStream(key.path());
+    byte[] head;
+    try {
+      head = inputStream.readNBytes(MAXIMUM_BLOB_SIZE + 1);
+    } catch (IOException | RuntimeException e) {
+      inputStream.close();
+      throw e;
+    }
+    if (head.length > MAXIMUM_BLOB_SIZE) {
+      log.trace("file {} is too large to be cached", key);
+      return new SequenceInputStream(new ByteArrayInputStream(head), inputStream);
+    }
+    inputStream.close();
+    cache.put(key, head);
+    return new ByteArrayInputStream(head);
+  }
+
+  CacheStats getStatistics() {
+    return cache.stats();
+  }
+}
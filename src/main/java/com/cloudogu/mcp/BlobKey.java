@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+/**
+ * Identifies the content of a file in a repository. Because the revision is a resolved revision and not a branch
+ * name, the content for a key never changes and therefore can be cached without invalidation.
+ *
+ * @param repositoryId The id of the repository.
+ * @param revision     The resolved revision (e.g. the commit id).
+ * @param path         The path of the file without leading slash.
+ */
+record BlobKey(String repositoryId, String revision, String path) {
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads lines like {@link java.io.BufferedReader#readLine()}, but only keeps the characters inside a
+ * {@link LineWindow} in memory. So even lines with several megabytes (like in minified files) can be read with
+ * bounded memory. Lines are terminated by <code>\n</code>, <code>\r</code>, or <code>\r\n</code>.
+ */
+class BoundedLineReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Reader reader;
+  private final LineWindow window;
+  private final char[] buffer = new char[BUFFER_SIZE];
+
+  private int position;
+  private int limit;
+  private boolean skipLineFeed;
+
+  BoundedLineReader(InputStream inputStream, LineWindow window) {
+    this(new InputStreamReader(inputStream, StandardCharsets.UTF_8), window);
+  }
+
+  BoundedLineReader(Reader reader, LineWindow window) {
+    this.reader = reader;
+    this.window = window;
+  }
+
+  /**
+   * Reads the next line and applies the window.
+   *
+   * @return The next line or <code>null</code>, if the end of the stream has been reached.
+   */
+  String readLine() throws IOException {
+    StringBuilder visiblePart = new StringBuilder(Math.min(window.maxLength(), 256));
+    long lineLength = scanLine(visiblePart);
+    if (lineLength < 0) {
+      return null;
+    }
+    return window.format(visiblePart, lineLength);
+  }
+
+  /**
+   * Skips the next line without keeping any of its characters.
+   *
+   * @return <code>false</code>, if there was no further line.
+   */
+  boolean skipLine() throws IOException {
+    return scanLine(null) >= 0;
+  }
+
+  private long scanLine(StringBuilder visiblePart) throws IOException {
+    long lineLength = 0;
+    boolean lineStarted = false;
+    while (true) {
+      if (position >= limit && !fill()) {
+        return lineStarted ? lineLength : -1;
+      }
+      char c = buffer[position++];
+      if (skipLineFeed) {
+        skipLineFeed = false;
+        if (c == '\n') {
+          continue;
+        }
+      }
+      if (c == '\n') {
+        return lineLength;
+      }
+      if (c == '\r') {
+        skipLineFeed = true;
+        return lineLength;
+      }
+      lineStarted = true;
+      lineLength++;
+      if (visiblePart != null && window.contains(lineLength)) {
+        visiblePart.append(c);
+      }
+    }
+  }
+
+  private boolean fill() throws IOException {
+    int read = reader.read(buffer, 0, buffer.length);
+    if (read <= 0) {
+      return false;
+    }
+    position = 0;
+    limit = read;
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
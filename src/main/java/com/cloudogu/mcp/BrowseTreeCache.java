@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.inject.Singleton;
+import sonia.scm.repository.FileObject;
+
+import java.util.Optional;
+
+/**
+ * Caches file trees from the browse command for resolved revisions. Requests for a path can be answered by a cached
+ * tree for this path or by a complete (not truncated) recursive tree for any of its parents. Truncated trees are kept
+ * together with the limit they have been read with, so that they can answer requests with the same or a lower limit.
+ */
+@Singleton
+class BrowseTreeCache {
+
+  private static final long MAXIMUM_WEIGHT = 32L * 1024 * 1024;
+  private static final int NODE_OVERHEAD = 96;
+
+  private final Cache<TreeKey, CachedTree> cache = CacheBuilder.newBuilder()
+    .maximumWeight(MAXIMUM_WEIGHT)
+    .weigher((TreeKey key, CachedTree cachedTree) -> weigh(cachedTree.tree()))
+    .build();
+
+  /**
+   * Finds a complete tree for the path.
+   */
+  Optional<FileObject> find(String repositoryId, String revision, String path, boolean recursive) {
+    return find(repositoryId, revision, path, recursive, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Finds a tree for the path, that is either complete or has been read with at least the given limit.
+   */
+  Optional<FileObject> find(String repositoryId, String revision, String path, boolean recursive, int limit) {
+    String normalizedPath = RepositoryTree.normalize(path);
+    CachedTree exactMatch = cache.getIfPresent(new TreeKey(repositoryId, revision, normalizedPath, recursive));
+    if (exactMatch != null && exactMatch.satisfies(limit)) {
+      return Optional.of(exactMatch.tree());
+    }
+    String parentPath = normalizedPath;
+    while (!parentPath.isEmpty()) {
+      parentPath = parentPath.contains("/") ? parentPath.substring(0, parentPath.lastIndexOf('/')) : "";
+      CachedTree parent = cache.getIfPresent(new TreeKey(repositoryId, revision, parentPath, true));
+      if (parent != null && !parent.tree().isTruncated()) {
+        return findChild(parent.tree(), normalizedPath.substring(parentPath.isEmpty() ? 0 : parentPath.length() + 1));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Caches the tree, if it is complete.
+   */
+  void put(String repositoryId, String revision, String path, boolean recursive, FileObject tree) {
+    if (!tree.isTruncated()) {
+      put(repositoryId, revision, path, recursive, Integer.MAX_VALUE, tree);
+    }
+  }
+
+  /**
+   * Caches the tree, that has been read with the given limit. A cached tree for the same path, that can answer more
+   * requests (because it is complete or has been read with a higher limit), is kept.
+   */
+  void put(String repositoryId, String revision, String path, boolean recursive, int limit, FileObject tree) {
+    TreeKey key = new TreeKey(repositoryId, revision, RepositoryTree.normalize(path), recursive);
+    CachedTree cachedTree = new CachedTree(tree, limit);
+    cache.asMap().merge(key, cachedTree, (existing, added) -> existing.satisfies(added.effectiveLimit()) ? existing : added);
+  }
+
+  /**
+   * Finds the entry with the given path relative to the given directory.
+   */
+  static Optional<FileObject> findChild(FileObject parent, String relativePath) {
+    if (relativePath.isEmpty()) {
+      return Optional.of(parent);
+    }
+    FileObject current = parent;
+    for (String name : Splitter.on('/').split(relativePath)) {
+      current = current.getChildren()
+        .stream()
+        .filter(child -> name.equals(child.getName()))
+        .findFirst()
+        .orElse(null);
+      if (current == null) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(current);
+  }
+
+  private static int weigh(FileObject tree) {
+    int weight = NODE_OVERHEAD + 2 * (length(tree.getName()) + length(tree.getPath()));
+    for (FileObject child : tree.getChildren()) {
+      weight += weigh(child);
+    }
+    return weight;
+  }
+
+  private static int length(String value) {
+    return value == null ? 0 : value.length();
+  }
+
+  private record CachedTree(FileObject tree, int limit) {
+
+    /**
+     * Complete trees can answer requests with any limit.
+     */
+    int effectiveLimit() {
+      return tree.isTruncated() ? limit : Integer.MAX_VALUE;
+    }
+
+    boolean satisfies(int requestedLimit) {
+      return effectiveLimit() >= requestedLimit;
+    }
+  }
+
+  private record TreeKey(String repositoryId, String revision, String path, boolean recursive) {
+  }
+}
@@ -16,72 +16,415 @@
 
 package com.cloudogu.mcp;
 
+import lombok.extern.slf4j.Slf4j;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.api.LogCommandBuilder;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
+/**
+ * Streams the changesets of a log chunk by chunk. Whenever possible, the next chunk is requested starting with the
+ * parent of the last changeset seen so far instead of with an offset from the original start. This only spares the
+ * backend skipping the changesets before the offset; it still walks the whole history with every request, because
+ * the log command of SCM-Manager counts all changesets for the total, so the cost of each chunk grows with the size
+ * of the history either way. Starting with the parent is only possible, as long as this parent is the only
+ * changeset, that has been referenced but not been visited yet; otherwise (for example, when a merge has been seen,
+ * whose parents have not all been visited) the next chunk is requested with an offset from the original start.
+ * <p>
+ * The first chunk has the size of the requested limit. The following chunks grow geometrically, depending on the
+ * ratio of matching changesets seen so far. Unless the current chunk will probably contain enough matches, the next
+ * chunk is requested in the background, while the current chunk is filtered. As the thread pool is shared, the
+ * background request may not have been started when its result is needed; then it is fetched directly instead.
+ * <p>
+ * If a lower bound for the dates is set with {@link #stopBefore(Instant, Duration)}, the log is stopped as soon as
+ * the changesets are older than this bound.
+ * <p>
+ * With {@link #firstParentOnly()}, only the first parents are followed. As the log itself contains all ancestors,
+ * every chunk is started with the next first parent, so that the changesets of merged branches are only read as far
+ * as they are part of the current chunk.
+ */
+@Slf4j
 class ChangesetStreamer {
+
+  private static final int MINIMUM_CHUNK_SIZE = 20;
+  private static final int MAXIMUM_CHUNK_SIZE = 1000;
+
+  /**
+   * Marks the overall count of a log as unknown, because the backend did not report it.
+   */
+  static final int UNKNOWN_COUNT = -1;
+
   private final LogCommandBuilder logCommand;
-  private final int internalChunkSize; // How many raw commits to fetch at once
+  private final String startChangeset;
+  private final SubjectAwareExecutor executor;
+  private final int minimumChunkSize;
+  private final int maximumChunkSize;
+  private boolean continued = false;
+  private Instant lowerDateBound;
+  private boolean prunedHistory = false;
+  private boolean firstParentOnly = false;
+
+  public ChangesetStreamer(LogCommandBuilder logCommand, String startChangeset, SubjectAwareExecutor executor) {
+    this(logCommand, startChangeset, executor, MINIMUM_CHUNK_SIZE, MAXIMUM_CHUNK_SIZE);
+  }
 
-  public ChangesetStreamer(LogCommandBuilder logCommand, int internalChunkSize) {
+  ChangesetStreamer(LogCommandBuilder logCommand, String startChangeset, SubjectAwareExecutor executor, int minimumChunkSize, int maximumChunkSize) {
     this.logCommand = logCommand;
-    this.internalChunkSize = internalChunkSize;
+    this.startChangeset = startChangeset;
+    this.executor = executor;
+    this.minimumChunkSize = minimumChunkSize;
+    this.maximumChunkSize = maximumChunkSize;
+  }
+
+  /**
+   * Stops the log, when the changesets are older than the given date (reduced by the tolerance for clock skews).
+   * As changesets on merged branches may be older than their children, the log is only stopped at an old changeset,
+   * when there is at most one parent that has been referenced but not been visited yet.
+   */
+  ChangesetStreamer stopBefore(Instant date, Duration clockSkewTolerance) {
+    this.lowerDateBound = date.minus(clockSkewTolerance);
+    return this;
+  }
+
+  /**
+   * Marks the log as pruned (for example, because it is restricted to a path), so that the parents of the changesets
+   * are not part of the log. In this case, the log is always continued with an offset, and it is stopped at the first
+   * changeset outside the date window.
+   */
+  ChangesetStreamer prunedHistory() {
+    this.prunedHistory = true;
+    return this;
+  }
+
+  /**
+   * Follows only the first parents of merges (like <code>git log --first-parent</code>). The overall count is
+   * unknown in this case, unless the first parents have been read up to the initial commit. This must not be combined
+   * with {@link #prunedHistory()}.
+   */
+  ChangesetStreamer firstParentOnly() {
+    this.firstParentOnly = true;
+    return this;
   }
 
   FilterResult fetchFiltered(Predicate<Changeset> filter, int limit) throws IOException {
+    return fetchChunkFiltered(chunk -> chunk.stream().filter(filter).toList(), limit);
+  }
+
+  /**
+   * Like {@link #fetchFiltered(Predicate, int)}, but the filter is called once for each chunk read from the log, so
+   * that the matches can be computed for multiple changesets at once.
+   */
+  FilterResult fetchChunkFiltered(ChunkFilter filter, int limit) throws IOException {
     List<Changeset> filteredMatches = new ArrayList<>();
-    int currentStart = 0;
+    HistoryCursor cursor = new HistoryCursor(!prunedHistory, firstParentOnly);
     int totalRawSearched = 0;
-    int overallCount = -1;
+    int overallCount = UNKNOWN_COUNT;
+    boolean overallCountReported = false;
     boolean exhausted = false;
+    boolean stoppedAtDateWindow = false;
 
-    while (filteredMatches.size() < limit && !exhausted) {
-      ChangesetPagingResult result = logCommand
-        .setPagingStart(currentStart)
-        .setPagingLimit(internalChunkSize)
-        .getChangesets();
+    ChunkRequest request = createRequest(cursor, Math.min(limit, maximumChunkSize));
+    ChangesetPagingResult result = fetch(request);
+    ReadAhead nextResult = null;
+    try {
+      while (true) {
+        List<Changeset> chunk = result.getChangesets();
+        if (!overallCountReported) {
+          overallCountReported = true;
+          // the backend counts all ancestors, not only the first parents
+          overallCount = firstParentOnly ? UNKNOWN_COUNT : Math.max(result.getTotal(), UNKNOWN_COUNT);
+        }
 
-      List<Changeset> chunk = result.getChangesets();
-      if (overallCount < 0) {
-        overallCount = result.getTotal();
-      }
+        if (chunk.isEmpty()) {
+          exhausted = true;
+          break;
+        }
 
-      if (chunk.isEmpty()) {
-        exhausted = true;
-        break;
-      }
+        List<Changeset> newChangesets = new ArrayList<>();
+        boolean outsideDateWindow = false;
+        for (Changeset changeset : chunk) {
+          if (cursor.visit(changeset)) {
+            if (isBeforeDateWindow(changeset) && cursor.getPendingParentCount() <= 1) {
+              log.trace("stopping log at changeset {} outside of the date window", changeset.getId());
+              outsideDateWindow = true;
+              break;
+            }
+            newChangesets.add(changeset);
+          }
+        }
+        stoppedAtDateWindow = outsideDateWindow;
+        boolean lastChunk = outsideDateWindow || chunk.size() < request.size() || cursor.isAtInitialCommit();
+        ChunkRequest nextRequest = null;
+        if (!lastChunk && !isLikelySufficient(newChangesets.size(), filteredMatches.size(), totalRawSearched, limit)) {
+          nextRequest = createRequest(cursor, computeNextChunkSize(request.size(), filteredMatches.size(), totalRawSearched, limit));
+          nextResult = new ReadAhead(nextRequest);
+        }
+
+        Set<String> chunkMatches = filter.filter(newChangesets)
+          .stream()
+          .map(Changeset::getId)
+          .collect(Collectors.toSet());
+        for (Changeset changeset : newChangesets) {
+          totalRawSearched++;
+          if (chunkMatches.contains(changeset.getId())) {
+            filteredMatches.add(changeset);
+          }
 
-      for (Changeset changeset : chunk) {
-        totalRawSearched++;
-        if (filter.test(changeset)) {
-          filteredMatches.add(changeset);
+          if (filteredMatches.size() >= limit) {
+            break;
+          }
         }
 
         if (filteredMatches.size() >= limit) {
           break;
         }
+        if (lastChunk) {
+          exhausted = true;
+          break;
+        }
+
+        if (nextResult == null) {
+          request = createRequest(cursor, computeNextChunkSize(request.size(), filteredMatches.size(), totalRawSearched, limit));
+          result = fetch(request);
+        } else {
+          result = nextResult.get();
+          nextResult = null;
+          request = nextRequest;
+        }
+      }
+    } finally {
+      if (nextResult != null) {
+        nextResult.awaitQuietly();
+      }
+    }
+
+    if (overallCount == UNKNOWN_COUNT && exhausted && !stoppedAtDateWindow) {
+      // the complete log has been visited, so we know the count without the help of the backend
+      overallCount = cursor.getVisitedCount();
+    }
+    return new FilterResult(filteredMatches, totalRawSearched, exhausted, overallCount, cursor.getLast());
+  }
+
+  private boolean isBeforeDateWindow(Changeset changeset) {
+    return lowerDateBound != null && changeset.getDate() != null && Instant.ofEpochMilli(changeset.getDate()).isBefore(lowerDateBound);
+  }
+
+  /**
+   * The next chunk is not fetched in advance, if the current chunk will probably contain enough matches. Without
+   * any matches so far, all changesets are expected to match, so that unfiltered requests do not fetch more
+   * changesets than needed.
+   */
+  private static boolean isLikelySufficient(int chunkSize, int matches, int searched, int limit) {
+    double expectedRatio = searched == 0 ? 1 : (double) matches / searched;
+    return matches + chunkSize * expectedRatio >= limit;
+  }
+
+  /**
+   * The size of the following chunks is estimated from the ratio of matches so far, but it will at most double with
+   * each chunk.
+   */
+  private int computeNextChunkSize(int currentSize, int matches, int searched, int limit) {
+    int doubledSize = currentSize * 2;
+    if (matches == 0 || searched == 0) {
+      return clamp(doubledSize);
+    }
+    long estimatedSize = (long) Math.ceil((double) (limit - matches) * searched / matches);
+    return clamp((int) Math.min(doubledSize, estimatedSize));
+  }
+
+  private int clamp(int chunkSize) {
+    return Math.max(minimumChunkSize, Math.min(maximumChunkSize, chunkSize));
+  }
+
+  private ChunkRequest createRequest(HistoryCursor cursor, int size) {
+    Optional<String> continuation = cursor.getContinuation();
+    return continuation
+      .map(parent -> new ChunkRequest(parent, 0, size))
+      .orElseGet(() -> new ChunkRequest(null, cursor.getVisitedCount(), size));
+  }
+
+  private ChangesetPagingResult fetch(ChunkRequest request) throws IOException {
+    if (request.continuation() != null) {
+      log.trace("continuing log with changeset {}", request.continuation());
+      logCommand
+        .setStartChangeset(request.continuation())
+        .setPagingStart(0);
+      continued = true;
+    } else {
+      if (continued) {
+        // the offset is relative to the original start
+        logCommand.setStartChangeset(startChangeset);
+        continued = false;
       }
+      logCommand.setPagingStart(request.offset());
+    }
+    return logCommand
+      .setPagingLimit(request.size())
+      .getChangesets();
+  }
+
+  /**
+   * A chunk requested in the background. Whoever claims the request first fetches the chunk: either the task in the
+   * thread pool or the thread waiting for the result, so that this never waits for a task that has not been started.
+   */
+  private class ReadAhead {
+    private final ChunkRequest request;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final Future<ChangesetPagingResult> future;
 
-      currentStart += chunk.size();
+    ReadAhead(ChunkRequest request) {
+      this.request = request;
+      this.future = executor.submit(() -> claimed.compareAndSet(false, true) ? fetch(request) : null);
+    }
+
+    ChangesetPagingResult get() throws IOException {
+      if (claimed.compareAndSet(false, true)) {
+        log.trace("background request has not been started, fetching chunk directly");
+        future.cancel(false);
+        return fetch(request);
+      }
+      return SubjectAwareExecutor.await(future);
+    }
 
-      if (chunk.size() < internalChunkSize) {
-        exhausted = true;
+    /**
+     * A request running in the background is not interrupted, but we have to wait for it, because the log command
+     * must not be used after the repository service has been closed.
+     */
+    void awaitQuietly() {
+      if (claimed.compareAndSet(false, true)) {
+        future.cancel(false);
+        return;
+      }
+      try {
+        SubjectAwareExecutor.await(future);
+      } catch (IOException | RuntimeException e) {
+        log.debug("prefetching changesets failed", e);
       }
     }
+  }
 
-    return new FilterResult(filteredMatches, totalRawSearched, exhausted, overallCount);
+  @FunctionalInterface
+  interface ChunkFilter {
+
+    /**
+     * Returns the changesets of the given chunk, that match the filter.
+     */
+    List<Changeset> filter(List<Changeset> chunk) throws IOException;
   }
 
+  /**
+   * @param overallCount  the number of changesets in the log as reported by the backend with the first chunk, or
+   *                      {@link #UNKNOWN_COUNT}, if the backend did not report it and the log has not been read
+   *                      completely
+   * @param lastChangeset the last changeset of the log, that has been read (this does not have to be a match)
+   */
   record FilterResult(
     List<Changeset> matches,
     int totalSearched,
     boolean endOfHistory,
-    int overallCount
-  ) {}
+    int overallCount,
+    Changeset lastChangeset
+  ) {
+
+    /**
+     * Combines this result with the result of a log, that continues this one.
+     */
+    FilterResult append(FilterResult continuation) {
+      List<Changeset> allMatches = new ArrayList<>(matches);
+      allMatches.addAll(continuation.matches());
+      return new FilterResult(
+        allMatches,
+        totalSearched + continuation.totalSearched(),
+        continuation.endOfHistory(),
+        overallCount == UNKNOWN_COUNT || continuation.overallCount() == UNKNOWN_COUNT
+          ? UNKNOWN_COUNT
+          : overallCount + continuation.overallCount(),
+        continuation.lastChangeset() == null ? lastChangeset : continuation.lastChangeset()
+      );
+    }
+  }
+
+  /**
+   * @param continuation the changeset to continue the log with, or <code>null</code> to use the offset from the
+   *                     original start
+   */
+  private record ChunkRequest(String continuation, int offset, int size) {
+  }
+
+  private static class HistoryCursor {
+    private final Set<String> visited = new HashSet<>();
+    private final Set<String> pendingParents = new HashSet<>();
+    private final boolean trackParents;
+    private final boolean firstParentOnly;
+    private Changeset last;
+
+    HistoryCursor(boolean trackParents, boolean firstParentOnly) {
+      this.trackParents = trackParents;
+      this.firstParentOnly = firstParentOnly;
+    }
+
+    /**
+     * Returns <code>false</code>, if the changeset has been visited before (or, when only first parents are
+     * followed, if it is no first parent of the changesets visited so far).
+     */
+    boolean visit(Changeset changeset) {
+      if (firstParentOnly && last != null && !pendingParents.contains(changeset.getId())) {
+        return false;
+      }
+      if (!visited.add(changeset.getId())) {
+        return false;
+      }
+      pendingParents.remove(changeset.getId());
+      if (trackParents && changeset.getParents() != null) {
+        changeset.getParents().stream()
+          .limit(firstParentOnly ? 1 : Long.MAX_VALUE)
+          .filter(parent -> !visited.contains(parent))
+          .forEach(pendingParents::add);
+      }
+      last = changeset;
+      return true;
+    }
+
+    /**
+     * Returns <code>true</code>, if only first parents are followed and the last one has no parent.
+     */
+    boolean isAtInitialCommit() {
+      return firstParentOnly && last != null && pendingParents.isEmpty();
+    }
+
+    int getPendingParentCount() {
+      return pendingParents.size();
+    }
+
+    int getVisitedCount() {
+      return visited.size();
+    }
+
+    Changeset getLast() {
+      return last;
+    }
+
+    Optional<String> getContinuation() {
+      if (firstParentOnly) {
+        return pendingParents.stream().findFirst();
+      }
+      if (!trackParents || last == null || last.getParents() == null || last.getParents().size() != 1 || pendingParents.size() != 1) {
+        return Optional.empty();
+      }
+      String parent = last.getParents().get(0);
+      return pendingParents.contains(parent) ? Optional.of(parent) : Optional.empty();
+    }
+  }
 }
@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.base.Strings;
+import sonia.scm.repository.Changeset;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A filter for commits, compiled from the filter fields of {@link ListCommitsInput} and its filter expression. The
+ * expression consists of terms, that can be combined with <code>AND</code> (or simply a space), <code>OR</code>,
+ * <code>NOT</code> (or a leading <code>-</code>), and parentheses. A term is either a plain value (matching the
+ * message or the author) or a value qualified with a field like <code>author:dent</code>. Values can be quoted
+ * (<code>message:"fix drive"</code>) or regular expressions (<code>message:/fix(ed)?/</code>). Plain values are
+ * matched case insensitive as substrings.
+ * <p>
+ * The parts of the filter, that can be handled by the log itself, are provided as {@link #getPath()} and
+ * {@link #getLowerDateBound()}. This is only possible for terms, that are not combined with <code>OR</code> or
+ * <code>NOT</code>.
+ */
+final class CommitFilter {
+
+  private static final Set<String> FIELDS = Set.of("author", "message", "id", "before", "after", "path");
+
+  private final Node root;
+  private final String path;
+  private final Instant lowerDateBound;
+
+  private CommitFilter(Node root, String path, Instant lowerDateBound) {
+    this.root = root;
+    this.path = path;
+    this.lowerDateBound = lowerDateBound;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the filter expression is invalid; the message describes the problem
+   */
+  static CommitFilter compile(ListCommitsInput input) {
+    List<Node> conjuncts = new ArrayList<>();
+    if (!Strings.isNullOrEmpty(input.getAuthorFilter())) {
+      conjuncts.add(new TextTerm(Field.AUTHOR, input.getAuthorFilter()));
+    }
+    if (!Strings.isNullOrEmpty(input.getCommitMessageFilter())) {
+      conjuncts.add(new TextTerm(Field.MESSAGE, input.getCommitMessageFilter()));
+    }
+    if (input.getCommittedBefore() != null) {
+      conjuncts.add(new DateTerm(input.getCommittedBefore(), true));
+    }
+    if (input.getCommittedAfter() != null) {
+      conjuncts.add(new DateTerm(input.getCommittedAfter(), false));
+    }
+    if (input.getMerges() == ListCommitsInput.Merges.exclude || input.getMerges() == ListCommitsInput.Merges.only) {
+      conjuncts.add(new MergeTerm(input.getMerges() == ListCommitsInput.Merges.only));
+    }
+    if (!RepositoryTree.normalize(input.getPath()).isEmpty()) {
+      conjuncts.add(new PathTerm(RepositoryTree.normalize(input.getPath())));
+    }
+    if (!Strings.isNullOrEmpty(input.getFilter())) {
+      Node expression = new Parser(input.getFilter()).parse();
+      if (expression instanceof And and) {
+        conjuncts.addAll(and.nodes());
+      } else {
+        conjuncts.add(expression);
+      }
+    }
+
+    String path = null;
+    Instant lowerDateBound = null;
+    List<Node> predicates = new ArrayList<>();
+    for (Node conjunct : conjuncts) {
+      if (conjunct instanceof PathTerm pathTerm) {
+        if (path != null && !path.equals(pathTerm.path())) {
+          throw new IllegalArgumentException("Only one path can be given.");
+        }
+        path = pathTerm.path();
+      } else {
+        if (conjunct instanceof DateTerm dateTerm && !dateTerm.before()
+          && (lowerDateBound == null || dateTerm.date().isAfter(lowerDateBound))) {
+          lowerDateBound = dateTerm.date();
+        }
+        predicates.add(conjunct);
+      }
+    }
+    predicates.forEach(CommitFilter::rejectNestedPaths);
+    return new CommitFilter(predicates.isEmpty() ? null : new And(predicates), path, lowerDateBound);
+  }
+
+  private static void rejectNestedPaths(Node node) {
+    if (node instanceof PathTerm) {
+      throw new IllegalArgumentException("The field `path` can only be combined with AND.");
+    }
+    node.children().forEach(CommitFilter::rejectNestedPaths);
+  }
+
+  /**
+   * Returns <code>true</code>, if there are filters, that have to be checked for each commit.
+   */
+  boolean hasPredicates() {
+    return root != null;
+  }
+
+  Optional<String> getPath() {
+    return Optional.ofNullable(path);
+  }
+
+  /**
+   * Commits before this date will never match the filter.
+   */
+  Optional<Instant> getLowerDateBound() {
+    return Optional.ofNullable(lowerDateBound);
+  }
+
+  boolean matches(Changeset changeset) {
+    return matches(
+      changeset.getId(),
+      String.valueOf(changeset.getAuthor()),
+      Strings.nullToEmpty(changeset.getDescription()),
+      changeset.getDate() == null ? 0 : changeset.getDate(),
+      changeset.getParents() == null ? 0 : changeset.getParents().size()
+    );
+  }
+
+  boolean matches(CommitIndex index, int row) {
+    return matches(index.getId(row), index.getAuthor(row), index.getMessage(row), index.getDate(row), index.getParentCount(row));
+  }
+
+  private boolean matches(String id, String author, String message, long date, int parentCount) {
+    return root == null || root.matches(new Commit(id, author, message, date, parentCount));
+  }
+
+  private record Commit(String id, String author, String message, long date, int parentCount) {
+  }
+
+  private enum Field {
+    AUTHOR, MESSAGE, ID;
+
+    String of(Commit commit) {
+      return switch (this) {
+        case AUTHOR -> commit.author();
+        case MESSAGE -> commit.message();
+        case ID -> commit.id();
+      };
+    }
+  }
+
+  private sealed interface Node permits And, Or, Not, TextTerm, RegexTerm, DateTerm, MergeTerm, PathTerm {
+
+    boolean matches(Commit commit);
+
+    default List<Node> children() {
+      return List.of();
+    }
+  }
+
+  private record And(List<Node> nodes) implements Node {
+    @Override
+    public boolean matches(Commit commit) {
+      for (Node node : nodes) {
+        if (!node.matches(commit)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public List<Node> children() {
+      return nodes;
+    }
+  }
+
+  private record Or(List<Node> nodes) implements Node {
+    @Override
+    public boolean matches(Commit commit) {
+      for (Node node : nodes) {
+        if (node.matches(commit)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public List<Node> children() {
+      return nodes;
+    }
+  }
+
+  private record Not(Node node) implements Node {
+    @Override
+    public boolean matches(Commit commit) {
+      return !node.matches(commit);
+    }
+
+    @Override
+    public List<Node> children() {
+      return List.of(node);
+    }
+  }
+
+  /**
+   * Matches a substring ignoring the case. Without a field, the message and the author are checked.
+   */
+  private record TextTerm(Field field, String needle) implements Node {
+
+    TextTerm {
+      needle = needle.toLowerCase(Locale.ENGLISH);
+    }
+
+    @Override
+    public boolean matches(Commit commit) {
+      if (field == null) {
+        return contains(commit.message()) || contains(commit.author());
+      }
+      return contains(field.of(commit));
+    }
+
+    private boolean contains(String value) {
+      int lastStart = value.length() - needle.length();
+      for (int i = 0; i <= lastStart; ++i) {
+        if (value.regionMatches(true, i, needle, 0, needle.length())) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private record RegexTerm(Field field, Pattern pattern) implements Node {
+    @Override
+    public boolean matches(Commit commit) {
+      if (field == null) {
+        return pattern.matcher(commit.message()).find() || pattern.matcher(commit.author()).find();
+      }
+      return pattern.matcher(field.of(commit)).find();
+    }
+  }
+
+  private record DateTerm(Instant date, boolean before) implements Node {
+    @Override
+    public boolean matches(Commit commit) {
+      Instant commitDate = Instant.ofEpochMilli(commit.date());
+      return before ? commitDate.isBefore(date) : commitDate.isAfter(date);
+    }
+  }
+
+  private record MergeTerm(boolean merge) implements Node {
+    @Override
+    public boolean matches(Commit commit) {
+      return (commit.parentCount() > 1) == merge;
+    }
+  }
+
+  /**
+   * Paths are no predicates but are handled by the log command.
+   */
+  private record PathTerm(String path) implements Node {
+    @Override
+    public boolean matches(Commit commit) {
+      throw new IllegalStateException("paths have to be handled by the log command");
+    }
+  }
+
+  /**
+   * A recursive descent parser for the expression:
+   * <pre>
+   * or    = and ("OR" and)*
+   * and   = unary (["AND"] unary)*
+   * unary = ("NOT" | "-") unary | "(" or ")" | term
+   * term  = [field ":"] (word | "\"" text "\"" | "/" regex "/")
+   * </pre>
+   * Values for <code>path</code> are never regular expressions, so that they can start with a slash. A word followed by
+   * a colon is only taken as a field, if it is one of the known fields, so that values like <code>fix:</code> or
+   * <code>http://host</code> are plain text.
+   */
+  private static class Parser {
+
+    private final String expression;
+    private int position = 0;
+
+    Parser(String expression) {
+      this.expression = expression;
+    }
+
+    Node parse() {
+      Node node = parseOr();
+      skipWhitespace();
+      if (position < expression.length()) {
+        throw error("Unexpected `" + expression.charAt(position) + "`");
+      }
+      return node;
+    }
+
+    private Node parseOr() {
+      List<Node> nodes = new ArrayList<>();
+      nodes.add(parseAnd());
+      while (acceptKeyword("OR")) {
+        nodes.add(parseAnd());
+      }
+      return nodes.size() == 1 ? nodes.get(0) : new Or(nodes);
+    }
+
+    private Node parseAnd() {
+      List<Node> nodes = new ArrayList<>();
+      nodes.add(parseUnary());
+      while (true) {
+        if (acceptKeyword("AND")) {
+          nodes.add(parseUnary());
+        } else if (startsUnary()) {
+          nodes.add(parseUnary());
+        } else {
+          break;
+        }
+      }
+      return nodes.size() == 1 ? nodes.get(0) : new And(nodes);
+    }
+
+    private Node parseUnary() {
+      skipWhitespace();
+      if (acceptKeyword("NOT")) {
+        return new Not(parseUnary());
+      }
+      if (accept('-')) {
+        return new Not(parseUnary());
+      }
+      if (accept('(')) {
+        Node node = parseOr();
+        skipWhitespace();
+        if (!accept(')')) {
+          throw error("Missing `)`");
+        }
+        return node;
+      }
+      return parseTerm();
+    }
+
+    private Node parseTerm() {
+      skipWhitespace();
+      if (position >= expression.length()) {
+        throw error("Missing term at the end");
+      }
+      String fieldName = null;
+      int colon = expression.indexOf(':', position);
+      if (colon > position && FIELDS.contains(expression.substring(position, colon).toLowerCase(Locale.ENGLISH))) {
+        fieldName = expression.substring(position, colon).toLowerCase(Locale.ENGLISH);
+        position = colon + 1;
+      }
+
+      if (peek() == '/' && !"path".equals(fieldName)) {
+        String regex = readDelimited('/');
+        return new RegexTerm(textField(fieldName), compileRegex(regex));
+      }
+      String value = peek() == '"' ? readDelimited('"') : readWord();
+      if (value.isEmpty()) {
+        throw error("Missing value");
+      }
+      if (fieldName == null) {
+        return new TextTerm(null, value);
+      }
+      return switch (fieldName) {
+        case "before" -> new DateTerm(parseDate(value), true);
+        case "after" -> new DateTerm(parseDate(value), false);
+        case "path" -> new PathTerm(RepositoryTree.normalize(value));
+        default -> new TextTerm(textField(fieldName), value);
+      };
+    }
+
+    private Field textField(String fieldName) {
+      if (fieldName == null) {
+        return null;
+      }
+      return switch (fieldName) {
+        case "author" -> Field.AUTHOR;
+        case "message" -> Field.MESSAGE;
+        case "id" -> Field.ID;
+        case "before", "after", "path" -> throw error("The field `" + fieldName + "` does not support regular expressions");
+        default -> throw new IllegalStateException("unexpected field " + fieldName);
+      };
+    }
+
+    private String readDelimited(char delimiter) {
+      int start = position;
+      position++;
+      StringBuilder value = new StringBuilder();
+      while (position < expression.length() && expression.charAt(position) != delimiter) {
+        char c = expression.charAt(position++);
+        if (c == '\\' && position < expression.length() && expression.charAt(position) == delimiter) {
+          c = expression.charAt(position++);
+        } else if (c == '\\' && delimiter == '/' && position < expression.length()) {
+          // keep escapes for the regular expression
+          value.append(c);
+          c = expression.charAt(position++);
+        }
+        value.append(c);
+      }
+      if (!accept(delimiter)) {
+        position = start;
+        throw error("Missing closing `" + delimiter + "`");
+      }
+      return value.toString();
+    }
+
+    private String readWord() {
+      int start = position;
+      while (position < expression.length() && !Character.isWhitespace(peek()) && peek() != '(' && peek() != ')') {
+        position++;
+      }
+      return expression.substring(start, position);
+    }
+
+    private boolean startsUnary() {
+      skipWhitespace();
+      return position < expression.length() && peek() != ')' && !isKeyword("OR");
+    }
+
+    private boolean acceptKeyword(String keyword) {
+      skipWhitespace();
+      if (isKeyword(keyword)) {
+        position += keyword.length();
+        return true;
+      }
+      return false;
+    }
+
+    private boolean isKeyword(String keyword) {
+      int end = position + keyword.length();
+      return expression.startsWith(keyword, position)
+        && (end == expression.length() || Character.isWhitespace(expression.charAt(end)) || expression.charAt(end) == '(');
+    }
+
+    private boolean accept(char c) {
+      if (position < expression.length() && expression.charAt(position) == c) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    private char peek() {
+      return position < expression.length() ? expression.charAt(position) : 0;
+    }
+
+    private void skipWhitespace() {
+      while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+        position++;
+      }
+    }
+
+    private Pattern compileRegex(String regex) {
+      try {
+        return Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+      } catch (PatternSyntaxException e) {
+        throw error("Invalid regular expression `" + regex + "`");
+      }
+    }
+
+    private Instant parseDate(String value) {
+      try {
+        if (value.contains("T")) {
+          return Instant.parse(value);
+        }
+        return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+      } catch (DateTimeParseException e) {
+        throw error("Invalid date `" + value + "`; use ISO 8601 like 2024-01-01 or 2024-01-01T10:00:00Z");
+      }
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(String.format("%s at position %s.", message, position + 1));
+    }
+  }
+}
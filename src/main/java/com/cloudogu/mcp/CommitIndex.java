@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.mcp;
+
+import sonia.scm.repository.Changeset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * The metadata of all commits reachable from a fixed head, in the order of the log. The metadata is kept in columns
+ * of primitive arrays, so that filters on authors, messages and dates can be evaluated without loading the
+ * changesets from the repository:
+ * <ul>
+ *   <li>the dates as milliseconds,</li>
+ *   <li>the authors as ids of distinct authors,</li>
+ *   <li>the messages concatenated in a single string with the offsets of the single messages, and</li>
+ *   <li>the parents as rows of this index ({@link #MISSING_PARENT} for parents not contained).</li>
+ * </ul>
+ * Instances are immutable, because the history of a commit never changes.
+ */
+final class CommitIndex {
+
+  static final int MISSING_PARENT = -1;
+
+  private static final int ROW_OVERHEAD = 96;
+
+  private final String[] ids;
+  private final long[] dates;
+  private final int[] authorIds;
+  private final String[] authors;
+  private final String messages;
+  private final int[] messageOffsets;
+  private final int[] parentOffsets;
+  private final int[] parents;
+
+  private CommitIndex(String[] ids, long[] dates, int[] authorIds, String[] authors, String messages, int[] messageOffsets, int[] parentOffsets, int[] parents) {
+    this.ids = ids;
+    this.dates = dates;
+    this.authorIds = authorIds;
+    this.authors = authors;
+    this.messages = messages;
+    this.messageOffsets = messageOffsets;
+    this.parentOffsets = parentOffsets;
+    this.parents = parents;
+  }
+
+  /**
+   * Creates the index for the changesets of a complete log, starting with the head.
+   */
+  static CommitIndex of(List<Changeset> changesets) {
+    Builder builder = new Builder(changesets.size());
+    changesets.forEach(changeset -> builder.add(Row.of(changeset)));
+    return builder.build();
+  }
+
+  /**
+   * Creates the index for a new head, whose history consists of the given rows followed by the history of the head
+   * of this index. This is only correct, if the new rows are in the order of the log and each of their parents is
+   * either one of the new rows or part of this index.
+   */
+  CommitIndex prepend(List<Row> newRows) {
+    Builder builder = new Builder(newRows.size() + size());
+    newRows.forEach(builder::add);
+    for (int row = 0; row < size(); ++row) {
+      builder.add(getRow(row));
+    }
+    return builder.build();
+  }
+
+  Row getRow(int row) {
+    return new Row(ids[row], dates[row], getAuthor(row), getMessage(row), getParentIds(row));
+  }
+
+  /**
+   * Returns the ids of all commits of this index.
+   */
+  Set<String> getIds() {
+    return new HashSet<>(Arrays.asList(ids));
+  }
+
+  int size() {
+    return ids.length;
+  }
+
+  String getHead() {
+    return ids.length == 0 ? null : ids[0];
+  }
+
+  String getId(int row) {
+    return ids[row];
+  }
+
+  long getDate(int row) {
+    return dates[row];
+  }
+
+  String getAuthor(int row) {
+    return authors[authorIds[row]];
+  }
+
+  String getMessage(int row) {
+    return messages.substring(messageOffsets[row], messageOffsets[row + 1]);
+  }
+
+  /**
+   * Returns the rows of the parents of the commit in the given row.
+   */
+  int[] getParents(int row) {
+    return Arrays.copyOfRange(parents, parentOffsets[row], parentOffsets[row + 1]);
+  }
+
+  /**
+   * Returns the first row starting with <code>fromRow</code> matching the filter, or <code>-1</code> if there is none.
+   */
+  int findNext(int fromRow, IntPredicate filter) {
+    for (int row = fromRow; row < ids.length; ++row) {
+      if (filter.test(row)) {
+        return row;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Like {@link #findNext(int, IntPredicate)}, but only the first parents starting with <code>fromRow</code> are
+   * checked, so that the rows of merged branches are skipped.
+   */
+  int findNextOnFirstParents(int fromRow, IntPredicate filter) {
+    for (int row = fromRow; row >= 0 && row < ids.length; row = getFirstParent(row)) {
+      if (filter.test(row)) {
+        return row;
+      }
+    }
+    return -1;
+  }
+
+  int getParentCount(int row) {
+    return parentOffsets[row + 1] - parentOffsets[row];
+  }
+
+  /**
+   * Returns the row of the first parent, or {@link #MISSING_PARENT} if there is no parent or it is not contained.
+   */
+  int getFirstParent(int row) {
+    return getParentCount(row) == 0 ? MISSING_PARENT : parents[parentOffsets[row]];
+  }
+
+  /**
+   * Returns the number of commits reachable from the head by following only the first parents.
+   */
+  int getFirstParentCount() {
+    int count = 0;
+    for (int row = ids.length == 0 ? MISSING_PARENT : 0; row != MISSING_PARENT; row = getFirstParent(row)) {
+      count++;
+    }
+    return count;
+  }
+
+  int weigh() {
+    long weight = (long) ids.length * ROW_OVERHEAD + 2L * messages.length();
+    for (String author : authors) {
+      weight += 2L * author.length();
+    }
+    return (int) Math.min(Integer.MAX_VALUE, weight);
+  }
+
+  /**
+   * Returns the ids of the parents; parents not contained in this index are <code>null</code>.
+   */
+  private List<String> getParentIds(int row) {
+    List<String> parentIds = new ArrayList<>(getParentCount(row));
+    for (int i = parentOffsets[row]; i < parentOffsets[row + 1]; ++i) {
+      parentIds.add(parents[i] == MISSING_PARENT ? null : ids[parents[i]]);
+    }
+    return parentIds;
+  }
+
+  /**
+   * The metadata of a single commit with the ids of its parents.
+   */
+  record Row(String id, long date, String author, String message, List<String> parents) {
+
+    static Row of(Changeset changeset) {
+      return new Row(
+        changeset.getId(),
+        changeset.getDate() == null ? 0 : changeset.getDate(),
+        String.valueOf(changeset.getAuthor()),
+        changeset.getDescription() == null ? "" : changeset.getDescription(),
+        changeset.getParents() == null ? List.of() : changeset.getParents()
+      );
+    }
+  }
+
+  private static class Builder {
+
+    private final List<String> ids;
+    private final List<Long> dates;
+    private final List<Integer> authorIds = new ArrayList<>();
+    private final Map<String, Integer> authorIdsByName = new HashMap<>();
+    private final List<String> authors = new ArrayList<>();
+    private final StringBuilder messages = new StringBuilder();
+    private final List<Integer> messageOffsets = new ArrayList<>();
+    private final List<List<String>> parentIds = new ArrayList<>();
+
+    Builder(int expectedSize) {
+      this.ids = new ArrayList<>(expectedSize);
+      this.dates = new ArrayList<>(expectedSize);
+    }
+
+    void add(Row row) {
+      ids.add(row.id());
+      dates.add(row.date());
+      authorIds.add(authorIdsByName.computeIfAbsent(row.author(), name -> {
+        authors.add(name);
+        return authors.size() - 1;
+      }));
+      messageOffsets.add(messages.length());
+      messages.append(row.message());
+      parentIds.add(row.parents());
+    }
+
+    CommitIndex build() {
+      Map<String, Integer> rows = new HashMap<>();
+      for (int row = 0; row < ids.size(); ++row) {
+        rows.put(ids.get(row), row);
+      }
+      int[] parentOffsets = new int[ids.size() + 1];
+      List<Integer> parentRows = new ArrayList<>();
+      for (int row = 0; row < ids.size(); ++row) {
+        parentOffsets[row] = parentRows.size();
+        for (String parent : parentIds.get(row)) {
+          parentRows.add(rows.getOrDefault(parent, MISSING_PARENT));
+        }
+      }
+      parentOffsets[ids.size()] = parentRows.size();
+      int[] offsets = new int[ids.size() + 1];
+      for (int row = 0; row < ids.size(); ++row) {
+        offsets[row] = messageOffsets.get(row);
+      }
+      offsets[ids.size()] = messages.length();
+      return new CommitIndex(
+        ids.toArray(new String[0]),
+        dates.stream().mapToLong(Long::longValue).toArray(),
+        authorIds.stream().mapToInt(Integer::intValue).toArray(),
+        authors.toArray(new String[0]),
+        messages.toString(),
+        offsets,
+        parentOffsets,
+        parentRows.stream().mapToInt(Integer::intValue).toArray()
+      );
+    }
+  }
+}
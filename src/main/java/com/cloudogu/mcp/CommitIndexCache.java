@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.mcp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shiro.SecurityUtils;
+import sonia.scm.repository.Changeset;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the {@link CommitIndex} for heads of repositories. Indexes are built in the background on request, so that
+ * the request itself does not have to wait for the complete history. After a push, indexes for the new heads are
+ * derived from the index of the first parent, extended by the new ancestors from the push or from the indexes of
+ * merged heads.
+ */
+@Slf4j
+@Singleton
+class CommitIndexCache {
+
+  /**
+   * Larger histories are not indexed, because building the index would take too long.
+   */
+  static final int MAXIMUM_COMMITS = 50_000;
+
+  private static final long MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+  /**
+   * Indexes are built one after another in a thread of their own, so that they do not block the reads of the
+   * {@link SubjectAwareExecutor}, which in turn is used to read the history for the index.
+   */
+  private final ExecutorService executor;
+
+  private final Cache<IndexKey, CommitIndex> indexes = CacheBuilder.newBuilder()
+    // guava splits the maximum weight between the segments, so that with more segments an index of the maximum
+    // number of commits would be larger than its segment and would be evicted right away
+    .concurrencyLevel(1)
+    .maximumWeight(MAXIMUM_WEIGHT)
+    .weigher((IndexKey key, CommitIndex index) -> index.weigh())
+    .build();
+
+  /**
+   * Repositories, whose history is too large to be indexed. As the history only grows, this is kept until the
+   * repository is deleted or the history is rewritten. Otherwise, each push would lead to a new head, for which the
+   * history would be read in vain.
+   */
+  private final Set<String> tooLarge = ConcurrentHashMap.newKeySet();
+
+  private final Set<IndexKey> building = ConcurrentHashMap.newKeySet();
+
+  CommitIndexCache() {
+    this(Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("mcp-commit-index-%d").setDaemon(true).build()
+    ));
+  }
+
+  CommitIndexCache(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  Optional<CommitIndex> get(String repositoryId, String head) {
+    return Optional.ofNullable(indexes.getIfPresent(new IndexKey(repositoryId, head)));
+  }
+
+  void put(String repositoryId, CommitIndex index) {
+    indexes.put(new IndexKey(repositoryId, index.getHead()), index);
+  }
+
+  /**
+   * Builds the index for the head in the background, unless it exists, is being built or the history of the
+   * repository is known to be too large. The builder has to return an empty optional, if the history has more than
+   * {@link #MAXIMUM_COMMITS} commits.
+   */
+  void buildInBackground(String repositoryId, String head, IndexBuilder builder) {
+    IndexKey key = new IndexKey(repositoryId, head);
+    if (indexes.getIfPresent(key) != null || tooLarge.contains(repositoryId) || !building.add(key)) {
+      return;
+    }
+    executor.execute(SecurityUtils.getSubject().associateWith(() -> {
+      try {
+        Optional<CommitIndex> index = builder.build();
+        if (index.isPresent()) {
+          log.debug("built commit index with {} commits for {}", index.get().size(), key);
+          put(repositoryId, index.get());
+        } else {
+          log.debug("history of {} is too large to be indexed", key);
+          tooLarge.add(repositoryId);
+        }
+      } catch (IOException | RuntimeException e) {
+        log.debug("could not build commit index for {}", key, e);
+      } finally {
+        building.remove(key);
+      }
+    }));
+  }
+
+  /**
+   * Forgets everything known about the repository, for example after it has been deleted.
+   */
+  void invalidate(String repositoryId) {
+    indexes.asMap().keySet().removeIf(key -> key.repositoryId().equals(repositoryId));
+    tooLarge.remove(repositoryId);
+  }
+
+  /**
+   * Derives indexes for new heads from the pushed changesets. For each new head, the first parents are followed
+   * through the pushed changesets up to the head of an existing index. The new index consists of all ancestors of the
+   * new head, that are not part of this existing index, followed by the existing index. The new ancestors are taken
+   * from the push or, for merged heads that have not been pushed, from their indexes. If some of them cannot be
+   * found, the index will be built on the next request.
+   */
+  void extend(String repositoryId, Iterable<Changeset> pushedChangesets) {
+    Map<String, Changeset> pushed = new HashMap<>();
+    Set<String> referenced = new HashSet<>();
+    for (Changeset changeset : pushedChangesets) {
+      pushed.put(changeset.getId(), changeset);
+      if (changeset.getParents() != null) {
+        referenced.addAll(changeset.getParents());
+      }
+    }
+    if (pushed.values().stream().anyMatch(changeset -> changeset.getParents() == null || changeset.getParents().isEmpty())) {
+      // new root commits are pushed when the history has been rewritten, so that it may be small enough now
+      tooLarge.remove(repositoryId);
+    }
+    for (Changeset head : pushed.values()) {
+      if (!referenced.contains(head.getId())) {
+        extend(repositoryId, head, pushed);
+      }
+    }
+  }
+
+  private void extend(String repositoryId, Changeset newHead, Map<String, Changeset> pushed) {
+    Optional<CommitIndex> baseIndex = findFirstParentIndex(repositoryId, newHead, pushed);
+    if (baseIndex.isEmpty()) {
+      return;
+    }
+    Optional<List<CommitIndex.Row>> newRows = collectNewRows(repositoryId, newHead, pushed, baseIndex.get());
+    if (newRows.isEmpty()) {
+      log.trace("could not find all new ancestors of {}", newHead.getId());
+      return;
+    }
+    if (baseIndex.get().size() + newRows.get().size() > MAXIMUM_COMMITS) {
+      log.debug("history of {} is too large to be indexed", newHead.getId());
+      tooLarge.add(repositoryId);
+      return;
+    }
+    log.trace("extending commit index of {} with {} commits", baseIndex.get().getHead(), newRows.get().size());
+    indexes.put(new IndexKey(repositoryId, newHead.getId()), baseIndex.get().prepend(newRows.get()));
+  }
+
+  private Optional<CommitIndex> findFirstParentIndex(String repositoryId, Changeset newHead, Map<String, Changeset> pushed) {
+    Changeset current = newHead;
+    while (current != null && current.getParents() != null && !current.getParents().isEmpty()) {
+      String firstParent = current.getParents().get(0);
+      Optional<CommitIndex> index = get(repositoryId, firstParent);
+      if (index.isPresent()) {
+        return index;
+      }
+      current = pushed.get(firstParent);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Collects the ancestors of the new head, that are not part of the base index, in the order of the log.
+   */
+  private Optional<List<CommitIndex.Row>> collectNewRows(String repositoryId, Changeset newHead, Map<String, Changeset> pushed, CommitIndex baseIndex) {
+    Set<String> baseIds = baseIndex.getIds();
+    Map<String, CommitIndex.Row> newRows = new HashMap<>();
+    Deque<String> pending = new ArrayDeque<>();
+    pending.push(newHead.getId());
+    while (!pending.isEmpty()) {
+      String id = pending.pop();
+      if (baseIds.contains(id) || newRows.containsKey(id)) {
+        continue;
+      }
+      Changeset changeset = pushed.get(id);
+      if (changeset != null) {
+        CommitIndex.Row row = CommitIndex.Row.of(changeset);
+        newRows.put(id, row);
+        row.parents().forEach(pending::push);
+        continue;
+      }
+      Optional<CommitIndex> mergedIndex = get(repositoryId, id);
+      if (mergedIndex.isEmpty()) {
+        return Optional.empty();
+      }
+      // the index of a merged head contains its complete history
+      for (int row = 0; row < mergedIndex.get().size(); ++row) {
+        if (!baseIds.contains(mergedIndex.get().getId(row))) {
+          newRows.putIfAbsent(mergedIndex.get().getId(row), mergedIndex.get().getRow(row));
+        }
+      }
+    }
+    return Optional.of(sortInLogOrder(newRows));
+  }
+
+  /**
+   * Sorts the commits by date, newest first, but never a parent before one of its children.
+   */
+  private static List<CommitIndex.Row> sortInLogOrder(Map<String, CommitIndex.Row> rows) {
+    Map<String, Integer> childCounts = new HashMap<>();
+    rows.values().forEach(row -> row.parents().stream()
+      .filter(rows::containsKey)
+      .forEach(parent -> childCounts.merge(parent, 1, Integer::sum)));
+    PriorityQueue<CommitIndex.Row> ready = new PriorityQueue<>(Comparator.comparingLong(CommitIndex.Row::date).reversed());
+    rows.values().stream().filter(row -> !childCounts.containsKey(row.id())).forEach(ready::add);
+    List<CommitIndex.Row> sorted = new ArrayList<>(rows.size());
+    while (!ready.isEmpty()) {
+      CommitIndex.Row row = ready.poll();
+      sorted.add(row);
+      row.parents().stream()
+        .filter(rows::containsKey)
+        .filter(parent -> childCounts.merge(parent, -1, Integer::sum) == 0)
+        .forEach(parent -> ready.add(rows.get(parent)));
+    }
+    return sorted;
+  }
+
+  interface IndexBuilder {
+    Optional<CommitIndex> build() throws IOException;
+  }
+
+  private record IndexKey(String repositoryId, String head) {
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.mcp;
+
+import com.github.legman.Subscribe;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import sonia.scm.EagerSingleton;
+import sonia.scm.HandlerEventType;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.PostReceiveRepositoryHookEvent;
+import sonia.scm.repository.RepositoryEvent;
+import sonia.scm.repository.api.HookFeature;
+
+/**
+ * Extends the indexes of {@link CommitIndexCache} with the changesets of a push, so that {@link ToolListCommits} can
+ * use them for the new heads without reading the history again. Everything cached for a repository is dropped, when
+ * the repository is deleted.
+ */
+@Slf4j
+@Extension
+@EagerSingleton
+public class CommitIndexUpdater {
+
+  private final CommitIndexCache commitIndexCache;
+
+  @Inject
+  CommitIndexUpdater(CommitIndexCache commitIndexCache) {
+    this.commitIndexCache = commitIndexCache;
+  }
+
+  @Subscribe
+  public void onPush(PostReceiveRepositoryHookEvent event) {
+    if (!event.getContext().isFeatureSupported(HookFeature.CHANGESET_PROVIDER)) {
+      return;
+    }
+    try {
+      commitIndexCache.extend(event.getRepository().getId(), event.getContext().getChangesetProvider().getChangesets());
+    } catch (RuntimeException e) {
+      // the indexes for the new heads will be built on the next request
+      log.debug("could not extend commit indexes for repository {}", event.getRepository(), e);
+    }
+  }
+
+  @Subscribe
+  public void onRepositoryEvent(RepositoryEvent event) {
+    if (event.getEventType() == HandlerEventType.DELETE) {
+      commitIndexCache.invalidate(event.getItem().getId());
+    }
+  }
+}
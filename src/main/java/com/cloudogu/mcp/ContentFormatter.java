@@ -66,6 +66,17 @@ public class ContentFormatter {
     return resultRenderer;
   }
 
+  /**
+   * Writes the last lines of a file with an unknown number of lines. The lines are numbered from the end of the file,
+   * so that the last line has the number -1.
+   */
+  public OkResultRenderer writeTail(Collection<String> lines, String info) {
+    OkResultRenderer resultRenderer = OkResultRenderer.ok("TRUNCATED", String.format("Showing the last %s lines of `%s`. The lines are numbered from the end of the file, so that the last line has the number -1.", lines.size(), file));
+    writeInfo(resultRenderer, info);
+    write(resultRenderer, lines, -lines.size());
+    return resultRenderer;
+  }
+
   private void writeInfo(OkResultRenderer resultRenderer, String info) {
     if (info != null) {
       resultRenderer.withInfoText(info);
@@ -91,7 +102,7 @@ public class ContentFormatter {
 
   private static int getMaxWidthOfLineNumbers(Collection<String> lines, int firstLineNumber) {
     int lastLineNumber = firstLineNumber + lines.size() - 1;
-    return String.valueOf(lastLineNumber).length();
+    return Math.max(String.valueOf(firstLineNumber).length(), String.valueOf(lastLineNumber).length());
   }
 
   public enum Status {
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.inject.Singleton;
+
+import java.util.Optional;
+
+/**
+ * Remembers the content hashes of files that have been read before, so that conditional reads can be answered
+ * without reading the content again.
+ */
+@Singleton
+class ContentHashCache {
+
+  private static final int MAXIMUM_SIZE = 10_000;
+
+  private final Cache<BlobKey, String> cache = CacheBuilder.newBuilder()
+    .maximumSize(MAXIMUM_SIZE)
+    .build();
+
+  Optional<String> get(BlobKey key) {
+    return Optional.ofNullable(cache.getIfPresent(key));
+  }
+
+  void put(BlobKey key, String contentHash) {
+    cache.put(key, contentHash);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.inject.Singleton;
+import sonia.scm.io.ContentType;
+
+import java.util.Optional;
+
+/**
+ * Remembers the content types (including the detected language) of files that have been read before. As the content
+ * of a file at a resolved revision never changes, the content type has to be detected only once.
+ */
+@Singleton
+class ContentTypeCache {
+
+  private static final int MAXIMUM_SIZE = 10_000;
+
+  private final Cache<BlobKey, DetectedContentType> cache = CacheBuilder.newBuilder()
+    .maximumSize(MAXIMUM_SIZE)
+    .build();
+
+  Optional<DetectedContentType> get(BlobKey key) {
+    return Optional.ofNullable(cache.getIfPresent(key));
+  }
+
+  void put(BlobKey key, DetectedContentType contentType) {
+    cache.put(key, contentType);
+  }
+
+  /**
+   * The content type detected from the name and the head of a file. Empty files are marked explicitly, because their
+   * content type can only be guessed from the name.
+   */
+  record DetectedContentType(String raw, boolean text, String detectedLanguage, boolean empty) {
+
+    static DetectedContentType of(ContentType contentType, boolean empty) {
+      return new DetectedContentType(contentType.getRaw(), contentType.isText(), contentType.getLanguage().orElse(null), empty);
+    }
+
+    Optional<String> language() {
+      return Optional.ofNullable(detectedLanguage);
+    }
+  }
+}
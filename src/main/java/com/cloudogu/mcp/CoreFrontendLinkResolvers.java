@@ -65,11 +65,16 @@ class RepositoryFrontendLinkResolver implements FrontendLinkResolver {
 
   @Override
   public FrontendLinkResult createLink(CreateFrontendLinkInput input) {
-    NamespaceAndName namespaceAndName = new NamespaceAndName(input.getNamespace(), input.getName());
-    return FrontendLinkResult.of(
+    return FrontendLinkTemplates.createLink(this, repositoryServiceFactory, input);
+  }
+
+  @Override
+  public FrontendLinkTemplate createTemplate(RepositoryService repositoryService) {
+    String repositoryUrl = findRepositoryUrl(repositoryService);
+    return input -> FrontendLinkResult.of(
       getTargetType(),
-      namespaceAndName.toString(),
-      findRepositoryUrl(repositoryServiceFactory, namespaceAndName),
+      new NamespaceAndName(input.getNamespace(), input.getName()).toString(),
+      repositoryUrl,
       repositoryMetadata(input)
     );
   }
@@ -110,10 +115,20 @@ abstract class SourceFrontendLinkResolverBase implements FrontendLinkResolver {
 
   @Override
   public FrontendLinkResult createLink(CreateFrontendLinkInput input) {
+    return FrontendLinkTemplates.createLink(this, repositoryServiceFactory, input);
+  }
+
+  @Override
+  public FrontendLinkTemplate createTemplate(RepositoryService repositoryService) {
+    String repositoryUrl = findRepositoryUrl(repositoryService);
+    return input -> createLink(input, repositoryService, repositoryUrl);
+  }
+
+  private FrontendLinkResult createLink(CreateFrontendLinkInput input, RepositoryService repositoryService, String repositoryUrl) {
     String path = normalizePath(input.getPath());
     NamespaceAndName namespaceAndName = new NamespaceAndName(input.getNamespace(), input.getName());
-    String effectiveRevision = computeEffectiveRevision(namespaceAndName, input);
-    String url = findRepositoryUrl(repositoryServiceFactory, namespaceAndName) + "/code/sources/" + HttpUtil.encode(effectiveRevision) + '/' + path;
+    String effectiveRevision = computeEffectiveRevision(namespaceAndName, repositoryService, input);
+    String url = repositoryUrl + "/code/sources/" + HttpUtil.encode(effectiveRevision) + '/' + path;
     if (supportsLine() && input.getLine() != null) {
       url = appendLineFragment(url, input.getLine());
     }
@@ -126,9 +141,9 @@ abstract class SourceFrontendLinkResolverBase implements FrontendLinkResolver {
     );
   }
 
-  private String computeEffectiveRevision(NamespaceAndName namespaceAndName, CreateFrontendLinkInput input) {
+  private String computeEffectiveRevision(NamespaceAndName namespaceAndName, RepositoryService repositoryService, CreateFrontendLinkInput input) {
     if (input.getRevision() == null) {
-      try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName)) {
+      try {
         if (repositoryService.isSupported(Command.BRANCHES)) {
           return repositoryService
             .getBranchesCommand()
@@ -319,14 +334,22 @@ abstract class RevisionFrontendLinkResolver implements FrontendLinkResolver {
 
   @Override
   public FrontendLinkResult createLink(CreateFrontendLinkInput input) {
-    Map<String, Object> metadata = repositoryMetadata(input);
-    metadata.put(type, input.getRevision());
-    return FrontendLinkResult.of(
-      getTargetType(),
-      String.format("%s/%s %s %s", input.getNamespace(), input.getName(), type, input.getRevision()),
-      String.format("%s/%s/%s", findRepositoryUrl(repositoryServiceFactory, input), urlPath, HttpUtil.encode(input.getRevision())),
-      metadata
-    );
+    return FrontendLinkTemplates.createLink(this, repositoryServiceFactory, input);
+  }
+
+  @Override
+  public FrontendLinkTemplate createTemplate(RepositoryService repositoryService) {
+    String repositoryUrl = findRepositoryUrl(repositoryService);
+    return input -> {
+      Map<String, Object> metadata = repositoryMetadata(input);
+      metadata.put(type, input.getRevision());
+      return FrontendLinkResult.of(
+        getTargetType(),
+        String.format("%s/%s %s %s", input.getNamespace(), input.getName(), type, input.getRevision()),
+        String.format("%s/%s/%s", repositoryUrl, urlPath, HttpUtil.encode(input.getRevision())),
+        metadata
+      );
+    };
   }
 }
 
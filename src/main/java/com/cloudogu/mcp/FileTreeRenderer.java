@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import sonia.scm.repository.FileObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders file trees for {@link ToolListFiles}. The tree is traversed iteratively, and the displayed directories and
+ * files are counted while rendering.
+ */
+class FileTreeRenderer {
+
+  private static final String BRANCH = "├── ";
+  private static final String LAST_BRANCH = "└── ";
+  private static final String INDENT = "│   ";
+  private static final String LAST_INDENT = "    ";
+
+  private final ListFilesInput.Format format;
+  private final String rootPath;
+  private final Map<FileObject, Counts> collapsedDirectories;
+  private final Map<FileObject, String> details;
+  private final StringBuilder result = new StringBuilder();
+
+  private int directories = 0;
+  private int files = 0;
+
+  /**
+   * @param rootPath             The path of the root of the tree in the repository, without leading slash.
+   * @param collapsedDirectories Directories that will be shown with the number of their contents.
+   * @param details              Further details that will be shown next to the names.
+   */
+  FileTreeRenderer(ListFilesInput.Format format, String rootPath, Map<FileObject, Counts> collapsedDirectories, Map<FileObject, String> details) {
+    this.format = format;
+    this.rootPath = rootPath;
+    this.collapsedDirectories = collapsedDirectories;
+    this.details = details;
+  }
+
+  String render(FileObject root) {
+    switch (format) {
+      case flat -> renderFlat(root);
+      case grouped -> renderGrouped(root);
+      default -> renderTree(root);
+    }
+    return result.toString();
+  }
+
+  /**
+   * The counts for the displayed directories and files, not counting the root directory.
+   */
+  Counts getCounts() {
+    return new Counts(files, directories);
+  }
+
+  private void renderTree(FileObject root) {
+    StringBuilder prefix = new StringBuilder();
+    Deque<TreeEntry> stack = new ArrayDeque<>();
+    stack.push(new TreeEntry(root, 0, true));
+    while (!stack.isEmpty()) {
+      TreeEntry entry = stack.pop();
+      // every level adds an indent with the same length, so we can cut back to the prefix of the parent
+      prefix.setLength(entry.depth * LAST_INDENT.length());
+      result.append(prefix).append(entry.last ? LAST_BRANCH : BRANCH);
+      appendName(entry.file, entry.file.getName(), entry.depth > 0 || !entry.file.isDirectory());
+      prefix.append(entry.last ? LAST_INDENT : INDENT);
+
+      List<FileObject> children = asList(entry.file.getChildren());
+      for (int i = children.size() - 1; i >= 0; i--) {
+        stack.push(new TreeEntry(children.get(i), entry.depth + 1, i == children.size() - 1));
+      }
+    }
+  }
+
+  private void renderFlat(FileObject root) {
+    if (!root.isDirectory()) {
+      appendName(root, rootPath, true);
+      return;
+    }
+    Deque<PathEntry> stack = new ArrayDeque<>();
+    pushChildren(stack, root, rootPath);
+    while (!stack.isEmpty()) {
+      PathEntry entry = stack.pop();
+      appendName(entry.file, entry.path, true);
+      pushChildren(stack, entry.file, entry.path);
+    }
+  }
+
+  private void renderGrouped(FileObject root) {
+    if (!root.isDirectory()) {
+      appendName(root, rootPath, true);
+      return;
+    }
+    Deque<PathEntry> stack = new ArrayDeque<>();
+    stack.push(new PathEntry(root, rootPath));
+    while (!stack.isEmpty()) {
+      PathEntry entry = stack.pop();
+      if (entry.file.getChildren().isEmpty()) {
+        continue;
+      }
+      result.append(entry.path.isEmpty() ? "/" : entry.path + "/").append('\n');
+      for (FileObject child : entry.file.getChildren()) {
+        result.append("  ");
+        appendName(child, child.getName(), true);
+      }
+      List<FileObject> children = asList(entry.file.getChildren());
+      for (int i = children.size() - 1; i >= 0; i--) {
+        if (children.get(i).isDirectory()) {
+          stack.push(new PathEntry(children.get(i), childPath(entry.path, children.get(i))));
+        }
+      }
+    }
+  }
+
+  private void pushChildren(Deque<PathEntry> stack, FileObject file, String path) {
+    List<FileObject> children = asList(file.getChildren());
+    for (int i = children.size() - 1; i >= 0; i--) {
+      stack.push(new PathEntry(children.get(i), childPath(path, children.get(i))));
+    }
+  }
+
+  private void appendName(FileObject file, String name, boolean count) {
+    result.append(name);
+    if (file.isDirectory()) {
+      result.append('/');
+      Counts collapsedCounts = collapsedDirectories.get(file);
+      if (collapsedCounts != null) {
+        result.append(" (collapsed: ").append(collapsedCounts.directories()).append(" directories, ").append(collapsedCounts.files()).append(" files)");
+      }
+    }
+    String fileDetails = details.get(file);
+    if (fileDetails != null) {
+      result.append(" [").append(fileDetails).append(']');
+    }
+    result.append('\n');
+    if (count && file.isDirectory()) {
+      directories++;
+    } else if (count) {
+      files++;
+    }
+  }
+
+  /**
+   * Counts all directories and files below the given directory (not counting the directory itself).
+   */
+  static Counts count(FileObject root) {
+    int directoryCount = 0;
+    int fileCount = 0;
+    Deque<FileObject> stack = new ArrayDeque<>(root.getChildren());
+    while (!stack.isEmpty()) {
+      FileObject file = stack.pop();
+      if (file.isDirectory()) {
+        directoryCount++;
+        stack.addAll(file.getChildren());
+      } else {
+        fileCount++;
+      }
+    }
+    return new Counts(fileCount, directoryCount);
+  }
+
+  private static String childPath(String path, FileObject child) {
+    return path.isEmpty() ? child.getName() : path + "/" + child.getName();
+  }
+
+  private static List<FileObject> asList(Collection<FileObject> children) {
+    if (children instanceof List<FileObject> list) {
+      return list;
+    }
+    return new ArrayList<>(children);
+  }
+
+  record Counts(int files, int directories) {
+  }
+
+  private record TreeEntry(FileObject file, int depth, boolean last) {
+  }
+
+  private record PathEntry(FileObject file, String path) {
+  }
+}
@@ -80,6 +80,16 @@ public interface FrontendLinkResolver {
    */
   FrontendLinkResult createLink(CreateFrontendLinkInput input);
 
+  /**
+   * Creates a template to create links for the repository of the given repository service. Implementations should
+   * look up everything, that all links of the repository share (like the repository url), only once for the template,
+   * so that many links can be created without opening further repository services. The default implementation
+   * simply delegates to {@link #createLink(CreateFrontendLinkInput)}.
+   */
+  default FrontendLinkTemplate createTemplate(RepositoryService repositoryService) {
+    return this::createLink;
+  }
+
   /**
    * Creates the base link to the repository with the given namespace and name. Just create the {@link NamespaceAndName}
    * from the input parameters and calls {@link #findRepositoryUrl(RepositoryServiceFactory, NamespaceAndName)}.
@@ -94,15 +104,22 @@ public interface FrontendLinkResolver {
    */
   default String findRepositoryUrl(RepositoryServiceFactory repositoryServiceFactory, NamespaceAndName namespaceAndName) {
     try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName)) {
-      return repositoryService
-        .getSupportedProtocols()
-        .filter(p -> "http".equals(p.getType()))
-        .map(ScmProtocol::getUrl)
-        .findAny()
-        .orElseThrow(() -> new NoHttpUrlFoundForRepositoryException(namespaceAndName));
+      return findRepositoryUrl(repositoryService);
     }
   }
 
+  /**
+   * Creates the base link to the repository of the given repository service.
+   */
+  default String findRepositoryUrl(RepositoryService repositoryService) {
+    return repositoryService
+      .getSupportedProtocols()
+      .filter(p -> "http".equals(p.getType()))
+      .map(ScmProtocol::getUrl)
+      .findAny()
+      .orElseThrow(() -> new NoHttpUrlFoundForRepositoryException(repositoryService.getRepository().getNamespaceAndName()));
+  }
+
   /**
    * Creates a mutable map with the namespace and the name already added which can be used for 
    * the metadata map in the result of {@link FrontendLinkResolver#createLink(CreateFrontendLinkInput)}.
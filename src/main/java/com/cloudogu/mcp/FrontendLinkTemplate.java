@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.mcp;
+
+/**
+ * Creates frontend links for a single repository. Templates are created with
+ * {@link FrontendLinkResolver#createTemplate(sonia.scm.repository.api.RepositoryService)} and can only be used as long
+ * as the repository service they have been created for is open.
+ */
+@FunctionalInterface
+public interface FrontendLinkTemplate {
+
+  /**
+   * Creates the frontend link. This must only be called for inputs of the repository of this template, that have been
+   * validated with {@link FrontendLinkResolver#validate(CreateFrontendLinkInput)}.
+   */
+  FrontendLinkResult createLink(CreateFrontendLinkInput input);
+}
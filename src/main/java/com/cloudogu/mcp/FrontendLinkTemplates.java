@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+/**
+ * Helps resolvers to create single links with their {@link FrontendLinkTemplate}.
+ */
+final class FrontendLinkTemplates {
+
+  private FrontendLinkTemplates() {
+  }
+
+  /**
+   * Creates a single link with a template for a repository service, that is opened only for this link.
+   */
+  static FrontendLinkResult createLink(FrontendLinkResolver resolver, RepositoryServiceFactory repositoryServiceFactory, CreateFrontendLinkInput input) {
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName(input.getNamespace(), input.getName()))) {
+      return resolver.createTemplate(repositoryService).createLink(input);
+    }
+  }
+}
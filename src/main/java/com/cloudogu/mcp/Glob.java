@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import java.util.regex.Pattern;
+
+/**
+ * A glob pattern for paths in repositories. Patterns without a slash (like <code>*.md</code> or
+ * <code>node_modules</code>) are matched against the name of a file or directory on any level. All other patterns
+ * are matched against the complete path (without leading slash), where <code>*</code> and <code>?</code> do not match
+ * slashes, <code>**</code> matches any number of directories, and a trailing <code>/**</code> also matches the
+ * directory itself.
+ */
+final class Glob {
+
+  private static final String SPECIAL_CHARACTERS = "\\.[]{}()+-^$|";
+
+  private final Pattern pattern;
+  private final boolean matchName;
+
+  private Glob(Pattern pattern, boolean matchName) {
+    this.pattern = pattern;
+    this.matchName = matchName;
+  }
+
+  static Glob compile(String glob) {
+    String normalized = glob.trim();
+    boolean anchored = normalized.startsWith("/");
+    while (normalized.startsWith("/")) {
+      normalized = normalized.substring(1);
+    }
+    while (normalized.endsWith("/")) {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
+    return new Glob(Pattern.compile(toRegex(normalized)), !anchored && !normalized.contains("/"));
+  }
+
+  boolean matches(String path) {
+    String relevantPart = path;
+    if (matchName) {
+      relevantPart = path.substring(path.lastIndexOf('/') + 1);
+    }
+    return pattern.matcher(relevantPart).matches();
+  }
+
+  private static String toRegex(String glob) {
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < glob.length(); ++i) {
+      char c = glob.charAt(i);
+      if (c == '*' && glob.startsWith("**/", i)) {
+        regex.append("(?:.*/)?");
+        i += 2;
+      } else if (c == '*' && glob.startsWith("**", i)) {
+        regex.append(".*");
+        i++;
+      } else if (c == '/' && glob.startsWith("/**", i) && i + 3 == glob.length()) {
+        regex.append("(?:/.*)?");
+        i += 2;
+      } else if (c == '*') {
+        regex.append("[^/]*");
+      } else if (c == '?') {
+        regex.append("[^/]");
+      } else {
+        if (SPECIAL_CHARACTERS.indexOf(c) >= 0) {
+          regex.append('\\');
+        }
+        regex.append(c);
+      }
+    }
+    return regex.toString();
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.base.Strings;
+import lombok.extern.slf4j.Slf4j;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.Modifications;
+import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the last commits for a set of paths with a single walk over the history: The modifications of every
+ * changeset are read once and are matched against all paths that are still unresolved (including parent
+ * directories of the modified files). The walk stops when all paths are resolved, or when the time budget is used up.
+ */
+@Slf4j
+class LastCommitCollector {
+
+  private static final int PAGE_SIZE = 100;
+
+  private final Duration timeBudget;
+
+  LastCommitCollector(Duration timeBudget) {
+    this.timeBudget = timeBudget;
+  }
+
+  /**
+   * @param revision The revision to start the walk with; if this is <code>null</code>, the default branch is taken.
+   * @param files    The paths of the files (without leading slash).
+   * @param directories The paths of the directories (without leading slash).
+   * @return The last commits for the paths; paths that could not be resolved are missing.
+   */
+  Map<String, Changeset> collect(RepositoryService repositoryService, String revision, Collection<String> files, Collection<String> directories) throws IOException {
+    Set<String> pendingFiles = new HashSet<>(files);
+    Set<String> pendingDirectories = new HashSet<>(directories);
+    Map<String, Changeset> result = new HashMap<>();
+    long deadline = System.nanoTime() + timeBudget.toNanos();
+
+    int start = 0;
+    while (!(pendingFiles.isEmpty() && pendingDirectories.isEmpty())) {
+      List<Changeset> changesets = readPage(repositoryService, revision, start);
+      for (Changeset changeset : changesets) {
+        if (System.nanoTime() - deadline >= 0) {
+          log.debug("time budget exceeded while collecting last commits; {} paths remain unknown", pendingFiles.size() + pendingDirectories.size());
+          return result;
+        }
+        Modifications modifications = repositoryService.getModificationsCommand().revision(changeset.getId()).getModifications();
+        for (String path : getAffectedPaths(modifications)) {
+          if (pendingFiles.remove(path)) {
+            result.put(path, changeset);
+          }
+          resolveParents(path, changeset, pendingDirectories, result);
+        }
+        if (pendingFiles.isEmpty() && pendingDirectories.isEmpty()) {
+          break;
+        }
+      }
+      if (changesets.size() < PAGE_SIZE) {
+        break;
+      }
+      start += PAGE_SIZE;
+    }
+    return result;
+  }
+
+  private List<Changeset> readPage(RepositoryService repositoryService, String revision, int start) throws IOException {
+    LogCommandBuilder logCommand = repositoryService.getLogCommand()
+      .setPagingStart(start)
+      .setPagingLimit(PAGE_SIZE);
+    if (!Strings.isNullOrEmpty(revision)) {
+      logCommand.setStartChangeset(revision);
+    }
+    ChangesetPagingResult changesets = logCommand.getChangesets();
+    if (changesets == null || changesets.getChangesets() == null) {
+      return List.of();
+    }
+    return changesets.getChangesets();
+  }
+
+  private static void resolveParents(String path, Changeset changeset, Set<String> pendingDirectories, Map<String, Changeset> result) {
+    String parent = path;
+    while (parent.contains("/") && !pendingDirectories.isEmpty()) {
+      parent = parent.substring(0, parent.lastIndexOf('/'));
+      if (pendingDirectories.remove(parent)) {
+        result.put(parent, changeset);
+      }
+    }
+  }
+
+  private static Collection<String> getAffectedPaths(Modifications modifications) {
+    Collection<String> paths = new ArrayList<>();
+    if (modifications == null) {
+      return paths;
+    }
+    modifications.getAdded().forEach(added -> paths.add(added.getPath()));
+    modifications.getModified().forEach(modified -> paths.add(modified.getPath()));
+    modifications.getRemoved().forEach(removed -> paths.add(removed.getPath()));
+    // the directories of both the old and the new path are changed by a rename
+    modifications.getRenamed().forEach(renamed -> {
+      paths.add(renamed.getNewPath());
+      paths.add(renamed.getOldPath());
+    });
+    return paths;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.inject.Singleton;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived cache for ranges of lines of text files, that have been read in advance, because they are likely to be
+ * requested next. As the ranges are only kept for a short time, the cache is bounded by the overall number of
+ * characters.
+ */
+@Singleton
+class LineRangeCache {
+
+  private static final long MAXIMUM_WEIGHT = 8L * 1024 * 1024;
+  private static final int LINE_OVERHEAD = 16;
+
+  private final Cache<RangeKey, Lines> cache = CacheBuilder.newBuilder()
+    .maximumWeight(MAXIMUM_WEIGHT)
+    .weigher((RangeKey key, Lines lines) -> lines.lines().stream().mapToInt(line -> line.length() + LINE_OVERHEAD).sum())
+    .expireAfterWrite(2, TimeUnit.MINUTES)
+    .build();
+
+  Optional<Lines> get(BlobKey blob, int startLine, int endLine, LineWindow window) {
+    return Optional.ofNullable(cache.getIfPresent(new RangeKey(blob, startLine, endLine, window)));
+  }
+
+  void put(BlobKey blob, int startLine, int endLine, LineWindow window, Lines lines) {
+    cache.put(new RangeKey(blob, startLine, endLine, window), lines);
+  }
+
+  /**
+   * The lines of the range together with the overall number of lines of the file.
+   */
+  record Lines(List<String> lines, int overallLineCount) {
+  }
+
+  private record RangeKey(BlobKey blob, int startLine, int endLine, LineWindow window) {
+  }
+}
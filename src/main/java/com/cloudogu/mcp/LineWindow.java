@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+/**
+ * Limits the part of a line that will be shown, so that very long lines (like in minified or generated files) do not
+ * blow up the result. Omitted parts of a line are marked with <code>…[N chars omitted]</code>.
+ *
+ * @param startColumn The first column (1-indexed) that will be shown.
+ * @param maxLength   The maximum number of characters that will be shown.
+ */
+record LineWindow(int startColumn, int maxLength) {
+
+  static final LineWindow UNLIMITED = new LineWindow(1, Integer.MAX_VALUE);
+
+  LineWindow {
+    if (startColumn < 1 || maxLength < 1) {
+      throw new IllegalArgumentException("start column and maximum length must be positive");
+    }
+  }
+
+  /**
+   * Checks whether the given column (1-indexed) is visible.
+   */
+  boolean contains(long column) {
+    return column >= startColumn && column - startColumn < maxLength;
+  }
+
+  /**
+   * Applies this window to a line that is completely available.
+   */
+  String apply(String line) {
+    if (startColumn == 1 && line.length() <= maxLength) {
+      return line;
+    }
+    int start = Math.min(startColumn - 1, line.length());
+    int end = (int) Math.min((long) start + maxLength, line.length());
+    return format(line.substring(start, end), line.length());
+  }
+
+  /**
+   * Creates the line with markers for the omitted parts.
+   *
+   * @param visiblePart The visible part of the line.
+   * @param lineLength  The length of the complete line.
+   */
+  String format(CharSequence visiblePart, long lineLength) {
+    long omittedBefore = Math.min(startColumn - 1L, lineLength);
+    long omittedAfter = lineLength - omittedBefore - visiblePart.length();
+    if (omittedBefore == 0 && omittedAfter == 0) {
+      return visiblePart.toString();
+    }
+    StringBuilder line = new StringBuilder(visiblePart.length() + 50);
+    if (omittedBefore > 0) {
+      appendOmission(line, omittedBefore);
+    }
+    line.append(visiblePart);
+    if (omittedAfter > 0) {
+      appendOmission(line, omittedAfter);
+    }
+    return line.toString();
+  }
+
+  private static void appendOmission(StringBuilder line, long omitted) {
+    line.append("…[").append(omitted).append(" chars omitted]");
+  }
+}
@@ -46,6 +46,24 @@ public class ListCommitsInput {
     If this is omitted, the default branch of the repository will be taken.""")
   private String revision;
 
+  @JsonPropertyDescription("If set, only commits changing this file or directory will be listed.")
+  private String path;
+
+  @JsonPropertyDescription("""
+    If set to `true` together with `path`, the history is continued with the former path, when the file has been
+    renamed (at most 5 renames will be followed).""")
+  private boolean followRenames;
+
+  @JsonPropertyDescription("""
+    If set to `true`, only the first parents of merge commits are followed (like `git log --first-parent`), so that the
+    commits of merged branches are skipped. This cannot be combined with `path`.""")
+  private boolean firstParent;
+
+  @JsonPropertyDescription("""
+    Which commits to list with respect to merges: `include` (the default) lists all commits, `exclude` skips merge
+    commits (commits with more than one parent), and `only` lists merge commits only.""")
+  private Merges merges = Merges.include;
+
   @JsonPropertyDescription("Filter for commits that contain this string in the commit message. This filter is case insensitive.")
   private String commitMessageFilter;
 
@@ -57,6 +75,14 @@ public class ListCommitsInput {
   @JsonPropertyDescription("Filter for commits committed before this timestamp (ISO 8601 format, e.g. 2024-01-01T10:00:00Z).")
   private Instant committedAfter;
 
+  @JsonPropertyDescription("""
+    Filter expression for commits. Terms can be combined with `AND` (or simply a space), `OR`, `NOT` (or a leading `-`)
+    and parentheses. A plain term matches the commit message or the author. Terms can be qualified with one of the fields
+    author, message, id, before, after, or path, like `author:dent` or `after:2024-01-01`. Values can be quoted
+    (`message:"fix drive"`) or regular expressions (`message:/fix(ed)?/`). Text terms are case insensitive.
+    The field `path` can only be combined with `AND`.""")
+  private String filter;
+
   @JsonPropertyDescription("""
     If set to `true`, details for the commits will be sent as structured data.
     If `false`, only the commit log like `git log` would produce will be returned."""
@@ -66,4 +92,11 @@ public class ListCommitsInput {
   @Min(1)
   @JsonPropertyDescription("The maximum number of commits to read.")
   private int limit = 20;
+
+  @SuppressWarnings("java:S115") // we want lower caps here so that the enum can be used directly by the AI
+  enum Merges {
+    include,
+    exclude,
+    only
+  }
 }
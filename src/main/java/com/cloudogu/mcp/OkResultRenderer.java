@@ -16,6 +16,8 @@
 
 package com.cloudogu.mcp;
 
+import io.modelcontextprotocol.spec.McpSchema;
+
 import java.util.List;
 import java.util.Map;
 
@@ -84,6 +86,14 @@ public class OkResultRenderer {
     );
   }
 
+  public ToolResult render(Map<String, Object> structuredContent, List<McpSchema.Content> additionalContent) {
+    return ToolResult.ok(
+      List.of(result.toString()),
+      structuredContent,
+      additionalContent
+    );
+  }
+
   @Override
   public String toString() {
     return result.toString();
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * An index of all file paths of a repository at a fixed revision. The paths are kept sorted, so that queries
+ * restricted to a directory only have to scan the paths of this directory. To keep large indexes small, the paths
+ * are not kept as single strings, but encoded as UTF-8 in one byte array with the offsets of the paths.
+ */
+final class PathIndex {
+
+  private static final int OVERHEAD = 64;
+
+  private final byte[] paths;
+  private final int[] offsets;
+  private final boolean complete;
+
+  private PathIndex(byte[] paths, int[] offsets, boolean complete) {
+    this.paths = paths;
+    this.offsets = offsets;
+    this.complete = complete;
+  }
+
+  /**
+   * @param paths    The paths of all files (without leading slash).
+   * @param complete <code>false</code>, if the paths are not complete (for example, because the repository was too
+   *                 large).
+   */
+  static PathIndex of(Collection<String> paths, boolean complete) {
+    String[] sortedPaths = paths.toArray(new String[0]);
+    Arrays.sort(sortedPaths);
+    byte[][] encodedPaths = new byte[sortedPaths.length][];
+    int[] offsets = new int[sortedPaths.length + 1];
+    for (int i = 0; i < sortedPaths.length; ++i) {
+      encodedPaths[i] = sortedPaths[i].getBytes(StandardCharsets.UTF_8);
+      offsets[i + 1] = offsets[i] + encodedPaths[i].length;
+    }
+    byte[] blob = new byte[offsets[sortedPaths.length]];
+    for (int i = 0; i < sortedPaths.length; ++i) {
+      System.arraycopy(encodedPaths[i], 0, blob, offsets[i], encodedPaths[i].length);
+    }
+    return new PathIndex(blob, offsets, complete);
+  }
+
+  boolean isComplete() {
+    return complete;
+  }
+
+  int size() {
+    return offsets.length - 1;
+  }
+
+  int weigh() {
+    return OVERHEAD + paths.length + 4 * offsets.length;
+  }
+
+  /**
+   * Finds the paths matching the pattern. If the pattern contains <code>*</code> or <code>?</code>, it is handled as
+   * {@link Glob}. Otherwise, all paths containing the pattern (ignoring the case) are found.
+   *
+   * @param directory If not empty, only paths in this directory (without leading or trailing slash) are found.
+   * @param maximum   The maximum number of paths that will be returned.
+   */
+  Matches find(String pattern, String directory, int maximum) {
+    String prefix = directory.isEmpty() ? "" : directory + "/";
+    Predicate<String> predicate;
+    if (isGlob(pattern)) {
+      String literalPrefix = getLiteralPrefix(pattern);
+      if (literalPrefix.startsWith(prefix)) {
+        prefix = literalPrefix;
+      } else if (!prefix.startsWith(literalPrefix)) {
+        return new Matches(List.of(), 0);
+      }
+      Glob glob = Glob.compile(pattern);
+      predicate = glob::matches;
+    } else {
+      predicate = path -> StringUtils.containsIgnoreCase(path, pattern);
+    }
+
+    List<String> matches = new ArrayList<>();
+    int overallCount = 0;
+    for (int i = lowerBound(prefix); i < size(); ++i) {
+      String path = getPath(i);
+      if (!path.startsWith(prefix)) {
+        break;
+      }
+      if (predicate.test(path)) {
+        if (matches.size() < maximum) {
+          matches.add(path);
+        }
+        overallCount++;
+      }
+    }
+    return new Matches(matches, overallCount);
+  }
+
+  private static boolean isGlob(String pattern) {
+    return pattern.contains("*") || pattern.contains("?");
+  }
+
+  /**
+   * For globs matched against complete paths, this returns the directories before the first wildcard, so that only
+   * paths with this prefix have to be checked. Globs matched against names have no literal prefix.
+   */
+  private static String getLiteralPrefix(String pattern) {
+    String normalized = pattern.startsWith("/") ? pattern.substring(1) : pattern;
+    if (!pattern.startsWith("/") && !normalized.contains("/")) {
+      return "";
+    }
+    int firstWildcard = StringUtils.indexOfAny(normalized, "*?");
+    return normalized.substring(0, normalized.lastIndexOf('/', firstWildcard) + 1);
+  }
+
+  private int lowerBound(String prefix) {
+    int low = 0;
+    int high = size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (getPath(middle).compareTo(prefix) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private String getPath(int i) {
+    return new String(paths, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+  }
+
+  record Matches(List<String> paths, int overallCount) {
+  }
+}
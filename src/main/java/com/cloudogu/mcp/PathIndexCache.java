@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the {@link PathIndex} for resolved revisions and remembers, to which revisions branches, tags and the
+ * default branch have been resolved. The latter are invalidated for a repository on every push.
+ */
+@Singleton
+class PathIndexCache {
+
+  private static final long MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+  private final Cache<IndexKey, PathIndex> indexes = CacheBuilder.newBuilder()
+    // a single segment for the same reason as in the CommitIndexCache
+    .concurrencyLevel(1)
+    .maximumWeight(MAXIMUM_WEIGHT)
+    .weigher((IndexKey key, PathIndex index) -> index.weigh())
+    .build();
+
+  private final Cache<IndexKey, String> resolvedRevisions = CacheBuilder.newBuilder()
+    .maximumSize(1_000)
+    // safety net for changes that do not trigger a push event
+    .expireAfterWrite(10, TimeUnit.MINUTES)
+    .build();
+
+  /**
+   * Returns the index for the resolved revision. If there is no index yet, it will be created with the given
+   * builder. Concurrent requests for the same index will wait for a single build.
+   */
+  PathIndex get(String repositoryId, String resolvedRevision, IndexBuilder builder) throws IOException {
+    try {
+      return indexes.get(new IndexKey(repositoryId, resolvedRevision), builder::build);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw new IllegalStateException("could not create path index", e.getCause());
+    }
+  }
+
+  Optional<String> getResolvedRevision(String repositoryId, String revision) {
+    return Optional.ofNullable(resolvedRevisions.getIfPresent(new IndexKey(repositoryId, Strings.nullToEmpty(revision))));
+  }
+
+  void putResolvedRevision(String repositoryId, String revision, String resolvedRevision) {
+    resolvedRevisions.put(new IndexKey(repositoryId, Strings.nullToEmpty(revision)), resolvedRevision);
+  }
+
+  /**
+   * Forgets the resolved revisions of the repository, so that the next request will use the new heads. Indexes for
+   * resolved revisions stay valid and are kept.
+   */
+  void invalidateResolvedRevisions(String repositoryId) {
+    resolvedRevisions.asMap().keySet().removeIf(key -> key.repositoryId().equals(repositoryId));
+  }
+
+  interface IndexBuilder {
+    PathIndex build() throws IOException;
+  }
+
+  private record IndexKey(String repositoryId, String revision) {
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.github.legman.Subscribe;
+import jakarta.inject.Inject;
+import sonia.scm.EagerSingleton;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.PostReceiveRepositoryHookEvent;
+
+/**
+ * Makes sure that {@link ToolFindFiles} uses the new heads of the branches after a push.
+ */
+@Extension
+@EagerSingleton
+public class PathIndexUpdater {
+
+  private final PathIndexCache pathIndexCache;
+
+  @Inject
+  PathIndexUpdater(PathIndexCache pathIndexCache) {
+    this.pathIndexCache = pathIndexCache;
+  }
+
+  @Subscribe
+  public void onPush(PostReceiveRepositoryHookEvent event) {
+    pathIndexCache.invalidateResolvedRevisions(event.getRepository().getId());
+  }
+}
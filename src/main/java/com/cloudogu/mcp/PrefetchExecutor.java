@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Singleton;
+import org.apache.shiro.SecurityUtils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single thread with low priority for speculative reads, that nobody waits for. Its queue is bounded and tasks
+ * that do not fit into it are discarded, so that prefetching never competes with the reads of the
+ * {@link SubjectAwareExecutor} or piles up work. The tasks run with the subject of the thread submitting them.
+ */
+@Singleton
+class PrefetchExecutor {
+
+  private static final int QUEUE_SIZE = 16;
+
+  private final ExecutorService executor = new ThreadPoolExecutor(
+    1, 1, 0L, TimeUnit.MILLISECONDS,
+    new ArrayBlockingQueue<>(QUEUE_SIZE),
+    new ThreadFactoryBuilder().setNameFormat("mcp-prefetch-%d").setDaemon(true).setPriority(Thread.MIN_PRIORITY).build(),
+    new ThreadPoolExecutor.DiscardPolicy()
+  );
+
+  void execute(Runnable task) {
+    executor.execute(SecurityUtils.getSubject().associateWith(task));
+  }
+}
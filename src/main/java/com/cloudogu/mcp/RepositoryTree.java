@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.base.Strings;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.IOException;
+
+/**
+ * Browses the file tree of a repository the way the tools need it: without last commits, pre processors and sub
+ * repository detection.
+ */
+final class RepositoryTree {
+
+  private RepositoryTree() {
+  }
+
+  /**
+   * Reads the tree for the given path. An empty path stands for the root directory.
+   */
+  static BrowserResult browse(RepositoryService repositoryService, String revision, String path, boolean recursive, int limit) throws IOException {
+    return repositoryService
+      .getBrowseCommand()
+      .setRevision(revision)
+      .setPath(Strings.isNullOrEmpty(path) ? "/" : path)
+      .setRecursive(recursive)
+      .setDisableLastCommit(true)
+      .setDisablePreProcessors(true)
+      .setDisableSubRepositoryDetection(true)
+      .setLimit(limit)
+      .getBrowserResult();
+  }
+
+  /**
+   * Removes leading and trailing slashes, so that the root directory is represented by an empty path.
+   */
+  static String normalize(String path) {
+    String normalized = Strings.nullToEmpty(path);
+    while (normalized.startsWith("/")) {
+      normalized = normalized.substring(1);
+    }
+    while (normalized.endsWith("/")) {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
+    return normalized;
+  }
+}
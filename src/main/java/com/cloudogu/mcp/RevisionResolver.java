@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.base.Strings;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Resolves branches, tags and the default branch to the id of the changeset they point to. Contents for resolved
+ * revisions never change, so they can be cached safely.
+ */
+final class RevisionResolver {
+
+  private RevisionResolver() {
+  }
+
+  /**
+   * Returns the id of the changeset for the given revision, or an empty optional, if the revision could not be
+   * resolved. If the revision is <code>null</code>, the head of the default branch will be taken.
+   */
+  static Optional<String> resolve(RepositoryService repositoryService, String revision) throws IOException {
+    LogCommandBuilder logCommand = repositoryService.getLogCommand();
+    if (Strings.isNullOrEmpty(revision)) {
+      ChangesetPagingResult changesets = logCommand.setPagingStart(0).setPagingLimit(1).getChangesets();
+      if (changesets == null || changesets.getChangesets() == null || changesets.getChangesets().isEmpty()) {
+        return Optional.empty();
+      }
+      return Optional.of(changesets.getChangesets().get(0).getId());
+    }
+    return Optional.ofNullable(logCommand.getChangeset(revision)).map(Changeset::getId);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Singleton;
+import org.apache.shiro.SecurityUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A small thread pool for reading repository content in parallel. The tasks run with the subject of the thread
+ * submitting them, so that permissions are checked for the right user.
+ */
+@Singleton
+class SubjectAwareExecutor {
+
+  private static final int THREADS = 4;
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(
+    THREADS,
+    new ThreadFactoryBuilder().setNameFormat("mcp-reader-%d").setDaemon(true).build()
+  );
+
+  <T> Future<T> submit(Callable<T> task) {
+    return executor.submit(SecurityUtils.getSubject().associateWith(task));
+  }
+
+  /**
+   * Waits for the result of the task. Exceptions thrown by the task are rethrown unwrapped.
+   */
+  static <T> T await(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while waiting for background task");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IOException("background task failed", e.getCause());
+    }
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Reads the last lines of a stream. The content is scanned backwards from the end, so that only the requested lines
+ * have to be read and kept in memory. Streams with positional access (like streams backed by a file or by an array in
+ * memory) are read directly. In this case, the overall number of lines is only known, if the tail reaches the start
+ * of the content. All other streams are copied first (into memory up to the size of blobs kept in the
+ * {@link BlobCache}, into a temporary file otherwise), counting the lines while copying.
+ * <p>
+ * Lines are terminated by <code>'\n'</code>, <code>'\r'</code> or <code>"\r\n"</code>, like in the
+ * {@link BoundedLineReader}.
+ */
+class TailReader {
+
+  private static final int BLOCK_SIZE = 8192;
+  private static final int MEMORY_LIMIT = BlobCache.MAXIMUM_BLOB_SIZE;
+
+  private final int lineCount;
+  private final LineWindow window;
+
+  TailReader(int lineCount) {
+    this(lineCount, LineWindow.UNLIMITED);
+  }
+
+  TailReader(int lineCount, LineWindow window) {
+    if (lineCount < 1) {
+      throw new IllegalArgumentException("line count must be positive");
+    }
+    this.lineCount = lineCount;
+    this.window = window;
+  }
+
+  TailResult read(InputStream inputStream) throws IOException {
+    Optional<RandomAccessContent> randomAccessContent = RandomAccessContent.of(inputStream);
+    if (randomAccessContent.isPresent()) {
+      return readBackwards(randomAccessContent.get(), OptionalInt.empty());
+    }
+    return readCopy(inputStream);
+  }
+
+  private TailResult readCopy(InputStream inputStream) throws IOException {
+    LineCounter lineCounter = new LineCounter();
+    byte[] head = inputStream.readNBytes(MEMORY_LIMIT + 1);
+    lineCounter.update(head, head.length);
+    if (head.length <= MEMORY_LIMIT) {
+      return readBackwards(new ByteArrayContent(new ByteArrayInputStream(head)), OptionalInt.of(lineCounter.getLineCount()));
+    }
+
+    Path file = Files.createTempFile("tail", ".tmp");
+    try {
+      try (OutputStream outputStream = Files.newOutputStream(file)) {
+        outputStream.write(head);
+        byte[] buffer = new byte[BLOCK_SIZE];
+        int length;
+        while ((length = inputStream.read(buffer)) >= 0) {
+          lineCounter.update(buffer, length);
+          outputStream.write(buffer, 0, length);
+        }
+      }
+      try (FileChannel channel = FileChannel.open(file)) {
+        return readBackwards(new FileChannelContent(channel), OptionalInt.of(lineCounter.getLineCount()));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private TailResult readBackwards(RandomAccessContent content, OptionalInt overallLineCount) throws IOException {
+    long size = content.size();
+    if (size == 0) {
+      return new TailResult(List.of(), OptionalInt.of(0));
+    }
+
+    byte[] buffer = new byte[BLOCK_SIZE];
+    long end = size;
+    content.read(size - 1, buffer, 1);
+    // a terminating line break does not start a new line
+    if (buffer[0] == '\r') {
+      end--;
+    } else if (buffer[0] == '\n') {
+      end--;
+      if (end > 0) {
+        content.read(end - 1, buffer, 1);
+        if (buffer[0] == '\r') {
+          end--;
+        }
+      }
+    }
+
+    long tailStart = findTailStart(content, buffer, end);
+    List<String> lines = readTail(content, tailStart);
+    if (tailStart == 0) {
+      return new TailResult(lines, OptionalInt.of(lines.size()));
+    }
+    return new TailResult(lines, overallLineCount);
+  }
+
+  private long findTailStart(RandomAccessContent content, byte[] buffer, long end) throws IOException {
+    long position = end;
+    int lineBreaks = 0;
+    // the byte following the current one, so that a '\r' followed by '\n' is not counted twice
+    byte next = 0;
+    while (position > 0) {
+      int length = (int) Math.min(buffer.length, position);
+      position -= length;
+      content.read(position, buffer, length);
+      for (int i = length - 1; i >= 0; i--) {
+        byte current = buffer[i];
+        boolean lineBreak = current == '\n' || (current == '\r' && next != '\n');
+        if (lineBreak && ++lineBreaks == lineCount) {
+          return position + i + 1;
+        }
+        next = current;
+      }
+    }
+    return 0;
+  }
+
+  private List<String> readTail(RandomAccessContent content, long tailStart) throws IOException {
+    List<String> lines = new ArrayList<>(lineCount);
+    try (BoundedLineReader reader = new BoundedLineReader(content.openStream(tailStart), window)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * The last lines and the overall number of lines of the content. The overall number of lines is empty, if it is
+   * unknown.
+   */
+  record TailResult(List<String> lines, OptionalInt overallLineCount) {
+
+    OptionalInt firstLineNumber() {
+      if (overallLineCount.isEmpty()) {
+        return OptionalInt.empty();
+      }
+      return OptionalInt.of(overallLineCount.getAsInt() - lines.size() + 1);
+    }
+  }
+
+  private static class LineCounter {
+
+    private int lineBreaks;
+    private boolean previousCarriageReturn;
+    private boolean lineStarted;
+
+    void update(byte[] buffer, int length) {
+      for (int i = 0; i < length; i++) {
+        byte current = buffer[i];
+        if (current == '\n') {
+          if (!previousCarriageReturn) {
+            lineBreaks++;
+          }
+          lineStarted = false;
+        } else if (current == '\r') {
+          lineBreaks++;
+          lineStarted = false;
+        } else {
+          lineStarted = true;
+        }
+        previousCarriageReturn = current == '\r';
+      }
+    }
+
+    int getLineCount() {
+      return lineStarted ? lineBreaks + 1 : lineBreaks;
+    }
+  }
+
+  private interface RandomAccessContent {
+
+    long size() throws IOException;
+
+    /**
+     * Reads exactly <code>length</code> bytes starting at the given position into the start of the buffer.
+     */
+    void read(long position, byte[] buffer, int length) throws IOException;
+
+    /**
+     * Opens a stream starting at the given position. After this, no other method must be called.
+     */
+    InputStream openStream(long position) throws IOException;
+
+    static Optional<RandomAccessContent> of(InputStream inputStream) throws IOException {
+      if (inputStream instanceof FileInputStream fileInputStream) {
+        return Optional.of(new FileChannelContent(fileInputStream.getChannel()));
+      }
+      if (inputStream instanceof ByteArrayInputStream byteArrayInputStream) {
+        return Optional.of(new ByteArrayContent(byteArrayInputStream));
+      }
+      return Optional.empty();
+    }
+  }
+
+  private static class FileChannelContent implements RandomAccessContent {
+
+    private final FileChannel channel;
+    private final long start;
+
+    FileChannelContent(FileChannel channel) throws IOException {
+      this.channel = channel;
+      this.start = channel.position();
+    }
+
+    @Override
+    public long size() throws IOException {
+      return channel.size() - start;
+    }
+
+    @Override
+    public void read(long position, byte[] buffer, int length) throws IOException {
+      ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+      while (byteBuffer.hasRemaining()) {
+        if (channel.read(byteBuffer, start + position + byteBuffer.position()) < 0) {
+          throw new EOFException();
+        }
+      }
+    }
+
+    @Override
+    public InputStream openStream(long position) throws IOException {
+      return Channels.newInputStream(channel.position(start + position));
+    }
+  }
+
+  private static class ByteArrayContent implements RandomAccessContent {
+
+    private final ByteArrayInputStream stream;
+    private final long size;
+
+    ByteArrayContent(ByteArrayInputStream stream) {
+      this.stream = stream;
+      // reset will return to the current position, so that positions are relative to this
+      this.stream.mark(0);
+      this.size = stream.available();
+    }
+
+    @Override
+    public long size() {
+      return size;
+    }
+
+    @Override
+    public void read(long position, byte[] buffer, int length) throws IOException {
+      stream.reset();
+      if (stream.skip(position) != position || stream.readNBytes(buffer, 0, length) != length) {
+        throw new EOFException();
+      }
+    }
+
+    @Override
+    public InputStream openStream(long position) throws IOException {
+      stream.reset();
+      if (stream.skip(position) != position) {
+        throw new EOFException();
+      }
+      return stream;
+    }
+  }
+}
@@ -73,16 +73,16 @@ class ToolCreateBranch implements TypedTool<CreateBranchInput> {
       .from(input.getBaseBranch())
       .branch(input.getNewBranchName());
 
-    return success(String.format("The new branch [%s](%s) has been created on revision %s.", newBranch.getName(), createFrontendLink(input).url(), newBranch.getRevision())).render();
+    return success(String.format("The new branch [%s](%s) has been created on revision %s.", newBranch.getName(), createFrontendLink(input, repositoryService).url(), newBranch.getRevision())).render();
   }
 
-  private FrontendLinkResult createFrontendLink(CreateBranchInput input) {
+  private FrontendLinkResult createFrontendLink(CreateBranchInput input, RepositoryService repositoryService) {
     CreateFrontendLinkInput frontendLinkInput = new CreateFrontendLinkInput();
     frontendLinkInput.setTargetType("branch");
     frontendLinkInput.setNamespace(input.getNamespace());
     frontendLinkInput.setName(input.getName());
     frontendLinkInput.setRevision(input.getNewBranchName());
-    return linkResolver.createLink(frontendLinkInput);
+    return linkResolver.createTemplate(repositoryService).createLink(frontendLinkInput);
   }
 
   @Override
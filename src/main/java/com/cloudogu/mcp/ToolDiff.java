@@ -183,6 +183,7 @@ class ToolDiff implements TypedTool<ToolDiffInput> {
         resultRenderer.append("rename to ").appendLine(newPath);
       }
 
+      LineWindow lineWindow = input.getMaxLineLength() == null ? LineWindow.UNLIMITED : new LineWindow(1, input.getMaxLineLength());
       boolean aborted = diffLineCount >= input.getDiffLineLimit();
       int omittedCount = 0;
       final int PADDING_WIDTH = 4;
@@ -213,7 +214,7 @@ class ToolDiff implements TypedTool<ToolDiffInput> {
             } else {
               resultRenderer.append(" ");
             }
-            resultRenderer.appendLine(diffLine.getContent());
+            resultRenderer.appendLine(lineWindow.apply(diffLine.getContent()));
           }
         }
       }
@@ -17,6 +17,7 @@
 package com.cloudogu.mcp;
 
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
@@ -75,4 +76,15 @@ public class ToolDiffInput {
 
   @JsonPropertyDescription("If you want to ignore whitespace changes in your diff, set this to `true`.")
   private boolean ignoreWhitespace;
+
+  @Min(1)
+  @JsonPropertyDescription("""
+    The maximum number of characters that will be shown for each diff line.
+    Longer lines (for example in minified or generated files) will be cut and the omitted part will be marked
+    with `…[N chars omitted]`. If this is omitted, the lines will not be cut.""")
+  private Integer maxLineLength;
+
+  public ToolDiffInput(String namespace, String name, String diffTarget, int diffLineLimit, int diffFileLimit, List<String> pathFilter, boolean ignoreWhitespace) {
+    this(namespace, name, diffTarget, diffLineLimit, diffFileLimit, pathFilter, ignoreWhitespace, null);
+  }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.google.common.base.Strings;
+import jakarta.inject.Inject;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.RepositoryPermissions;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Slf4j
+@Extension
+class ToolFindFiles implements TypedTool<FindFilesInput> {
+
+  /**
+   * Repositories with more files will only be indexed partially.
+   */
+  static final int MAXIMUM_INDEX_SIZE = 500_000;
+
+  private final RepositoryServiceFactory repositoryServiceFactory;
+  private final PathIndexCache pathIndexCache;
+
+  @Inject
+  ToolFindFiles(RepositoryServiceFactory repositoryServiceFactory, PathIndexCache pathIndexCache) {
+    this.repositoryServiceFactory = repositoryServiceFactory;
+    this.pathIndexCache = pathIndexCache;
+  }
+
+  @Override
+  public String getName() {
+    return "find-files";
+  }
+
+  @Override
+  public String getDescription() {
+    return """
+      Finds files in a repository by their path. Use this instead of recursive listings, when you are looking for
+      specific files like `**/pom.xml` or `*Controller.java`.
+      The result contains the complete paths of the matching files, one in each line.""";
+  }
+
+  @Override
+  public Class<FindFilesInput> getInputClass() {
+    return FindFilesInput.class;
+  }
+
+  @Override
+  public ToolResult execute(FindFilesInput input) {
+    log.trace("executing request {}", input);
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName(input.getNamespace(), input.getName()))) {
+      if (!RepositoryPermissions.read(repositoryService.getRepository()).isPermitted()) {
+        log.trace("requested repository not authorized");
+        return ToolResult.error("User is not authorized to use this resource.");
+      }
+
+      String repositoryId = repositoryService.getRepository().getId();
+      Optional<String> revision = resolveRevision(repositoryId, input.getRevision(), repositoryService);
+      if (revision.isEmpty()) {
+        if (Strings.isNullOrEmpty(input.getRevision())) {
+          return ToolResult.error("The repository does not contain any commits.");
+        }
+        return ToolResult.error(String.format("The revision `%s` could not be found.", input.getRevision()));
+      }
+
+      PathIndex index = pathIndexCache.get(repositoryId, revision.get(), () -> createIndex(revision.get(), repositoryService));
+      return createResult(input, index.find(input.getPattern(), RepositoryTree.normalize(input.getRoot()), input.getMaximumNumberOfResults()), index);
+    } catch (IOException e) {
+      log.debug("got exception while executing request", e);
+      return ToolResult.error(
+        "Something went wrong reading the files"
+      );
+    }
+  }
+
+  private Optional<String> resolveRevision(String repositoryId, String revision, RepositoryService repositoryService) throws IOException {
+    Optional<String> knownRevision = pathIndexCache.getResolvedRevision(repositoryId, revision);
+    if (knownRevision.isPresent()) {
+      return knownRevision;
+    }
+    Optional<String> resolvedRevision = RevisionResolver.resolve(repositoryService, revision);
+    resolvedRevision.ifPresent(resolved -> pathIndexCache.putResolvedRevision(repositoryId, revision, resolved));
+    return resolvedRevision;
+  }
+
+  private PathIndex createIndex(String revision, RepositoryService repositoryService) throws IOException {
+    log.debug("creating path index for revision {} of repository {}", revision, repositoryService.getRepository());
+    FileObject root = RepositoryTree.browse(repositoryService, revision, "", true, MAXIMUM_INDEX_SIZE).getFile();
+
+    List<String> paths = new ArrayList<>();
+    Deque<Map.Entry<String, FileObject>> stack = new ArrayDeque<>();
+    root.getChildren().forEach(child -> stack.push(Map.entry(child.getName(), child)));
+    while (!stack.isEmpty()) {
+      Map.Entry<String, FileObject> entry = stack.pop();
+      if (entry.getValue().isDirectory()) {
+        entry.getValue().getChildren().forEach(child -> stack.push(Map.entry(entry.getKey() + "/" + child.getName(), child)));
+      } else {
+        paths.add(entry.getKey());
+      }
+    }
+    return PathIndex.of(paths, !root.isTruncated());
+  }
+
+  private ToolResult createResult(FindFilesInput input, PathIndex.Matches matches, PathIndex index) {
+    String incompleteIndex = index.isComplete() ? "" : " The repository is too large to be indexed completely, so that some files may be missing.";
+    boolean maximumExceeded = matches.overallCount() > matches.paths().size();
+
+    OkResultRenderer resultRenderer;
+    if (matches.paths().isEmpty()) {
+      resultRenderer = OkResultRenderer.ok("EMPTY", String.format("No files found matching `%s`.", input.getPattern()));
+      if (!incompleteIndex.isEmpty()) {
+        resultRenderer.withInfoText(incompleteIndex.trim());
+      }
+    } else if (maximumExceeded) {
+      resultRenderer = OkResultRenderer.ok("TRUNCATED", String.format("Found %s files matching `%s`.", matches.overallCount(), input.getPattern()));
+      resultRenderer.withInfoText(String.format(
+        "Only the first %s files are shown; use a more specific pattern or `root` to narrow the search.%s",
+        matches.paths().size(), incompleteIndex
+      ));
+    } else {
+      resultRenderer = OkResultRenderer.success(String.format("Found %s files matching `%s`.", matches.overallCount(), input.getPattern()));
+      if (!incompleteIndex.isEmpty()) {
+        resultRenderer.withInfoText(incompleteIndex.trim());
+      }
+    }
+    matches.paths().forEach(resultRenderer::appendLine);
+
+    log.trace("found {} files", matches.overallCount());
+    return resultRenderer.render(Map.of("maximumExceeded", maximumExceeded));
+  }
+}
+
+@Data
+class FindFilesInput {
+  @NotNull
+  @Pattern(regexp = Validations.REPOSITORY_NAMESPACE_REGEX)
+  @JsonPropertyDescription("The namespace of the repository to find files in.")
+  private String namespace;
+
+  @NotNull
+  @Pattern(regexp = Validations.REPOSITORY_NAME_REGEX)
+  @JsonPropertyDescription("The name of the repository to find files in.")
+  private String name;
+
+  @JsonPropertyDescription("""
+    The revision to find the files in. This can be either a 'real' revision, a branch, or a tag.
+    If this is omitted, the default branch of the repository will be taken.""")
+  private String revision;
+
+  @NotEmpty
+  @JsonPropertyDescription("""
+    The pattern for the files to find. If this contains `*` or `?`, it is handled as a glob pattern:
+    Patterns without a `/` (like `*Controller.java`) are matched against the file names,
+    all others (like `**/pom.xml` or `src/**/*.ts`) against the complete paths.
+    `*` and `?` do not match `/`, while `**` matches any number of directories.
+    Other patterns will find all files whose path contains the pattern, ignoring the case.""")
+  private String pattern;
+
+  @JsonPropertyDescription("If set, only files in this directory will be found.")
+  private String root;
+
+  @Min(1)
+  @JsonPropertyDescription("The maximum number of files that will be returned. The default for this is 100.")
+  private int maximumNumberOfResults = 100;
+}
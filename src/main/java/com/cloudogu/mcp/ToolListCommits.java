@@ -23,41 +23,62 @@ import com.google.common.base.Strings;
 import io.modelcontextprotocol.spec.McpSchema;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang.StringUtils;
 import sonia.scm.plugin.Extension;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Renamed;
+import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryPermissions;
 import sonia.scm.repository.api.LogCommandBuilder;
 import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Extension
 public class ToolListCommits implements TypedTool<ToolListCommits.CompositeInput> {
 
+  /**
+   * Commits may be older than their children (for example due to wrong clocks or rebases), so the log is read
+   * further back than <code>committedAfter</code> by this duration.
+   */
+  private static final Duration CLOCK_SKEW_TOLERANCE = Duration.ofDays(1);
+  private static final int MAXIMUM_FOLLOWED_RENAMES = 5;
+
   private final RepositoryServiceFactory repositoryServiceFactory;
   private final CommitFrontendLinkResolver commitLinkResolver;
   private final TagFrontendLinkResolver tagLinkResolver;
   private final Set<ToolListCommitsFilterEnhancement> extensions;
+  private final SubjectAwareExecutor executor;
+  private final CommitIndexCache commitIndexCache;
 
   @Inject
   public ToolListCommits(RepositoryServiceFactory repositoryServiceFactory,
                          CommitFrontendLinkResolver commitLinkResolver,
                          TagFrontendLinkResolver tagLinkResolver,
-                         Set<ToolListCommitsFilterEnhancement> extensions) {
+                         Set<ToolListCommitsFilterEnhancement> extensions,
+                         SubjectAwareExecutor executor,
+                         CommitIndexCache commitIndexCache) {
     this.repositoryServiceFactory = repositoryServiceFactory;
     this.commitLinkResolver = commitLinkResolver;
     this.tagLinkResolver = tagLinkResolver;
     this.extensions = extensions;
+    this.executor = executor;
+    this.commitIndexCache = commitIndexCache;
   }
 
   @Override
@@ -86,6 +107,17 @@ public class ToolListCommits implements TypedTool<ToolListCommits.CompositeInput
   }
 
   private ToolResult listCommits(CompositeInput compositeInput, RepositoryService repositoryService, ListCommitsInput input) throws IOException {
+    CommitFilter commitFilter;
+    try {
+      commitFilter = CommitFilter.compile(input);
+    } catch (IllegalArgumentException e) {
+      log.trace("got invalid filter expression", e);
+      return ToolResult.error("The filter is invalid: " + e.getMessage());
+    }
+    if (input.isFirstParent() && commitFilter.getPath().isPresent()) {
+      return ToolResult.error("The option `firstParent` cannot be combined with a path.");
+    }
+
     LogCommandBuilder logCommandBuilder = repositoryService
       .getLogCommand()
       .setStartChangeset(input.getRevision())
@@ -102,7 +134,7 @@ public class ToolListCommits implements TypedTool<ToolListCommits.CompositeInput
       return ToolResult.error(error.get());
     }
 
-    ChangesetStreamer.FilterResult filterResult = applyFilters(compositeInput, repositoryService, input, logCommandBuilder);
+    ChangesetStreamer.FilterResult filterResult = applyFilters(compositeInput, repositoryService, input, commitFilter, logCommandBuilder);
 
     log.trace("found {} commits", filterResult.matches().size());
     if (filterResult.matches().isEmpty()) {
@@ -118,10 +150,12 @@ public class ToolListCommits implements TypedTool<ToolListCommits.CompositeInput
     int foundCounter = filterResult.matches().size();
 
     Map<String, Object> structuredContent = createStructuredContent(compositeInput, repositoryService, input, filterResult);
-    renderContent(input, filterResult, resultRenderer);
+    renderContent(input, filterResult, resultRenderer, commitLinkResolver.createTemplate(repositoryService), tagLinkResolver.createTemplate(repositoryService));
 
     OkResultRenderer result;
-    if (filterResult.endOfHistory()) {
+    if (filterResult.overallCount() == ChangesetStreamer.UNKNOWN_COUNT) {
+      result = resultRenderer.withSuccess(String.format("Found the first %s commits.", foundCounter));
+    } else if (filterResult.endOfHistory()) {
       result = resultRenderer.withSuccess(String.format("Found all %s commits of %s in total.", foundCounter, filterResult.overallCount()));
     } else {
       result = resultRenderer.withSuccess(String.format("Found the first %s commits of %s in total.", foundCounter, filterResult.overallCount()));
@@ -130,13 +164,17 @@ public class ToolListCommits implements TypedTool<ToolListCommits.CompositeInput
     return result.render(structuredContent);
   }
 
-  private void renderContent(ListCommitsInput input, ChangesetStreamer.FilterResult filterResult, OkResultRenderer.PostponedResultRenderer resultRenderer) {
+  private void renderContent(ListCommitsInput input,
+                             ChangesetStreamer.FilterResult filterResult,
+                             OkResultRenderer.PostponedResultRenderer resultRenderer,
+                             FrontendLinkTemplate commitLinks,
+                             FrontendLinkTemplate tagLinks) {
     for (Changeset changeset : filterResult.matches()) {
-      resultRenderer.append("commit [").append(changeset.getId()).append("](").append(createCommitLink(input, changeset.getId())).append(")");
+      resultRenderer.append("commit [").append(changeset.getId()).append("](").append(createCommitLink(input, changeset.getId(), commitLinks)).append(")");
       if (!changeset.getTags().isEmpty() || !changeset.getBranches().isEmpty()) {
         resultRenderer.append(" (");
         if (!changeset.getTags().isEmpty()) {
-          resultRenderer.append(changeset.getTags().stream().map(t -> "tag: [" + t + "](" + createTagLink(input, t) + ")").collect(Collectors.joining(", ")));
+          resultRenderer.append(changeset.getTags().stream().map(t -> "tag: [" + t + "](" + createTagLink(input, t, tagLinks) + ")").collect(Collectors.joining(", ")));
         }
         if (!changeset.getBranches().isEmpty()) {
           resultRenderer.append(String.join(", ", changeset.getBranches()));
@@ -152,56 +190,244 @@ public class ToolListCommits implements TypedTool<ToolListCommits.CompositeInput
     }
   }
 
-  private String createCommitLink(ListCommitsInput input, String revision) {
+  private String createCommitLink(ListCommitsInput input, String revision, FrontendLinkTemplate commitLinks) {
     CreateFrontendLinkInput linkInput = new CreateFrontendLinkInput();
     linkInput.setTargetType("commit");
     linkInput.setNamespace(input.getNamespace());
     linkInput.setName(input.getName());
     linkInput.setRevision(revision);
-    return commitLinkResolver.createLink(linkInput).url();
+    return commitLinks.createLink(linkInput).url();
   }
 
-  private String createTagLink(ListCommitsInput input, String tag) {
+  private String createTagLink(ListCommitsInput input, String tag, FrontendLinkTemplate tagLinks) {
     CreateFrontendLinkInput linkInput = new CreateFrontendLinkInput();
     linkInput.setTargetType("tag");
     linkInput.setNamespace(input.getNamespace());
     linkInput.setName(input.getName());
     linkInput.setRevision(tag);
-    return tagLinkResolver.createLink(linkInput).url();
+    return tagLinks.createLink(linkInput).url();
   }
 
-  private Map<String, Object> createStructuredContent(CompositeInput compositeInput, RepositoryService repositoryService, ListCommitsInput input, ChangesetStreamer.FilterResult filterResult) {
-    Map<String, Object> structuredContent = input.isIncludeDetails() ? new HashMap<>() : null;
+  private Map<String, Object> createStructuredContent(CompositeInput compositeInput, RepositoryService repositoryService, ListCommitsInput input, ChangesetStreamer.FilterResult filterResult) throws IOException {
+    if (!input.isIncludeDetails()) {
+      return null;
+    }
+    Map<String, Object> structuredContent = new HashMap<>();
+    Map<String, Map<String, Object>> changesetInfos = new HashMap<>();
     for (Changeset changeset : filterResult.matches()) {
-      if (input.isIncludeDetails()) {
-        Map<String, Object> changesetInfo = new HashMap<>();
-        changesetInfo.put("author", changeset.getAuthor());
-        changesetInfo.put("description", changeset.getDescription());
-        changesetInfo.put("contributors", changeset.getContributors());
-        changesetInfo.put("parents", changeset.getParents());
-        changesetInfo.put("tags", changeset.getTags());
-        extensions.forEach(extension -> extension.enhanceStructuredResult(repositoryService.getRepository(), changeset, compositeInput, changesetInfo::put));
-        structuredContent.put(changeset.getId(), changesetInfo);
-      }
+      Map<String, Object> changesetInfo = new HashMap<>();
+      changesetInfo.put("author", changeset.getAuthor());
+      changesetInfo.put("description", changeset.getDescription());
+      changesetInfo.put("contributors", changeset.getContributors());
+      changesetInfo.put("parents", changeset.getParents());
+      changesetInfo.put("tags", changeset.getTags());
+      changesetInfos.put(changeset.getId(), changesetInfo);
+      structuredContent.put(changeset.getId(), changesetInfo);
     }
+    // each extension collects its details separately, so that the extensions can run in parallel
+    List<Map<String, Map<String, Object>>> enhancements = callExtensions(extension -> {
+      Map<String, Map<String, Object>> details = new HashMap<>();
+      extension.enhanceStructuredResults(
+        repositoryService.getRepository(),
+        filterResult.matches(),
+        compositeInput,
+        changeset -> details.computeIfAbsent(changeset.getId(), id -> new HashMap<>())::put
+      );
+      return details;
+    });
+    enhancements.forEach(details -> details.forEach((id, values) -> changesetInfos.get(id).putAll(values)));
     return structuredContent;
   }
 
-  private ChangesetStreamer.FilterResult applyFilters(CompositeInput compositeInput, RepositoryService repositoryService, ListCommitsInput input, LogCommandBuilder logCommandBuilder) throws IOException {
-    ChangesetStreamer streamer = new ChangesetStreamer(logCommandBuilder, 20);
-    return streamer.fetchFiltered(
-      changeset -> (Strings.isNullOrEmpty(input.getAuthorFilter())
-        || StringUtils.containsIgnoreCase(changeset.getAuthor().toString(), input.getAuthorFilter()))
-        && (Strings.isNullOrEmpty(input.getCommitMessageFilter())
-        || StringUtils.containsIgnoreCase(changeset.getDescription(), input.getCommitMessageFilter()))
-        && (input.getCommittedBefore() == null
-        || Instant.ofEpochMilli(changeset.getDate()).isBefore(input.getCommittedBefore()))
-        && (input.getCommittedAfter() == null
-        || Instant.ofEpochMilli(changeset.getDate()).isAfter(input.getCommittedAfter()))
-        && (extensions.stream().allMatch(extension -> extension.includeCommit(repositoryService.getRepository(), changeset, compositeInput)
-      )),
-      input.getLimit()
+  private ChangesetStreamer.FilterResult applyFilters(CompositeInput compositeInput,
+                                                      RepositoryService repositoryService,
+                                                      ListCommitsInput input,
+                                                      CommitFilter commitFilter,
+                                                      LogCommandBuilder logCommandBuilder) throws IOException {
+    ChangesetStreamer.ChunkFilter filter = chunk -> applyExtensionFilters(
+      compositeInput,
+      repositoryService,
+      chunk.stream().filter(commitFilter::matches).toList()
     );
+
+    Optional<String> path = commitFilter.getPath();
+    if (path.isEmpty() && commitFilter.hasPredicates() && !compositeInput.hasExtensionInputs()) {
+      Optional<ChangesetStreamer.FilterResult> indexedResult = applyIndexedFilters(compositeInput, repositoryService, input, commitFilter);
+      if (indexedResult.isPresent()) {
+        return indexedResult.get();
+      }
+    }
+    path.ifPresent(logCommandBuilder::setPath);
+    ChangesetStreamer.FilterResult filterResult = createStreamer(logCommandBuilder, input.getRevision(), input, commitFilter)
+      .fetchChunkFiltered(filter, input.getLimit());
+    if (path.isPresent() && input.isFollowRenames()) {
+      return followRenames(filterResult, path.get(), filter, commitFilter, repositoryService, input, logCommandBuilder);
+    }
+    return filterResult;
+  }
+
+  /**
+   * Filters the commits with the {@link CommitIndex} of the requested head, so that only the matching changesets have
+   * to be loaded. If there is no index yet, it will be built in the background for further requests, and an empty
+   * optional is returned.
+   */
+  private Optional<ChangesetStreamer.FilterResult> applyIndexedFilters(CompositeInput compositeInput, RepositoryService repositoryService, ListCommitsInput input, CommitFilter commitFilter) throws IOException {
+    Optional<String> head = RevisionResolver.resolve(repositoryService, input.getRevision());
+    if (head.isEmpty()) {
+      return Optional.empty();
+    }
+    Repository repository = repositoryService.getRepository();
+    Optional<CommitIndex> index = commitIndexCache.get(repository.getId(), head.get());
+    if (index.isEmpty()) {
+      commitIndexCache.buildInBackground(repository.getId(), head.get(), () -> buildCommitIndex(repository, head.get()));
+      return Optional.empty();
+    }
+    log.trace("using commit index for {}", head.get());
+    return Optional.of(filterWithIndex(compositeInput, repositoryService, input, commitFilter, index.get()));
+  }
+
+  private ChangesetStreamer.FilterResult filterWithIndex(CompositeInput compositeInput,
+                                                         RepositoryService repositoryService,
+                                                         ListCommitsInput input,
+                                                         CommitFilter commitFilter,
+                                                         CommitIndex index) throws IOException {
+    IntPredicate filter = row -> commitFilter.matches(index, row);
+    IntUnaryOperator findNext = input.isFirstParent()
+      ? fromRow -> index.findNextOnFirstParents(fromRow, filter)
+      : fromRow -> index.findNext(fromRow, filter);
+    IntUnaryOperator successor = input.isFirstParent() ? index::getFirstParent : row -> row + 1;
+
+    List<Changeset> matches = new ArrayList<>();
+    int nextRow = findNext.applyAsInt(0);
+    int searched = 0;
+    while (nextRow >= 0 && matches.size() < input.getLimit()) {
+      List<Changeset> candidates = new ArrayList<>();
+      while (nextRow >= 0 && candidates.size() < input.getLimit() - matches.size()) {
+        candidates.add(repositoryService.getLogCommand().getChangeset(index.getId(nextRow)));
+        searched = nextRow + 1;
+        nextRow = findNext.applyAsInt(successor.applyAsInt(nextRow));
+      }
+      matches.addAll(applyExtensionFilters(compositeInput, repositoryService, candidates));
+    }
+    boolean endOfHistory = nextRow < 0;
+    int overallCount = input.isFirstParent() ? index.getFirstParentCount() : index.size();
+    return new ChangesetStreamer.FilterResult(
+      matches,
+      endOfHistory ? overallCount : searched,
+      endOfHistory,
+      overallCount,
+      matches.isEmpty() ? null : matches.get(matches.size() - 1)
+    );
+  }
+
+  private Optional<CommitIndex> buildCommitIndex(Repository repository, String head) throws IOException {
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(repository)) {
+      LogCommandBuilder logCommand = repositoryService.getLogCommand().setStartChangeset(head);
+      ChangesetStreamer.FilterResult history = new ChangesetStreamer(logCommand, head, executor)
+        .fetchFiltered(changeset -> true, CommitIndexCache.MAXIMUM_COMMITS + 1);
+      if (history.matches().size() > CommitIndexCache.MAXIMUM_COMMITS) {
+        return Optional.empty();
+      }
+      return Optional.of(CommitIndex.of(history.matches()));
+    }
+  }
+
+  private List<Changeset> applyExtensionFilters(CompositeInput compositeInput, RepositoryService repositoryService, List<Changeset> candidates) throws IOException {
+    if (candidates.isEmpty() || extensions.isEmpty()) {
+      return candidates;
+    }
+    Set<String> included = candidates.stream().map(Changeset::getId).collect(Collectors.toSet());
+    for (List<Changeset> extensionResult : callExtensions(extension -> extension.includeCommits(repositoryService.getRepository(), candidates, compositeInput))) {
+      included.retainAll(extensionResult.stream().map(Changeset::getId).collect(Collectors.toSet()));
+    }
+    return candidates.stream().filter(changeset -> included.contains(changeset.getId())).toList();
+  }
+
+  /**
+   * Calls the extensions and collects their results in the order of the extensions. If there is more than one
+   * extension, they are called in parallel, so that independent lookups of the extensions do not add up.
+   */
+  private <T> List<T> callExtensions(Function<ToolListCommitsFilterEnhancement, T> call) throws IOException {
+    List<T> results = new ArrayList<>();
+    if (extensions.size() == 1) {
+      extensions.forEach(extension -> results.add(call.apply(extension)));
+      return results;
+    }
+    List<Future<T>> futures = extensions.stream()
+      .map(extension -> executor.submit(() -> call.apply(extension)))
+      .toList();
+    try {
+      for (Future<T> future : futures) {
+        results.add(SubjectAwareExecutor.await(future));
+      }
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+    return results;
+  }
+
+  private ChangesetStreamer createStreamer(LogCommandBuilder logCommandBuilder, String startChangeset, ListCommitsInput input, CommitFilter commitFilter) {
+    ChangesetStreamer streamer = new ChangesetStreamer(logCommandBuilder, startChangeset, executor);
+    commitFilter.getLowerDateBound().ifPresent(bound -> streamer.stopBefore(bound, CLOCK_SKEW_TOLERANCE));
+    if (commitFilter.getPath().isPresent()) {
+      streamer.prunedHistory();
+    }
+    if (input.isFirstParent()) {
+      streamer.firstParentOnly();
+    }
+    return streamer;
+  }
+
+  /**
+   * When the history of the path ends with a commit, that renamed the file, the history is continued with the old
+   * path, starting with the parent of this commit. Each rename costs one additional modifications request, and at most
+   * {@link #MAXIMUM_FOLLOWED_RENAMES} renames are followed.
+   */
+  private ChangesetStreamer.FilterResult followRenames(ChangesetStreamer.FilterResult filterResult,
+                                                        String path,
+                                                        ChangesetStreamer.ChunkFilter filter,
+                                                        CommitFilter commitFilter,
+                                                        RepositoryService repositoryService,
+                                                        ListCommitsInput input,
+                                                        LogCommandBuilder logCommandBuilder) throws IOException {
+    String currentPath = path;
+    ChangesetStreamer.FilterResult result = filterResult;
+    for (int renames = 0; renames < MAXIMUM_FOLLOWED_RENAMES && result.endOfHistory() && result.matches().size() < input.getLimit(); ++renames) {
+      Changeset oldestChangeset = result.lastChangeset();
+      if (oldestChangeset == null || oldestChangeset.getParents() == null || oldestChangeset.getParents().isEmpty()) {
+        break;
+      }
+      Optional<Instant> lowerDateBound = commitFilter.getLowerDateBound();
+      if (lowerDateBound.isPresent() && Instant.ofEpochMilli(oldestChangeset.getDate()).isBefore(lowerDateBound.get())) {
+        // the log has been stopped at the date window, not at the rename
+        break;
+      }
+      Optional<String> oldPath = findOldPath(repositoryService, oldestChangeset.getId(), currentPath);
+      if (oldPath.isEmpty()) {
+        break;
+      }
+      log.trace("following rename of {} to {} in changeset {}", oldPath.get(), currentPath, oldestChangeset.getId());
+      currentPath = oldPath.get();
+      String parent = oldestChangeset.getParents().get(0);
+      logCommandBuilder
+        .setPath(currentPath)
+        .setStartChangeset(parent);
+      result = result.append(
+        createStreamer(logCommandBuilder, parent, input, commitFilter).fetchChunkFiltered(filter, input.getLimit() - result.matches().size())
+      );
+    }
+    return result;
+  }
+
+  private static Optional<String> findOldPath(RepositoryService repositoryService, String revision, String path) throws IOException {
+    return repositoryService.getModificationsCommand()
+      .revision(revision)
+      .getModifications()
+      .getRenamed()
+      .stream()
+      .filter(renamed -> path.equals(renamed.getNewPath()))
+      .map(Renamed::getOldPath)
+      .findFirst();
   }
 
   @Override
@@ -338,5 +564,9 @@ public class ToolListCommits implements TypedTool<ToolListCommits.CompositeInput
     void addExtensionInput(String namespace, Object extensionInput) {
       extensionInputs.put(namespace, extensionInput);
     }
+
+    boolean hasExtensionInputs() {
+      return !extensionInputs.isEmpty();
+    }
   }
 }
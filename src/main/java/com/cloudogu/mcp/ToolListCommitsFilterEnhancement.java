@@ -21,8 +21,10 @@ import sonia.scm.repository.Changeset;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.api.LogCommandBuilder;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 @ExtensionPoint
 public interface ToolListCommitsFilterEnhancement {
@@ -52,6 +54,25 @@ public interface ToolListCommitsFilterEnhancement {
     return true;
   }
 
+  /**
+   * This is called with a chunk of potential changesets to check, which of them should be part of the result. This can
+   * be implemented, when the check can be done more efficiently for multiple changesets at once (for example with a
+   * single query to a store). The default implementation calls
+   * {@link #includeCommit(Repository, Changeset, ToolListCommits.CompositeInput)} for each changeset.
+   * <p>
+   * This may be called in parallel to the other extensions.
+   *
+   * @param repository The repository that is queried.
+   * @param changesets The changesets to check.
+   * @param input      The input for this query.
+   * @return The changesets that should be part of the result.
+   */
+  default List<Changeset> includeCommits(Repository repository, List<Changeset> changesets, ToolListCommits.CompositeInput input) {
+    return changesets.stream()
+      .filter(changeset -> includeCommit(repository, changeset, input))
+      .toList();
+  }
+
   /**
    * Can be implemented to configure the {@link LogCommandBuilder} that is used to load the changesets.
    *
@@ -77,6 +98,24 @@ public interface ToolListCommitsFilterEnhancement {
     // does nothing by default
   }
 
+  /**
+   * Can be implemented to enhance the structured result for all found commits at once, if details have been selected.
+   * The default implementation calls
+   * {@link #enhanceStructuredResult(Repository, Changeset, ToolListCommits.CompositeInput, BiConsumer)} for each
+   * changeset.
+   * <p>
+   * This may be called in parallel to the other extensions.
+   *
+   * @param repository        The repository that is queried.
+   * @param changesets        The commits to add details for.
+   * @param input             The input for this query.
+   * @param keyValueConsumers Call this with a commit to get the consumer for the key and the value that shall be added
+   *                          to the result for this commit.
+   */
+  default void enhanceStructuredResults(Repository repository, List<Changeset> changesets, ToolListCommits.CompositeInput input, Function<Changeset, BiConsumer<String, Object>> keyValueConsumers) {
+    changesets.forEach(changeset -> enhanceStructuredResult(repository, changeset, input, keyValueConsumers.apply(changeset)));
+  }
+
   /**
    * "Extracts" the specific input for this enhancement, if {@link #getInputClass()} returns an input class.
    *
@@ -16,6 +16,7 @@
 
 package com.cloudogu.mcp;
 
+import com.cloudogu.mcp.FileTreeRenderer.Counts;
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
 import com.google.common.base.Strings;
 import jakarta.inject.Inject;
@@ -25,6 +26,8 @@ import jakarta.validation.constraints.Pattern;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import sonia.scm.plugin.Extension;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.Changeset;
 import sonia.scm.repository.FileObject;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.RepositoryPermissions;
@@ -32,19 +35,34 @@ import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Slf4j
 @Extension
 public class ToolListFiles implements TypedTool<ListFilesInput> {
 
+  /**
+   * If entries may be left out (because of filters, the maximum depth or for an overview), the tree is read with this
+   * limit instead of the requested maximum, so that enough entries remain.
+   */
+  private static final int PREFETCH_LIMIT = 5_000;
+  private static final Duration LAST_COMMIT_TIME_BUDGET = Duration.ofSeconds(5);
+
   private final RepositoryServiceFactory repositoryServiceFactory;
+  private final BrowseTreeCache browseTreeCache;
 
   @Inject
-  public ToolListFiles(RepositoryServiceFactory repositoryServiceFactory) {
+  public ToolListFiles(RepositoryServiceFactory repositoryServiceFactory, BrowseTreeCache browseTreeCache) {
     this.repositoryServiceFactory = repositoryServiceFactory;
+    this.browseTreeCache = browseTreeCache;
   }
 
   @Override
@@ -56,7 +74,7 @@ public class ToolListFiles implements TypedTool<ListFilesInput> {
   public ToolResult execute(ListFilesInput input) {
     log.trace("executing request {}", input);
 
-    FileObject root;
+    Listing listing;
 
     try (RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName(input.getNamespace(), input.getName()))) {
       if (!RepositoryPermissions.read(repositoryService.getRepository()).isPermitted()) {
@@ -64,18 +82,17 @@ public class ToolListFiles implements TypedTool<ListFilesInput> {
         return ToolResult.error("User is not authorized to use this resource.");
       }
 
-      root =
-        repositoryService
-          .getBrowseCommand()
-          .setRevision(input.getRevision())
-          .setPath(getEffectivePath(input))
-          .setRecursive(input.isRecursive())
-          .setDisableLastCommit(true)
-          .setDisablePreProcessors(true)
-          .setDisableSubRepositoryDetection(true)
-          .setLimit(input.getMaximumNumberOfFiles())
-          .getBrowserResult()
-          .getFile();
+      TreeReader treeReader = new TreeReader(input.getRevision(), repositoryService);
+      if (input.isOverview()) {
+        listing = createOverview(input, treeReader);
+      } else if (isWalking(input)) {
+        listing = walk(input, treeReader);
+      } else {
+        listing = filter(treeReader.read(getEffectivePath(input), isRecursiveBrowse(input), getBrowseLimit(input)), input);
+      }
+      if (input.isIncludeLastModified() || input.isIncludeLastCommit()) {
+        listing = addLastCommits(listing, input, treeReader.getRevision(), repositoryService);
+      }
     } catch (IOException e) {
       log.debug("got exception while executing request", e);
       return ToolResult.error(
@@ -83,63 +100,222 @@ public class ToolListFiles implements TypedTool<ListFilesInput> {
       );
     }
 
-    return createResult(root);
+    return createResult(listing, input);
   }
 
-  private ToolResult createResult(FileObject root) {
-    Counts counts = count(root);
+  /**
+   * Walks the tree directory by directory with non-recursive browse commands, so that excluded directories and
+   * directories below the maximum depth are not read from the backend at all.
+   */
+  private Listing walk(ListFilesInput input, TreeReader treeReader) throws IOException {
+    int limit = getBrowseLimit(input);
+    FileObject tree = treeReader.read(getEffectivePath(input), false, limit);
+    BrowsingDirectorySource directorySource = new BrowsingDirectorySource(treeReader, limit, limit - tree.getChildren().size());
+    TreeWalker walker = new TreeWalker(input, input.getMaximumNumberOfFiles(), directorySource);
+    FileObject filteredTree = walker.copy(tree, getRootPath(input), 0);
+    filteredTree.setTruncated(tree.isTruncated() || walker.truncated);
+    return new Listing(filteredTree, Map.of(), Map.of(), 0, false);
+  }
 
-    OkResultRenderer resultRenderer;
-    if (root.isTruncated()) {
-      resultRenderer = OkResultRenderer.ok("TRUNCATED", "Maximum file limit reached.");
-      resultRenderer.withInfoText(String.format("Displaying the first %s directories and %s files.", counts.directories - 1, counts.files));
-    } else {
-      resultRenderer = OkResultRenderer.success("File listing complete.");
-      resultRenderer.withInfoText(String.format("Found %s directories and %s files. The result is complete.", counts.directories - 1, counts.files));
+  /**
+   * Only excludes and the maximum depth allow to skip directories, so that a walk pays off compared to a single
+   * recursive browse command.
+   */
+  private boolean isWalking(ListFilesInput input) {
+    return isRecursiveBrowse(input) && (hasExcludes(input) || input.getMaxDepth() != null);
+  }
+
+  /**
+   * Without filters, each entry read from the backend will be listed, so the requested maximum is sufficient.
+   */
+  private int getBrowseLimit(ListFilesInput input) {
+    if (hasFilters(input) || input.isOverview() || (isRecursiveBrowse(input) && input.getMaxDepth() != null)) {
+      return Math.max(PREFETCH_LIMIT, input.getMaximumNumberOfFiles());
     }
-    formatAsTree(resultRenderer, root);
+    return input.getMaximumNumberOfFiles();
+  }
 
-    log.trace("files read");
-    return resultRenderer.render(Map.of("maximumExceeded", root.isTruncated()));
+  /**
+   * The backend only has to read the tree recursively, if the request is recursive and the depth is not limited to
+   * the direct children.
+   */
+  private boolean isRecursiveBrowse(ListFilesInput input) {
+    return isRecursive(input) && (input.getMaxDepth() == null || input.getMaxDepth() > 1);
   }
 
-  private Counts count(FileObject root) {
-    if (root.isDirectory()) {
-      int fileCount = 0;
-      int directoryCount = 1;
-      for (FileObject file : root.getChildren()) {
-        Counts subCounts = count(file);
-        fileCount += subCounts.files;
-        directoryCount += subCounts.directories;
+  private static boolean isRecursive(ListFilesInput input) {
+    return input.isRecursive() || input.isOverview();
+  }
+
+  private boolean hasFilters(ListFilesInput input) {
+    return !(input.getInclude() == null || input.getInclude().isEmpty()) || hasExcludes(input);
+  }
+
+  private boolean hasExcludes(ListFilesInput input) {
+    return !(input.getExclude() == null || input.getExclude().isEmpty());
+  }
+
+  /**
+   * Creates a copy of the tree with the filters of the request and at most the requested number of entries. The tree
+   * must not be modified, because it may be shared by the cache.
+   */
+  private Listing filter(FileObject tree, ListFilesInput input) throws IOException {
+    TreeWalker walker = new TreeWalker(input, input.getMaximumNumberOfFiles(), DirectorySource.IN_MEMORY);
+    FileObject filteredTree = walker.copy(tree, getRootPath(input), 0);
+    filteredTree.setTruncated(tree.isTruncated() || walker.truncated);
+    return new Listing(filteredTree, Map.of(), Map.of(), 0, false);
+  }
+
+  /**
+   * Spreads the maximum number of entries breadth-first over the tree, which is read level by level with
+   * non-recursive browse commands. Directories are either listed with all their children, or they are collapsed and
+   * only the number of their direct children is shown. Because directories are listed before their content is read,
+   * directories without included files are not left out here.
+   */
+  private Listing createOverview(ListFilesInput input, TreeReader treeReader) throws IOException {
+    int limit = getBrowseLimit(input);
+    TreeWalker filters = new TreeWalker(input, Integer.MAX_VALUE, DirectorySource.IN_MEMORY);
+    Map<FileObject, Counts> collapsedDirectories = new IdentityHashMap<>();
+    FileObject tree = treeReader.read(getEffectivePath(input), false, limit);
+    FileObject root = TreeWalker.copyNode(tree);
+    boolean sourceTruncated = false;
+    Deque<PendingDirectory> queue = new ArrayDeque<>();
+    queue.add(new PendingDirectory(root, getRootPath(input), 0));
+    int remaining = input.getMaximumNumberOfFiles();
+    while (!queue.isEmpty()) {
+      PendingDirectory next = queue.poll();
+      FileObject copy = next.copy();
+      FileObject original = copy == root ? tree : treeReader.read(next.path(), false, limit);
+      sourceTruncated |= original.isTruncated();
+      List<FileObject> listedChildren = original.getChildren().stream()
+        .filter(child -> filters.isListed(child, childPath(next.path(), child)))
+        .toList();
+      if (copy != root && listedChildren.size() > remaining) {
+        FileObject listedDirectory = TreeWalker.copyNode(original);
+        listedDirectory.setChildren(listedChildren);
+        collapsedDirectories.put(copy, FileTreeRenderer.count(listedDirectory));
+        continue;
       }
-      return new Counts(fileCount, directoryCount);
-    } else {
-      return new Counts(1, 0);
+      List<FileObject> children = new ArrayList<>();
+      for (FileObject child : listedChildren) {
+        if (remaining == 0) {
+          root.setTruncated(true);
+          break;
+        }
+        remaining--;
+        FileObject childCopy = TreeWalker.copyNode(child);
+        children.add(childCopy);
+        if (child.isDirectory() && filters.isDescending(next.depth() + 1)) {
+          queue.add(new PendingDirectory(childCopy, childPath(next.path(), child), next.depth() + 1));
+        }
+      }
+      copy.setChildren(children);
     }
+    root.setTruncated(root.isTruncated() || sourceTruncated);
+    return new Listing(root, collapsedDirectories, Map.of(), 0, sourceTruncated);
   }
 
-  private void formatAsTree(OkResultRenderer resultRenderer, FileObject root) {
-    // Start recursion with an empty prefix
-    buildTree(root, resultRenderer, "", true);
+  private static String childPath(String path, FileObject child) {
+    return path.isEmpty() ? child.getName() : path + "/" + child.getName();
   }
 
-  private void buildTree(FileObject file, OkResultRenderer resultRenderer, String prefix, boolean isLast) {
-    // 1. Append the current node with its prefix
-    resultRenderer.append(prefix)
-      .append(isLast ? "└── " : "├── ")
-      .append(file.getName())
-      .append(file.isDirectory() ? "/" : "") // Add slash for directories
-      .append("\n");
+  /**
+   * Computes the last commits for all listed entries with a single walk over the history.
+   */
+  private Listing addLastCommits(Listing listing, ListFilesInput input, String revision, RepositoryService repositoryService) throws IOException {
+    Map<FileObject, String> paths = new IdentityHashMap<>();
+    Deque<FileObject> stack = new ArrayDeque<>();
+    stack.push(listing.root());
+    paths.put(listing.root(), getRootPath(input));
+    while (!stack.isEmpty()) {
+      FileObject file = stack.pop();
+      for (FileObject child : file.getChildren()) {
+        paths.put(child, paths.get(file).isEmpty() ? child.getName() : paths.get(file) + "/" + child.getName());
+        stack.push(child);
+      }
+    }
+    paths.remove(listing.root());
 
-    // 2. Prepare prefix for children
-    String newPrefix = prefix + (isLast ? "    " : "│   ");
+    List<String> files = paths.entrySet().stream().filter(entry -> !entry.getKey().isDirectory()).map(Map.Entry::getValue).toList();
+    List<String> directories = paths.entrySet().stream().filter(entry -> entry.getKey().isDirectory()).map(Map.Entry::getValue).toList();
+    Map<String, Changeset> lastCommits = new LastCommitCollector(LAST_COMMIT_TIME_BUDGET).collect(repositoryService, revision, files, directories);
 
-    // 3. Recurse through children
-    List<FileObject> children = new ArrayList<>(file.getChildren());
-    for (int i = 0; i < children.size(); i++) {
-      boolean lastChild = (i == children.size() - 1);
-      buildTree(children.get(i), resultRenderer, newPrefix, lastChild);
+    Map<FileObject, Changeset> lastCommitsForFiles = new IdentityHashMap<>();
+    paths.forEach((file, path) -> {
+      if (lastCommits.containsKey(path)) {
+        lastCommitsForFiles.put(file, lastCommits.get(path));
+      }
+    });
+    return new Listing(listing.root(), listing.collapsedDirectories(), lastCommitsForFiles, paths.size() - lastCommitsForFiles.size(), listing.sourceTruncated());
+  }
+
+  private Map<FileObject, String> createDetails(Listing listing, ListFilesInput input) {
+    Map<FileObject, String> details = new IdentityHashMap<>();
+    if (!(input.isIncludeSize() || input.isIncludeLastModified() || input.isIncludeLastCommit())) {
+      return details;
     }
+    Deque<FileObject> stack = new ArrayDeque<>(listing.root().getChildren());
+    while (!stack.isEmpty()) {
+      FileObject file = stack.pop();
+      stack.addAll(file.getChildren());
+      List<String> parts = new ArrayList<>();
+      if (input.isIncludeSize() && !file.isDirectory() && file.getLength().isPresent()) {
+        parts.add(file.getLength().getAsLong() + " bytes");
+      }
+      Changeset lastCommit = listing.lastCommits().get(file);
+      if ((input.isIncludeLastModified() || input.isIncludeLastCommit()) && lastCommit == null) {
+        parts.add("last commit unknown");
+      }
+      if (input.isIncludeLastModified() && lastCommit != null) {
+        parts.add("modified " + Instant.ofEpochMilli(lastCommit.getDate()));
+      }
+      if (input.isIncludeLastCommit() && lastCommit != null) {
+        parts.add("last commit " + lastCommit.getId() + " by " + lastCommit.getAuthor().getName());
+      }
+      if (!parts.isEmpty()) {
+        details.put(file, String.join(", ", parts));
+      }
+    }
+    return details;
+  }
+
+  private ToolResult createResult(Listing listing, ListFilesInput input) {
+    FileObject root = listing.root();
+    FileTreeRenderer renderer = new FileTreeRenderer(input.getFormat(), getRootPath(input), listing.collapsedDirectories(), createDetails(listing, input));
+    String renderedTree = renderer.render(root);
+    Counts counts = renderer.getCounts();
+    String unknownLastCommits = "";
+    if (listing.unknownLastCommits() > 0) {
+      unknownLastCommits = String.format(" The last commit could not be determined for %s entries.", listing.unknownLastCommits());
+    }
+
+    OkResultRenderer resultRenderer;
+    if (!listing.collapsedDirectories().isEmpty()) {
+      String sourceTruncated = "";
+      if (listing.sourceTruncated()) {
+        sourceTruncated = " Some directories contain too many entries to be read completely, so that the overview is incomplete.";
+      }
+      resultRenderer = OkResultRenderer.ok("OVERVIEW", "Maximum file limit reached, the tree is shown breadth-first.");
+      resultRenderer.withInfoText(String.format(
+        "Displaying %s directories and %s files. %s directories are collapsed and only the number of their direct children is shown; use them as `root` to list them in detail.%s%s",
+        counts.directories(), counts.files(), listing.collapsedDirectories().size(), sourceTruncated, unknownLastCommits
+      ));
+    } else if (root.isTruncated()) {
+      resultRenderer = OkResultRenderer.ok("TRUNCATED", "Maximum file limit reached.");
+      resultRenderer.withInfoText(String.format("Displaying the first %s directories and %s files.%s", counts.directories(), counts.files(), unknownLastCommits));
+    } else {
+      resultRenderer = OkResultRenderer.success("File listing complete.");
+      resultRenderer.withInfoText(String.format("Found %s directories and %s files. The result is complete.%s", counts.directories(), counts.files(), unknownLastCommits));
+    }
+    resultRenderer.append(renderedTree);
+
+    log.trace("files read");
+    return resultRenderer.render(Map.of("maximumExceeded", root.isTruncated() || !listing.collapsedDirectories().isEmpty()));
+  }
+
+  private String getRootPath(ListFilesInput input) {
+    String path = getEffectivePath(input);
+    return path.equals("/") ? "" : path;
   }
 
   private String getEffectivePath(ListFilesInput input) {
@@ -164,7 +340,196 @@ public class ToolListFiles implements TypedTool<ListFilesInput> {
       a `/` to distinguish them from files.""";
   }
 
-  private record Counts(int files, int directories) {
+  private record Listing(FileObject root, Map<FileObject, Counts> collapsedDirectories, Map<FileObject, Changeset> lastCommits, int unknownLastCommits, boolean sourceTruncated) {
+  }
+
+  private record PendingDirectory(FileObject copy, String path, int depth) {
+  }
+
+  /**
+   * Reads trees from the backend or, for resolved revisions, from the cache.
+   */
+  /**
+   * Reads trees with the revision reported by the first browse command, so that the following trees are read for the
+   * same changeset and can be cached. Only if the backend does not report a revision, it is resolved separately. Trees
+   * are cached for changeset ids only, so the cache can be looked up with the requested revision before, too.
+   */
+  private class TreeReader {
+    private final RepositoryService repositoryService;
+    private String revision;
+    private boolean resolved;
+    private boolean firstRead = true;
+
+    TreeReader(String revision, RepositoryService repositoryService) {
+      this.revision = revision;
+      this.repositoryService = repositoryService;
+    }
+
+    FileObject read(String path, boolean recursive, int limit) throws IOException {
+      String repositoryId = repositoryService.getRepository().getId();
+      Optional<FileObject> cachedTree = resolved || !Strings.isNullOrEmpty(revision)
+        ? browseTreeCache.find(repositoryId, revision, path, recursive, limit)
+        : Optional.empty();
+      if (cachedTree.isPresent()) {
+        log.trace("found tree in cache");
+        return cachedTree.get();
+      }
+      BrowserResult browserResult = RepositoryTree.browse(repositoryService, revision, path, recursive, limit);
+      if (firstRead) {
+        firstRead = false;
+        resolve(browserResult);
+      }
+      if (resolved) {
+        browseTreeCache.put(repositoryId, revision, path, recursive, limit, browserResult.getFile());
+      }
+      return browserResult.getFile();
+    }
+
+    private void resolve(BrowserResult browserResult) throws IOException {
+      Optional<String> resolvedRevision = browserResult.getRevision() == null
+        ? RevisionResolver.resolve(repositoryService, revision)
+        : Optional.of(browserResult.getRevision());
+      if (resolvedRevision.isPresent()) {
+        revision = resolvedRevision.get();
+        resolved = true;
+      }
+    }
+
+    String getRevision() {
+      return revision;
+    }
+  }
+
+  /**
+   * Provides the content of the directories a {@link TreeWalker} descends into.
+   */
+  @FunctionalInterface
+  private interface DirectorySource {
+
+    /**
+     * For trees that have been read recursively, the content is already part of the tree.
+     */
+    DirectorySource IN_MEMORY = (directory, path) -> directory;
+
+    FileObject read(FileObject directory, String path) throws IOException;
+  }
+
+  /**
+   * Reads each directory with a non-recursive browse command. When too many entries have been read, the remaining
+   * directories are not read any more and are marked as truncated instead.
+   */
+  private static class BrowsingDirectorySource implements DirectorySource {
+    private final TreeReader treeReader;
+    private final int limit;
+    private int remainingEntries;
+
+    BrowsingDirectorySource(TreeReader treeReader, int limit, int remainingEntries) {
+      this.treeReader = treeReader;
+      this.limit = limit;
+      this.remainingEntries = remainingEntries;
+    }
+
+    @Override
+    public FileObject read(FileObject directory, String path) throws IOException {
+      if (remainingEntries <= 0) {
+        FileObject unread = TreeWalker.copyNode(directory);
+        unread.setTruncated(true);
+        return unread;
+      }
+      FileObject tree = treeReader.read(path, false, limit);
+      remainingEntries -= tree.getChildren().size();
+      return tree;
+    }
+  }
+
+  /**
+   * Walks a tree and creates a copy containing only the entries that match the filters of the request, up to the
+   * maximum number of entries. Excluded directories and directories below the maximum depth are not walked at all.
+   */
+  private static class TreeWalker {
+    private final boolean recursive;
+    private final Integer maxDepth;
+    private final List<Glob> includes;
+    private final List<Glob> excludes;
+    private final DirectorySource directorySource;
+    private int remaining;
+    private boolean truncated;
+
+    TreeWalker(ListFilesInput input, int maximumNumberOfFiles, DirectorySource directorySource) {
+      this.recursive = isRecursive(input);
+      this.maxDepth = input.getMaxDepth();
+      this.includes = compile(input.getInclude());
+      this.excludes = compile(input.getExclude());
+      this.directorySource = directorySource;
+      this.remaining = maximumNumberOfFiles;
+    }
+
+    private static List<Glob> compile(List<String> globs) {
+      if (globs == null) {
+        return List.of();
+      }
+      return globs.stream().filter(glob -> !Strings.isNullOrEmpty(glob)).map(Glob::compile).toList();
+    }
+
+    FileObject copy(FileObject file, String path, int depth) throws IOException {
+      if (file.isTruncated()) {
+        truncated = true;
+      }
+      FileObject copy = copyNode(file);
+      List<FileObject> children = new ArrayList<>();
+      for (FileObject child : file.getChildren()) {
+        String childPath = path.isEmpty() ? child.getName() : path + "/" + child.getName();
+        if (!isListed(child, childPath)) {
+          continue;
+        }
+        if (remaining == 0) {
+          truncated = true;
+          break;
+        }
+        remaining--;
+        if (child.isDirectory() && isDescending(depth + 1)) {
+          FileObject childCopy = copy(directorySource.read(child, childPath), childPath, depth + 1);
+          if (childCopy.getChildren().isEmpty() && !includes.isEmpty() && !isIncluded(childPath)) {
+            // directories without any included files are left out
+            remaining++;
+          } else {
+            children.add(childCopy);
+          }
+        } else {
+          children.add(copyNode(child));
+        }
+      }
+      copy.setChildren(children);
+      return copy;
+    }
+
+    boolean isListed(FileObject file, String path) {
+      return !matchesAny(excludes, path) && (file.isDirectory() || isIncluded(path));
+    }
+
+    boolean isDescending(int depth) {
+      return recursive && (maxDepth == null || depth < maxDepth);
+    }
+
+    private boolean isIncluded(String path) {
+      return includes.isEmpty() || matchesAny(includes, path);
+    }
+
+    private static boolean matchesAny(List<Glob> globs, String path) {
+      return globs.stream().anyMatch(glob -> glob.matches(path));
+    }
+
+    static FileObject copyNode(FileObject file) {
+      FileObject copy = new FileObject();
+      copy.setName(file.getName());
+      copy.setPath(file.getPath());
+      copy.setDirectory(file.isDirectory());
+      if (file.getLength().isPresent()) {
+        copy.setLength(file.getLength().getAsLong());
+      }
+      copy.setChildren(List.of());
+      return copy;
+    }
   }
 }
 
@@ -199,4 +564,56 @@ class ListFilesInput {
 
   @JsonPropertyDescription("If set to `true`, the files will be listed recursively.")
   private boolean recursive;
+
+  @Min(1)
+  @JsonPropertyDescription("""
+    If set, recursive listings will only descend to this depth, where `1` lists only the direct children of `root`.
+    Directories at the maximum depth will be listed without their content.""")
+  private Integer maxDepth;
+
+  @JsonPropertyDescription("""
+    Glob patterns for the files that shall be listed, e.g. `*.md` or `src/**/*.java`.
+    Patterns without a `/` are matched against the file name, all others against the complete path in the repository.
+    `*` and `?` do not match `/`, while `**` matches any number of directories.
+    If set, only matching files and the directories containing them will be listed.""")
+  private List<String> include;
+
+  @JsonPropertyDescription("""
+    Glob patterns for files and directories that shall not be listed, e.g. `node_modules` or `build/**`.
+    The same syntax as for `include` is used. Excluded directories are skipped completely.""")
+  private List<String> exclude;
+
+  @JsonPropertyDescription("""
+    If set to `true`, the files will be listed recursively, but breadth-first: The maximum number of entries is spread
+    over all levels of the tree, so that you get an overview of the complete repository. Directories whose content
+    does not fit into the maximum are collapsed and shown with the number of directories and files they directly contain.
+    Use this to get to know large repositories.""")
+  private boolean overview;
+
+  @JsonPropertyDescription("""
+    The format of the result. `tree` (the default) renders a tree with box-drawing characters,
+    `flat` lists the complete path of every entry in a separate line,
+    and `grouped` lists the entries of every directory below a line with the path of the directory.
+    `flat` and `grouped` are more compact for deep trees.""")
+  private Format format = Format.tree;
+
+  @JsonPropertyDescription("If set to `true`, the size of every file will be shown.")
+  private boolean includeSize;
+
+  @JsonPropertyDescription("""
+    If set to `true`, the date of the last commit changing the file or directory will be shown.
+    This is computed with a limited time budget; entries that could not be resolved in time are marked as unknown.""")
+  private boolean includeLastModified;
+
+  @JsonPropertyDescription("""
+    If set to `true`, the id and the author of the last commit changing the file or directory will be shown.
+    This is computed with a limited time budget; entries that could not be resolved in time are marked as unknown.""")
+  private boolean includeLastCommit;
+
+  @SuppressWarnings("java:S115") // we want lower caps here so that the enum can be used directly by the AI
+  enum Format {
+    tree,
+    flat,
+    grouped
+  }
 }
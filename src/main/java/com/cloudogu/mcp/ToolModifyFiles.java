@@ -130,26 +130,27 @@ class ToolModifyFiles implements TypedTool<ModifyFilesInput> {
       .execute();
 
     log.trace("{} files changed in repository {} with revision {}", input.getFilesToCreateOrEdit().size(), repositoryService.getRepository(), revision);
+    FrontendLinkTemplate fileLinks = fileLinkResolver.createTemplate(repositoryService);
     OkResultRenderer resultRenderer = success(String.format(
       "Created or modified %s files, moved %s files, and deleted %s files in revision [%s](%s) in repository [%s/%s](%s)",
       input.getFilesToCreateOrEdit().size(),
       input.getFilesToMove().size(),
       input.getFilesToDelete().size(),
       revision,
-      createCommitLink(input, revision),
+      createCommitLink(input, revision, repositoryService),
       input.getNamespace(),
       input.getName(),
-      createRepositoryLink(input)
+      createRepositoryLink(input, repositoryService)
     ));
     if (!input.getFilesToCreateOrEdit().isEmpty() || !input.getFilesToMove().isEmpty()) {
       StringBuilder infoText = new StringBuilder("You can find the modified or moved files here:\n");
       input.getFilesToCreateOrEdit()
         .stream()
-        .map(entry -> String.format("- [%s](%s)\n", entry.getPath(), createFileLink(input, entry.getPath(), revision)))
+        .map(entry -> String.format("- [%s](%s)\n", entry.getPath(), createFileLink(input, entry.getPath(), revision, fileLinks)))
         .forEach(infoText::append);
       input.getFilesToMove()
         .stream()
-        .map(entry -> String.format("- [%s](%s)\n", entry.getToPath(), createFileLink(input, entry.getToPath(), revision)))
+        .map(entry -> String.format("- [%s](%s)\n", entry.getToPath(), createFileLink(input, entry.getToPath(), revision, fileLinks)))
         .forEach(infoText::append);
       resultRenderer.withInfoText(infoText.toString());
     }
@@ -157,33 +158,33 @@ class ToolModifyFiles implements TypedTool<ModifyFilesInput> {
       .render();
   }
 
-  private String createFileLink(ModifyFilesInput input, String path, String revision) {
+  private String createFileLink(ModifyFilesInput input, String path, String revision, FrontendLinkTemplate fileLinks) {
     CreateFrontendLinkInput linkInput = new CreateFrontendLinkInput();
     linkInput.setTargetType("file");
     linkInput.setNamespace(input.getNamespace());
     linkInput.setName(input.getName());
     linkInput.setRevision(revision);
     linkInput.setPath(path);
-    FrontendLinkResult result = fileLinkResolver.createLink(linkInput);
+    FrontendLinkResult result = fileLinks.createLink(linkInput);
     return result.url();
   }
 
-  private String createCommitLink(ModifyFilesInput input, String revision) {
+  private String createCommitLink(ModifyFilesInput input, String revision, RepositoryService repositoryService) {
     CreateFrontendLinkInput linkInput = new CreateFrontendLinkInput();
     linkInput.setTargetType("commit");
     linkInput.setNamespace(input.getNamespace());
     linkInput.setName(input.getName());
     linkInput.setRevision(revision);
-    FrontendLinkResult result = commitLinkResolver.createLink(linkInput);
+    FrontendLinkResult result = commitLinkResolver.createTemplate(repositoryService).createLink(linkInput);
     return result.url();
   }
 
-  private String createRepositoryLink(ModifyFilesInput input) {
+  private String createRepositoryLink(ModifyFilesInput input, RepositoryService repositoryService) {
     CreateFrontendLinkInput linkInput = new CreateFrontendLinkInput();
     linkInput.setTargetType("repository");
     linkInput.setNamespace(input.getNamespace());
     linkInput.setName(input.getName());
-    FrontendLinkResult result = repositoryLinkResolver.createLink(linkInput);
+    FrontendLinkResult result = repositoryLinkResolver.createTemplate(repositoryService).createLink(linkInput);
     return result.url();
   }
 
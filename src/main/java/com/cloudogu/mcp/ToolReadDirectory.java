@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.cloudogu.mcp.ContentTypeCache.DetectedContentType;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.google.common.base.Strings;
+import jakarta.inject.Inject;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import sonia.scm.io.ContentTypeResolver;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryPermissions;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Future;
+
+@Slf4j
+@Extension
+class ToolReadDirectory implements TypedTool<ReadDirectoryInput> {
+
+  static final int MAXIMUM_NUMBER_OF_FILES = 200;
+  private static final int HEAD_BUFFER_SIZE = 1024;
+  private static final int TREE_LIMIT = 5_000;
+  private static final int PARALLEL_READS = 4;
+
+  private final RepositoryServiceFactory repositoryServiceFactory;
+  private final ContentTypeResolver contentTypeResolver;
+  private final BrowseTreeCache browseTreeCache;
+  private final BlobCache blobCache;
+  private final SubjectAwareExecutor executor;
+  private final ContentTypeCache contentTypeCache;
+
+  @Inject
+  ToolReadDirectory(RepositoryServiceFactory repositoryServiceFactory, ContentTypeResolver contentTypeResolver, BrowseTreeCache browseTreeCache, BlobCache blobCache, SubjectAwareExecutor executor, ContentTypeCache contentTypeCache) {
+    this.repositoryServiceFactory = repositoryServiceFactory;
+    this.contentTypeResolver = contentTypeResolver;
+    this.contentTypeCache = contentTypeCache;
+    this.browseTreeCache = browseTreeCache;
+    this.blobCache = blobCache;
+    this.executor = executor;
+  }
+
+  @Override
+  public String getName() {
+    return "read-directory";
+  }
+
+  @Override
+  public String getDescription() {
+    return """
+      Reads the content of all text files in a directory (including its subdirectories) at once.
+      Use this instead of many single `read-file` calls, when you need to know a number of small files, for example
+      all configuration files of a module. Binary files are skipped. Every file is shown in its own section with the
+      same format as in `read-file`; the number of lines per file and the overall number of lines are limited.
+      Use `include` and `exclude` to select the files to read.""";
+  }
+
+  @Override
+  public Class<ReadDirectoryInput> getInputClass() {
+    return ReadDirectoryInput.class;
+  }
+
+  @Override
+  public ToolResult execute(ReadDirectoryInput input) {
+    log.trace("executing request {}", input);
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName(input.getNamespace(), input.getName()))) {
+      if (!RepositoryPermissions.read(repositoryService.getRepository()).isPermitted()) {
+        log.trace("requested repository not authorized");
+        return ToolResult.error("User is not authorized to use this resource.");
+      }
+
+      Optional<String> revision = RevisionResolver.resolve(repositoryService, input.getRevision());
+      if (revision.isEmpty()) {
+        if (Strings.isNullOrEmpty(input.getRevision())) {
+          return ToolResult.error("The repository does not contain any commits.");
+        }
+        return ToolResult.error(String.format("The revision `%s` could not be found.", input.getRevision()));
+      }
+
+      String directory = RepositoryTree.normalize(input.getPath());
+      FileObject tree = readTree(revision.get(), directory, repositoryService);
+      if (!tree.isDirectory()) {
+        return ToolResult.error(String.format("The path `%s` is not a directory; use `read-file` to read it.", directory));
+      }
+      Selection selection = selectFiles(tree, directory, input);
+      return readFiles(input, selection, revision.get(), repositoryService.getRepository());
+    } catch (IOException e) {
+      log.debug("got exception while executing request", e);
+      return ToolResult.error(
+        "Something went wrong reading the files"
+      );
+    }
+  }
+
+  private FileObject readTree(String revision, String directory, RepositoryService repositoryService) throws IOException {
+    String repositoryId = repositoryService.getRepository().getId();
+    Optional<FileObject> cachedTree = browseTreeCache.find(repositoryId, revision, directory, true, TREE_LIMIT);
+    if (cachedTree.isPresent()) {
+      log.trace("found tree in cache");
+      return cachedTree.get();
+    }
+    FileObject tree = RepositoryTree.browse(repositoryService, revision, directory, true, TREE_LIMIT).getFile();
+    browseTreeCache.put(repositoryId, revision, directory, true, TREE_LIMIT, tree);
+    return tree;
+  }
+
+  /**
+   * Collects the files to read with their paths in the order of the tree.
+   */
+  private Selection selectFiles(FileObject tree, String directory, ReadDirectoryInput input) {
+    List<Glob> includes = compile(input.getInclude());
+    List<Glob> excludes = compile(input.getExclude());
+    List<Map.Entry<String, FileObject>> files = new ArrayList<>();
+    boolean maximumExceeded = false;
+
+    Deque<Map.Entry<String, FileObject>> stack = new ArrayDeque<>();
+    pushChildren(stack, directory, tree);
+    while (!stack.isEmpty()) {
+      Map.Entry<String, FileObject> entry = stack.pop();
+      String path = entry.getKey();
+      if (entry.getValue().isDirectory()) {
+        pushChildren(stack, path, entry.getValue());
+      } else if ((includes.isEmpty() || includes.stream().anyMatch(glob -> glob.matches(path)))
+        && excludes.stream().noneMatch(glob -> glob.matches(path))) {
+        if (files.size() == input.getMaximumNumberOfFiles()) {
+          maximumExceeded = true;
+          break;
+        }
+        files.add(entry);
+      }
+    }
+    return new Selection(files, maximumExceeded || tree.isTruncated());
+  }
+
+  private static void pushChildren(Deque<Map.Entry<String, FileObject>> stack, String parentPath, FileObject parent) {
+    List<FileObject> children = new ArrayList<>(parent.getChildren());
+    // pushed in reverse, so that the children are popped in their original order
+    for (int i = children.size() - 1; i >= 0; --i) {
+      FileObject child = children.get(i);
+      stack.push(Map.entry(parentPath.isEmpty() ? child.getName() : parentPath + "/" + child.getName(), child));
+    }
+  }
+
+  private static List<Glob> compile(Collection<String> globs) {
+    if (globs == null) {
+      return List.of();
+    }
+    return globs.stream().filter(glob -> !Strings.isNullOrEmpty(glob)).map(Glob::compile).toList();
+  }
+
+  /**
+   * The files are read in parallel, but only a few of them ahead of the file rendered next, each of them up to the
+   * limit of lines that can still be shown. No further files are read, when the overall limit of lines is reached.
+   */
+  private ToolResult readFiles(ReadDirectoryInput input, Selection selection, String revision, Repository repository) throws IOException {
+    String repositoryId = repository.getId();
+    int lineLimit = Math.min(input.getMaximumLinesPerFile(), input.getMaximumNumberOfLines());
+    LineWindow window = new LineWindow(1, input.getMaxLineLength());
+    List<Map.Entry<String, FileObject>> selectedFiles = selection.files();
+    Deque<Future<FileContent>> pendingReads = new ArrayDeque<>();
+    int submittedReads = 0;
+
+    StringBuilder sections = new StringBuilder();
+    Map<String, Object> files = new LinkedHashMap<>();
+    int remainingLines = input.getMaximumNumberOfLines();
+    int readFiles = 0;
+    int binaryFiles = 0;
+    int truncatedFiles = 0;
+    int skippedFiles = 0;
+    try {
+      for (int i = 0; i < selectedFiles.size(); ++i) {
+        if (remainingLines == 0) {
+          skippedFiles = selectedFiles.size() - i;
+          break;
+        }
+        while (submittedReads < selectedFiles.size() && pendingReads.size() < PARALLEL_READS) {
+          Map.Entry<String, FileObject> file = selectedFiles.get(submittedReads++);
+          BlobKey key = new BlobKey(repositoryId, revision, file.getKey());
+          int fileLineLimit = Math.min(lineLimit, remainingLines);
+          pendingReads.add(executor.submit(() -> readFile(key, file.getValue().getLength(), fileLineLimit, window, repository)));
+        }
+        FileContent content = SubjectAwareExecutor.await(pendingReads.poll());
+        if (content.binary()) {
+          ++binaryFiles;
+          files.put(content.path(), "BINARY");
+          continue;
+        }
+        ++readFiles;
+        List<String> lines = content.lines().subList(0, Math.min(remainingLines, content.lines().size()));
+        remainingLines -= lines.size();
+        boolean truncated = lines.size() < content.overallLineCount();
+        if (truncated) {
+          ++truncatedFiles;
+        }
+        OkResultRenderer section = render(content, lines);
+        files.put(content.path(), truncated ? "TRUNCATED" : "COMPLETE");
+        if (!sections.isEmpty()) {
+          sections.append('\n');
+        }
+        sections.append(section);
+      }
+    } finally {
+      // reads, that have already been started, are finished in the background
+      pendingReads.forEach(future -> future.cancel(false));
+    }
+
+    OkResultRenderer resultRenderer = OkResultRenderer.ok(
+      selection.maximumExceeded() || skippedFiles > 0 ? "TRUNCATED" : "SUCCESS",
+      String.format("Read %s files from `%s`.", readFiles, displayPath(input.getPath()))
+    );
+    createInfo(selection, binaryFiles, truncatedFiles, skippedFiles).ifPresent(resultRenderer::withInfoText);
+    if (!sections.isEmpty()) {
+      resultRenderer.append(sections);
+    }
+
+    log.trace("read {} files", readFiles);
+    return resultRenderer.render(Map.of("files", files, "maximumExceeded", selection.maximumExceeded() || skippedFiles > 0));
+  }
+
+  /**
+   * Repository services are not thread safe, so each read opens its own one.
+   */
+  private FileContent readFile(BlobKey key, OptionalLong length, int lineLimit, LineWindow window, Repository repository) throws IOException {
+    Optional<DetectedContentType> knownContentType = contentTypeCache.get(key);
+    if (knownContentType.isPresent() && isBinary(knownContentType.get())) {
+      log.trace("skipping known binary file {}", key);
+      return new FileContent(key.path(), true, List.of(), 0);
+    }
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(repository);
+         InputStream inputStream = blobCache.openStream(key, length, repositoryService)) {
+      byte[] head = inputStream.readNBytes(HEAD_BUFFER_SIZE);
+      if (knownContentType.isEmpty()) {
+        DetectedContentType contentType = DetectedContentType.of(contentTypeResolver.resolve(key.path(), head), head.length == 0);
+        contentTypeCache.put(key, contentType);
+        if (isBinary(contentType)) {
+          log.trace("skipping binary file {}", key);
+          return new FileContent(key.path(), true, List.of(), 0);
+        }
+      }
+      List<String> lines = new ArrayList<>();
+      int overallLineCount = 0;
+      try (BoundedLineReader reader = new BoundedLineReader(new SequenceInputStream(new ByteArrayInputStream(head), inputStream), window)) {
+        String line;
+        while (lines.size() < lineLimit && (line = reader.readLine()) != null) {
+          lines.add(line);
+          ++overallLineCount;
+        }
+        // further lines are only counted and never kept in memory
+        while (reader.skipLine()) {
+          ++overallLineCount;
+        }
+      }
+      return new FileContent(key.path(), false, lines, overallLineCount);
+    }
+  }
+
+  private static boolean isBinary(DetectedContentType contentType) {
+    return !contentType.empty() && !contentType.text();
+  }
+
+  private static OkResultRenderer render(FileContent content, List<String> lines) {
+    ContentFormatter formatter = new ContentFormatter(content.path());
+    if (content.overallLineCount() == 0) {
+      return formatter.writeEmpty();
+    }
+    if (lines.size() < content.overallLineCount()) {
+      return formatter.write(ContentFormatter.Status.TRUNCATED, lines, 1, null, content.overallLineCount());
+    }
+    return formatter.write(ContentFormatter.Status.COMPLETE, lines, 1);
+  }
+
+  private static Optional<String> createInfo(Selection selection, int binaryFiles, int truncatedFiles, int skippedFiles) {
+    List<String> info = new ArrayList<>();
+    if (binaryFiles > 0) {
+      info.add(String.format("%s binary files have been skipped.", binaryFiles));
+    }
+    if (truncatedFiles > 0) {
+      info.add(String.format("%s files have been truncated; use `read-file` to read further lines.", truncatedFiles));
+    }
+    if (skippedFiles > 0) {
+      info.add(String.format("%s further files have not been read, because the maximum number of lines has been reached.", skippedFiles));
+    }
+    if (selection.maximumExceeded()) {
+      info.add("There are more files in this directory; use `include`, `exclude`, or a more specific path to select other files.");
+    }
+    return info.isEmpty() ? Optional.empty() : Optional.of(String.join(" ", info));
+  }
+
+  private static String displayPath(String path) {
+    return Strings.isNullOrEmpty(path) ? "/" : path;
+  }
+
+  private record Selection(List<Map.Entry<String, FileObject>> files, boolean maximumExceeded) {
+  }
+
+  private record FileContent(String path, boolean binary, List<String> lines, int overallLineCount) {
+  }
+}
+
+@Data
+class ReadDirectoryInput {
+  @NotNull
+  @Pattern(regexp = Validations.REPOSITORY_NAMESPACE_REGEX)
+  @JsonPropertyDescription("The namespace of the repository to read the files from.")
+  private String namespace;
+
+  @NotNull
+  @Pattern(regexp = Validations.REPOSITORY_NAME_REGEX)
+  @JsonPropertyDescription("The name of the repository to read the files from.")
+  private String name;
+
+  @JsonPropertyDescription("""
+    The revision to read the files from. This can be either a 'real' revision, a branch, or a tag.
+    If this is omitted, the default branch of the repository will be taken.""")
+  private String revision;
+
+  @JsonPropertyDescription("The directory to read the files from. If this is omitted, the root directory will be taken.")
+  private String path;
+
+  @JsonPropertyDescription("""
+    Glob patterns for the files to read (for example `*.yml` or `src/**/*.properties`). Patterns without a `/` are
+    matched against the file names, all others against the complete paths. If this is omitted, all files are read.""")
+  private List<String> include;
+
+  @JsonPropertyDescription("Glob patterns for files that should not be read (for example `*.min.js`).")
+  private List<String> exclude;
+
+  @Min(1)
+  @Max(ToolReadDirectory.MAXIMUM_NUMBER_OF_FILES)
+  @JsonPropertyDescription("The maximum number of files to read. The default for this is 20, the maximum is 200.")
+  private int maximumNumberOfFiles = 20;
+
+  @Min(1)
+  @JsonPropertyDescription("The maximum number of lines shown for a single file. The default for this is 200.")
+  private int maximumLinesPerFile = 200;
+
+  @Min(1)
+  @JsonPropertyDescription("The maximum number of lines shown for all files together. The default for this is 1000.")
+  private int maximumNumberOfLines = 1000;
+
+  @Min(1)
+  @JsonPropertyDescription("The maximum number of characters shown for each line. Longer lines will be cut. The default for this is 1000.")
+  private int maxLineLength = 1000;
+}
@@ -16,47 +16,65 @@
 
 package com.cloudogu.mcp;
 
+import com.cloudogu.mcp.ContentTypeCache.DetectedContentType;
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import io.modelcontextprotocol.spec.McpSchema;
 import jakarta.inject.Inject;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.validator.constraints.Length;
-import sonia.scm.io.ContentType;
 import sonia.scm.io.ContentTypeResolver;
 import sonia.scm.plugin.Extension;
+import sonia.scm.repository.BrowserResult;
 import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryPermissions;
-import sonia.scm.repository.api.CatCommandBuilder;
 import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 import sonia.scm.util.IOUtil;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 
 @Slf4j
 @Extension
 class ToolReadFile implements TypedTool<ReadFilesInput> {
 
   private static final int HEAD_BUFFER_SIZE = 1024;
+  private static final String CONTENT_HASH_KEY = "contentHash";
+  static final int MAX_BYTE_RANGE_LENGTH = 256 * 1024;
 
   private final RepositoryServiceFactory repositoryServiceFactory;
   private final ContentTypeResolver contentTypeResolver;
+  private final ContentHashCache contentHashCache;
+  private final BlobCache blobCache;
+  private final LineRangeCache lineRangeCache;
+  private final PrefetchExecutor prefetchExecutor;
+  private final ContentTypeCache contentTypeCache;
 
   @Inject
-  public ToolReadFile(RepositoryServiceFactory repositoryServiceFactory, ContentTypeResolver contentTypeResolver) {
+  public ToolReadFile(RepositoryServiceFactory repositoryServiceFactory, ContentTypeResolver contentTypeResolver, ContentHashCache contentHashCache, BlobCache blobCache, LineRangeCache lineRangeCache, PrefetchExecutor prefetchExecutor, ContentTypeCache contentTypeCache) {
     this.repositoryServiceFactory = repositoryServiceFactory;
     this.contentTypeResolver = contentTypeResolver;
+    this.contentTypeCache = contentTypeCache;
+    this.contentHashCache = contentHashCache;
+    this.blobCache = blobCache;
+    this.lineRangeCache = lineRangeCache;
+    this.prefetchExecutor = prefetchExecutor;
   }
 
   @Override
@@ -69,7 +87,11 @@ class ToolReadFile implements TypedTool<ReadFilesInput> {
     return """
       Returns the content of the file.
       Note: The output includes line numbers in the format 'L | content' to help you reference specific lines.
-      When editing or rewriting the file, do NOT include these numbers.""";
+      When editing or rewriting the file, do NOT include these numbers.
+      The result also contains a hash of the content. If you read the same file again only to check for changes,
+      pass this hash as `ifNoneMatch`; if the content is still the same, only a short `UNCHANGED` status will be returned.
+      Binary files cannot be displayed as text. To inspect parts of them (like image or archive headers), request a
+      range of bytes with `byteOffset` and `byteLength`; these will be returned as base64 encoded embedded resource.""";
   }
 
   @Override
@@ -101,44 +123,230 @@ class ToolReadFile implements TypedTool<ReadFilesInput> {
   }
 
   private ToolResult tryReadFile(ReadFilesInput input, String path, RepositoryService repositoryService) throws IOException {
-    return readFile(input, path, repositoryService);
+    BrowserResult browserResult = lookUp(input.getRevision(), path, repositoryService);
+    if (browserResult.getFile() != null && browserResult.getFile().isDirectory()) {
+      return ToolResult.error(String.format("The path `%s` is a directory and not a file.", path));
+    }
+    // only contents of resolved changesets are cached, because branches and tags may be moved
+    Optional<String> resolvedRevision = browserResult.getRevision() == null
+      ? RevisionResolver.resolve(repositoryService, input.getRevision())
+      : Optional.of(browserResult.getRevision());
+    BlobKey key = new BlobKey(repositoryService.getRepository().getId(), resolvedRevision.orElse(input.getRevision()), path);
+    OptionalLong fileLength = browserResult.getFile() == null ? OptionalLong.empty() : browserResult.getFile().getLength();
+    RequestedFile file = new RequestedFile(key, fileLength, resolvedRevision.isPresent());
+    if (!file.cacheable()) {
+      log.debug("could not resolve revision {}; content of {} will not be cached", input.getRevision(), path);
+    }
+
+    if (input.getIfNoneMatch() != null && file.cacheable()) {
+      Optional<String> knownContentHash = contentHashCache.get(key);
+      if (knownContentHash.isPresent() && knownContentHash.get().equals(input.getIfNoneMatch())) {
+        log.trace("file unchanged");
+        return handleUnchangedFile(path, knownContentHash.get());
+      }
+    }
+    return readFile(input, file, repositoryService);
   }
 
-  private ToolResult readFile(ReadFilesInput input, String path, RepositoryService repositoryService) throws IOException {
-    byte[] head = getHead(input.getRevision(), path, repositoryService);
-    ContentType contentType = contentTypeResolver.resolve(path, head);
+  private BrowserResult lookUp(String revision, String path, RepositoryService repositoryService) throws IOException {
+    return repositoryService
+      .getBrowseCommand()
+      .setRevision(revision)
+      .setPath(path)
+      .setDisableLastCommit(true)
+      .setDisablePreProcessors(true)
+      .setDisableSubRepositoryDetection(true)
+      .getBrowserResult();
+  }
 
-    OkResultRenderer resultRenderer;
-    if (head.length == 0) {
-      resultRenderer = handleEmptyFile(path);
-    } else if (contentType.isText()) {
-      resultRenderer = handleTextFile(path, input, repositoryService, contentType);
+  private ToolResult readFile(ReadFilesInput input, RequestedFile file, RepositoryService repositoryService) throws IOException {
+    String path = file.key().path();
+    DetectedContentType contentType = detectContentType(file, repositoryService);
+
+    ToolResult result;
+    if (contentType.empty()) {
+      result = handleEmptyFile(path).render();
+    } else if (contentType.text()) {
+      result = handleTextFile(input, file, repositoryService, contentType);
+    } else if (input.getByteOffset() != null || input.getByteLength() != null) {
+      result = handleBinaryRange(input, file, repositoryService, contentType);
     } else {
-      resultRenderer = handleBinaryFile(path, contentType);
+      result = handleBinaryFile(path, contentType).render();
     }
 
     log.trace("file read");
-    return resultRenderer.render();
+    return result;
   }
 
-  private OkResultRenderer handleBinaryFile(String file, ContentType contentType) {
+  private OkResultRenderer handleBinaryFile(String file, DetectedContentType contentType) {
     return OkResultRenderer.ok("BINARY FILE", String.format("The file `%s` has binary content and cannot be displayed as text.", file))
-      .withInfoText(String.format("The detected content type of this file is `%s`.", contentType.getRaw()));
+      .withInfoText(String.format(
+        "The detected content type of this file is `%s`. Use `byteOffset` and `byteLength` to read a range of bytes as base64 encoded resource.",
+        contentType.raw()
+      ));
+  }
+
+  private ToolResult handleBinaryRange(ReadFilesInput input, RequestedFile file, RepositoryService repositoryService, DetectedContentType contentType) throws IOException {
+    BlobKey key = file.key();
+    long offset = input.getByteOffset() == null ? 0 : input.getByteOffset();
+    int length = input.getByteLength() == null ? MAX_BYTE_RANGE_LENGTH : input.getByteLength();
+
+    byte[] bytes;
+    boolean moreAvailable;
+    try (InputStream inputStream = openStream(file, repositoryService)) {
+      // for files too large for the cache, only the requested range is read and the rest of the blob is never loaded
+      if (skip(inputStream, offset) < offset) {
+        return ToolResult.error(String.format("The offset %s is beyond the end of the file `%s`.", offset, key.path()));
+      }
+      bytes = inputStream.readNBytes(length);
+      moreAvailable = inputStream.read() >= 0;
+    }
+
+    String uri = String.format("scm://%s/%s/%s/%s", input.getNamespace(), input.getName(), key.revision(), key.path());
+    McpSchema.EmbeddedResource resource = new McpSchema.EmbeddedResource(
+      null,
+      new McpSchema.BlobResourceContents(uri, contentType.raw(), Base64.getEncoder().encodeToString(bytes))
+    );
+
+    long end = offset + bytes.length;
+    String info = String.format("The detected content type of this file is `%s`.", contentType.raw());
+    if (moreAvailable) {
+      info += String.format(" There are more bytes available; to read them, use `byteOffset` %s.", end);
+    } else {
+      info += String.format(" The file has %s bytes.", end);
+    }
+    return OkResultRenderer.ok(
+        moreAvailable ? "BINARY RANGE TRUNCATED" : "BINARY RANGE COMPLETE",
+        String.format("Read %s bytes of `%s` starting at offset %s. The bytes are attached as embedded resource `%s`.", bytes.length, key.path(), offset, uri)
+      )
+      .withInfoText(info)
+      .render(
+        Map.of("byteOffset", offset, "byteLength", bytes.length, "moreAvailable", moreAvailable),
+        List.of(resource)
+      );
+  }
+
+  private static long skip(InputStream inputStream, long count) throws IOException {
+    long skipped = 0;
+    while (skipped < count) {
+      long current = inputStream.skip(count - skipped);
+      if (current <= 0) {
+        // skip may return 0 without having reached the end, so we have to check this explicitly
+        if (inputStream.read() < 0) {
+          break;
+        }
+        current = 1;
+      }
+      skipped += current;
+    }
+    return skipped;
   }
 
   private OkResultRenderer handleEmptyFile(String file) {
     return new ContentFormatter(file).writeEmpty();
   }
 
-  private OkResultRenderer handleTextFile(String path, ReadFilesInput input, RepositoryService repositoryService, ContentType contentType) throws IOException {
-    String[] parts = input.getLineRange().split("-");
-    int start = Integer.parseInt(parts[0].trim());
-    int end = Integer.parseInt(parts[1].trim());
-    CatCommandBuilder catCommandBuilder = repositoryService.getCatCommand().setRevision(input.getRevision());
-    ReadResult readResult;
-    try (InputStream inputStream = catCommandBuilder.getStream(path)) {
-      readResult = readLines(inputStream, start, end);
+  private ToolResult handleUnchangedFile(String file, String contentHash) {
+    return OkResultRenderer.ok("UNCHANGED", String.format("The content of `%s` has not changed and still has the content hash `%s`.", file, contentHash))
+      .render(Map.of(CONTENT_HASH_KEY, contentHash));
+  }
+
+  private ToolResult handleTextFile(ReadFilesInput input, RequestedFile file, RepositoryService repositoryService, DetectedContentType contentType) throws IOException {
+    BlobKey key = file.key();
+    Optional<String> knownContentHash = file.cacheable() ? contentHashCache.get(key) : Optional.empty();
+    LineWindow window = new LineWindow(input.getStartColumn(), input.getMaxLineLength());
+    Optional<LinesResult> prefetchedLines = knownContentHash.isPresent() ? findPrefetchedLines(input, key, window) : Optional.empty();
+    LinesResult linesResult;
+    String contentHash;
+    if (prefetchedLines.isPresent()) {
+      log.trace("found prefetched lines");
+      linesResult = prefetchedLines.get();
+      contentHash = knownContentHash.get();
+    } else {
+      try (InputStream inputStream = openStream(file, repositoryService)) {
+        if (knownContentHash.isPresent()) {
+          linesResult = readLines(input, inputStream, window);
+          contentHash = knownContentHash.get();
+        } else {
+          HashingInputStream hashingInputStream = new HashingInputStream(Hashing.sha256(), inputStream);
+          linesResult = readLines(input, hashingInputStream, window);
+          contentHash = hashingInputStream.hash().toString();
+          if (file.cacheable()) {
+            contentHashCache.put(key, contentHash);
+          }
+        }
+      }
+    }
+
+    if (contentHash.equals(input.getIfNoneMatch())) {
+      log.trace("file unchanged");
+      return handleUnchangedFile(key.path(), contentHash);
+    }
+
+    if (input.isPrefetch() && file.cacheable() && input.getTailLines() == null && linesResult.status() == ContentFormatter.Status.TRUNCATED) {
+      prefetchNextRange(input, file, window, repositoryService.getRepository());
+    }
+
+    String info = createInfo(contentType) + " The content hash is `" + contentHash + "`.";
+    ContentFormatter contentFormatter = new ContentFormatter(key.path());
+    OkResultRenderer resultRenderer;
+    if (linesResult.overallLineCount() == null) {
+      resultRenderer = contentFormatter.writeTail(linesResult.lines(), info);
+    } else {
+      resultRenderer = contentFormatter.write(linesResult.status(), linesResult.lines(), linesResult.firstLineNumber(), info, linesResult.overallLineCount());
+    }
+    return resultRenderer.render(Map.of(CONTENT_HASH_KEY, contentHash));
+  }
+
+  private Optional<LinesResult> findPrefetchedLines(ReadFilesInput input, BlobKey key, LineWindow window) {
+    if (input.getTailLines() != null) {
+      return Optional.empty();
+    }
+    LineRange range = LineRange.parse(input.getLineRange());
+    return lineRangeCache.get(key, range.start(), range.end(), window)
+      .map(lines -> createLinesResult(new ReadResult(lines.overallLineCount() > range.end(), lines.lines(), lines.overallLineCount()), range.start()));
+  }
+
+  /**
+   * Files are usually read chunk by chunk, so when a range has been truncated, the following range of the same size
+   * is read in the background. The result is kept in the {@link LineRangeCache} for a short time. As the
+   * repository service of the current request will be closed, the background task opens its own one. Files too large
+   * for the {@link BlobCache} are not prefetched, because they would have to be read from the repository once more.
+   */
+  private void prefetchNextRange(ReadFilesInput input, RequestedFile file, LineWindow window, Repository repository) {
+    BlobKey key = file.key();
+    OptionalLong fileLength = file.length();
+    LineRange range = LineRange.parse(input.getLineRange());
+    int nextStart = range.end() + 1;
+    int nextEnd = range.end() + (range.end() - range.start() + 1);
+    if (fileLength.isPresent() && fileLength.getAsLong() > BlobCache.MAXIMUM_BLOB_SIZE) {
+      log.trace("file {} is too large to be prefetched", key);
+      return;
+    }
+    if (lineRangeCache.get(key, nextStart, nextEnd, window).isPresent()) {
+      return;
+    }
+    prefetchExecutor.execute(() -> {
+      try (RepositoryService repositoryService = repositoryServiceFactory.create(repository);
+           InputStream inputStream = blobCache.openStream(key, fileLength, repositoryService)) {
+        ReadResult readResult = readLines(inputStream, nextStart, nextEnd, window);
+        lineRangeCache.put(key, nextStart, nextEnd, window, new LineRangeCache.Lines(readResult.lines, readResult.overallLineCount));
+        log.trace("prefetched lines {}-{} of {}", nextStart, nextEnd, key);
+      } catch (IOException | RuntimeException e) {
+        log.debug("could not prefetch lines {}-{} of {}", nextStart, nextEnd, key, e);
+      }
+    });
+  }
+
+  private LinesResult readLines(ReadFilesInput input, InputStream inputStream, LineWindow window) throws IOException {
+    if (input.getTailLines() != null) {
+      return readTail(inputStream, input.getTailLines(), window);
     }
+    LineRange range = LineRange.parse(input.getLineRange());
+    return createLinesResult(readLines(inputStream, range.start(), range.end(), window), range.start());
+  }
+
+  private LinesResult createLinesResult(ReadResult readResult, int start) {
     ContentFormatter.Status status;
     if (readResult.lines.isEmpty()) {
       status = ContentFormatter.Status.EMPTY;
@@ -147,41 +355,70 @@ class ToolReadFile implements TypedTool<ReadFilesInput> {
     } else {
       status = ContentFormatter.Status.COMPLETE;
     }
-    String info = "The content type for this file is " + contentType.getRaw() + '.';
-    if (getLanguage(contentType).isPresent()) {
-      info = info + " The detected language is " + getLanguage(contentType).get() + '.';
+    return new LinesResult(status, readResult.lines, start, readResult.overallLineCount);
+  }
+
+  private LinesResult readTail(InputStream inputStream, int lineCount, LineWindow window) throws IOException {
+    TailReader.TailResult tailResult = new TailReader(lineCount, window).read(inputStream);
+    if (tailResult.lines().isEmpty()) {
+      return new LinesResult(ContentFormatter.Status.EMPTY, tailResult.lines(), 1, 0);
+    }
+    if (tailResult.overallLineCount().isEmpty()) {
+      // the lines are numbered from the end of the file, as counting all lines before them would mean to read the whole file
+      return new LinesResult(ContentFormatter.Status.TRUNCATED, tailResult.lines(), -tailResult.lines().size(), null);
     }
+    int firstLineNumber = tailResult.firstLineNumber().getAsInt();
+    ContentFormatter.Status status = firstLineNumber > 1 ? ContentFormatter.Status.TRUNCATED : ContentFormatter.Status.COMPLETE;
+    return new LinesResult(status, tailResult.lines(), firstLineNumber, tailResult.overallLineCount().getAsInt());
+  }
 
-    return new ContentFormatter(path).write(status, readResult.lines, start, info, readResult.overallLineCount);
+  private String createInfo(DetectedContentType contentType) {
+    String info = "The content type for this file is " + contentType.raw() + '.';
+    if (contentType.language().isPresent()) {
+      info = info + " The detected language is " + contentType.language().get() + '.';
+    }
+    return info;
   }
 
-  private ReadResult readLines(InputStream inputStream, int startLine, int endLine) throws IOException {
+  private ReadResult readLines(InputStream inputStream, int startLine, int endLine, LineWindow window) throws IOException {
     List<String> lines = new ArrayList<>();
-    try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-      String line;
+    try (BoundedLineReader reader = new BoundedLineReader(inputStream, window)) {
       int currentLineNumber = 0;
-      boolean moreAvailable = false;
-
-      while ((line = reader.readLine()) != null) {
-        currentLineNumber++;
-        if (currentLineNumber >= startLine && currentLineNumber <= endLine) {
-          lines.add(line);
+      boolean lineRead;
+      do {
+        if (currentLineNumber + 1 >= startLine && currentLineNumber + 1 <= endLine) {
+          String line = reader.readLine();
+          lineRead = line != null;
+          if (lineRead) {
+            lines.add(line);
+          }
+        } else {
+          // lines outside the range are only counted and never kept in memory
+          lineRead = reader.skipLine();
         }
-
-        if (currentLineNumber >= endLine) {
-          moreAvailable |= reader.ready();
+        if (lineRead) {
+          currentLineNumber++;
         }
-      }
-      return new ReadResult(moreAvailable, lines, currentLineNumber);
+      } while (lineRead);
+      return new ReadResult(currentLineNumber > endLine, lines, currentLineNumber);
     }
   }
 
-  private Optional<String> getLanguage(ContentType contentType) {
-    return contentType.getLanguage();
+  private DetectedContentType detectContentType(RequestedFile file, RepositoryService repositoryService) throws IOException {
+    Optional<DetectedContentType> knownContentType = file.cacheable() ? contentTypeCache.get(file.key()) : Optional.empty();
+    if (knownContentType.isPresent()) {
+      return knownContentType.get();
+    }
+    byte[] head = getHead(file, repositoryService);
+    DetectedContentType contentType = DetectedContentType.of(contentTypeResolver.resolve(file.key().path(), head), head.length == 0);
+    if (file.cacheable()) {
+      contentTypeCache.put(file.key(), contentType);
+    }
+    return contentType;
   }
 
-  private byte[] getHead(String revision, String path, RepositoryService repositoryService) throws IOException {
-    InputStream stream = repositoryService.getCatCommand().setRevision(revision).getStream(path);
+  private byte[] getHead(RequestedFile file, RepositoryService repositoryService) throws IOException {
+    InputStream stream = openStream(file, repositoryService);
     try {
       byte[] buffer = new byte[HEAD_BUFFER_SIZE];
       int length = stream.read(buffer);
@@ -197,8 +434,36 @@ class ToolReadFile implements TypedTool<ReadFilesInput> {
     }
   }
 
+  private InputStream openStream(RequestedFile file, RepositoryService repositoryService) throws IOException {
+    if (file.cacheable()) {
+      return blobCache.openStream(file.key(), file.length(), repositoryService);
+    }
+    return repositoryService.getCatCommand().setRevision(file.key().revision()).getStream(file.key().path());
+  }
+
+  /**
+   * The file to read. Only files of resolved changesets are cacheable, because for branches or tags the content
+   * may change.
+   */
+  private record RequestedFile(BlobKey key, OptionalLong length, boolean cacheable) {
+  }
+
   private record ReadResult(boolean moreAvailable, List<String> lines, int overallLineCount) {
   }
+
+  /**
+   * The overall line count is <code>null</code> for the last lines of a file, that has not been counted.
+   */
+  private record LinesResult(ContentFormatter.Status status, List<String> lines, int firstLineNumber, Integer overallLineCount) {
+  }
+
+  private record LineRange(int start, int end) {
+
+    static LineRange parse(String lineRange) {
+      String[] parts = lineRange.split("-");
+      return new LineRange(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+    }
+  }
 }
 
 @Data
@@ -227,4 +492,51 @@ class ReadFilesInput {
     The range is 1-indexed and inclusive.
     Use this to read large files in chunks to avoid hitting context limits.""")
   private String lineRange = "1-100";
+
+  @Min(1)
+  @JsonPropertyDescription("""
+    If set, the last lines of the file will be returned (like `tail -n`), and `lineRange` will be ignored.
+    Use this for log files, changelogs, or generated reports, where the end of the file is of interest.
+    The result contains the line numbers and the overall number of lines of the file. If the number of lines
+    is not known without reading the whole file, the lines are numbered from the end of the file instead (-1 is the last line).""")
+  private Integer tailLines;
+
+  @JsonPropertyDescription("""
+    The content hash from a previous read of this file.
+    If the content of the file still has this hash, the content will not be returned again,
+    but only the status `UNCHANGED`.""")
+  private String ifNoneMatch;
+
+  @Min(1)
+  @JsonPropertyDescription("""
+    The maximum number of characters that will be shown for each line.
+    Longer lines (for example in minified or generated files) will be cut and the omitted part will be marked
+    with `…[N chars omitted]`. Use `startColumn` to read further parts of such lines.""")
+  private int maxLineLength = 1000;
+
+  @Min(1)
+  @JsonPropertyDescription("""
+    The first column (1-indexed) of each line that will be shown.
+    Use this together with `maxLineLength` to read parts of very long lines.""")
+  private int startColumn = 1;
+
+  @Min(0)
+  @JsonPropertyDescription("""
+    For binary files only: The offset of the first byte to read (0-indexed).
+    If this or `byteLength` is set, the bytes of the binary file will be returned as base64 encoded embedded resource.""")
+  private Long byteOffset;
+
+  @Min(1)
+  @Max(ToolReadFile.MAX_BYTE_RANGE_LENGTH)
+  @JsonPropertyDescription("""
+    For binary files only: The maximum number of bytes to read, starting at `byteOffset`.
+    If this or `byteOffset` is set, the bytes of the binary file will be returned as base64 encoded embedded resource.
+    If this is omitted, the maximum of 262144 bytes will be read.""")
+  private Integer byteLength;
+
+  @JsonPropertyDescription("""
+    If set to `true` and the requested `lineRange` does not reach the end of the file, the following range of the
+    same size will be read in the background, so that a subsequent request for it can be answered faster.
+    Use this when you intend to read the file chunk by chunk.""")
+  private boolean prefetch;
 }
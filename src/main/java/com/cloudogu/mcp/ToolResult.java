@@ -16,6 +16,7 @@
 
 package com.cloudogu.mcp;
 
+import io.modelcontextprotocol.spec.McpSchema;
 import lombok.Getter;
 
 import java.util.List;
@@ -30,23 +31,32 @@ public class ToolResult {
   private final String message;
   private final List<String> content;
   private final Map<String, Object> structuredContent;
+  /**
+   * Further content like embedded resources, that will be returned after the text content.
+   */
+  private final List<McpSchema.Content> additionalContent;
 
   public static ToolResult ok(String content) {
-    return new ToolResult(false, null, List.of(content), emptyMap());
+    return new ToolResult(false, null, List.of(content), emptyMap(), emptyList());
   }
 
   public static ToolResult ok(List<String> content, Map<String, Object> structuredContent) {
-    return new ToolResult(false, null, content, structuredContent);
+    return new ToolResult(false, null, content, structuredContent, emptyList());
+  }
+
+  public static ToolResult ok(List<String> content, Map<String, Object> structuredContent, List<McpSchema.Content> additionalContent) {
+    return new ToolResult(false, null, content, structuredContent, additionalContent);
   }
 
   public static ToolResult error(String message) {
-    return new ToolResult(true, message, emptyList(), emptyMap());
+    return new ToolResult(true, message, emptyList(), emptyMap(), emptyList());
   }
 
-  private ToolResult(boolean error, String message, List<String> content, Map<String, Object> structuredContent) {
+  private ToolResult(boolean error, String message, List<String> content, Map<String, Object> structuredContent, List<McpSchema.Content> additionalContent) {
     this.error = error;
     this.message = message;
     this.content = content;
     this.structuredContent = structuredContent;
+    this.additionalContent = additionalContent;
   }
 }
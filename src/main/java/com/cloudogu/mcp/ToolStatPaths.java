@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.google.common.base.Strings;
+import jakarta.inject.Inject;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import sonia.scm.NotFoundException;
+import sonia.scm.io.ContentTypeResolver;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.RepositoryPermissions;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Extension
+class ToolStatPaths implements TypedTool<StatPathsInput> {
+
+  static final int MAXIMUM_NUMBER_OF_PATHS = 500;
+  private static final int TREE_LIMIT = 5_000;
+  private static final String NOT_AVAILABLE = "-";
+
+  private final RepositoryServiceFactory repositoryServiceFactory;
+  private final ContentTypeResolver contentTypeResolver;
+  private final BrowseTreeCache browseTreeCache;
+  private final ContentHashCache contentHashCache;
+  private final ContentTypeCache contentTypeCache;
+
+  @Inject
+  ToolStatPaths(RepositoryServiceFactory repositoryServiceFactory, ContentTypeResolver contentTypeResolver, BrowseTreeCache browseTreeCache, ContentHashCache contentHashCache, ContentTypeCache contentTypeCache) {
+    this.repositoryServiceFactory = repositoryServiceFactory;
+    this.contentTypeResolver = contentTypeResolver;
+    this.browseTreeCache = browseTreeCache;
+    this.contentHashCache = contentHashCache;
+    this.contentTypeCache = contentTypeCache;
+  }
+
+  @Override
+  public String getName() {
+    return "stat-paths";
+  }
+
+  @Override
+  public String getDescription() {
+    return """
+      Checks whether paths exist in a repository without reading their content. For every path, the type
+      (`file`, `directory`, or `missing`), the size, the content type, and the content hash are returned.
+      The content type is detected by the file name, or by the content for files that have been read before.
+      The content hash is only known for files that have been read with `read-file` before;
+      it can be used as `ifNoneMatch` for `read-file`.
+      Use this to check a number of paths at once before editing files.""";
+  }
+
+  @Override
+  public Class<StatPathsInput> getInputClass() {
+    return StatPathsInput.class;
+  }
+
+  @Override
+  public ToolResult execute(StatPathsInput input) {
+    log.trace("executing request {}", input);
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName(input.getNamespace(), input.getName()))) {
+      if (!RepositoryPermissions.read(repositoryService.getRepository()).isPermitted()) {
+        log.trace("requested repository not authorized");
+        return ToolResult.error("User is not authorized to use this resource.");
+      }
+
+      List<String> paths = input.getPaths().stream().map(path -> RepositoryTree.normalize(Strings.nullToEmpty(path).trim())).distinct().toList();
+      Optional<String> revision = RevisionResolver.resolve(repositoryService, input.getRevision());
+      if (revision.isEmpty()) {
+        if (Strings.isNullOrEmpty(input.getRevision())) {
+          return ToolResult.error("The repository does not contain any commits.");
+        }
+        return ToolResult.error(String.format("The revision `%s` could not be found.", input.getRevision()));
+      }
+      Map<String, Optional<FileObject>> files = lookUp(paths, revision.get(), repositoryService);
+      return createResult(files, repositoryService.getRepository().getId(), revision.get());
+    } catch (IOException e) {
+      log.debug("got exception while executing request", e);
+      return ToolResult.error(
+        "Something went wrong reading the files"
+      );
+    }
+  }
+
+  /**
+   * Paths sharing their parent directory are looked up in a single non-recursive listing of this directory. All
+   * other paths, and paths that are not part of a truncated listing, are looked up one by one.
+   */
+  private Map<String, Optional<FileObject>> lookUp(List<String> paths, String revision, RepositoryService repositoryService) throws IOException {
+    Map<String, List<String>> pathsByDirectory = paths.stream()
+      .filter(path -> !path.isEmpty())
+      .collect(Collectors.groupingBy(ToolStatPaths::getDirectory, LinkedHashMap::new, Collectors.toList()));
+    Map<String, Optional<FileObject>> listedFiles = new HashMap<>();
+    for (Map.Entry<String, List<String>> directory : pathsByDirectory.entrySet()) {
+      if (directory.getValue().size() > 1) {
+        listedFiles.putAll(lookUpInDirectory(directory.getKey(), directory.getValue(), revision, repositoryService));
+      }
+    }
+
+    Map<String, Optional<FileObject>> files = new LinkedHashMap<>();
+    for (String path : paths) {
+      Optional<FileObject> file = listedFiles.get(path);
+      files.put(path, file == null ? lookUpSinglePath(path, revision, repositoryService) : file);
+    }
+    return files;
+  }
+
+  private Map<String, Optional<FileObject>> lookUpInDirectory(String directory, List<String> paths, String revision, RepositoryService repositoryService) throws IOException {
+    Map<String, Optional<FileObject>> files = new HashMap<>();
+    Optional<FileObject> listing = read(directory, TREE_LIMIT, revision, repositoryService);
+    for (String path : paths) {
+      Optional<FileObject> file = listing.flatMap(tree -> BrowseTreeCache.findChild(tree, path.substring(path.lastIndexOf('/') + 1)));
+      if (file.isPresent() || listing.isEmpty() || !listing.get().isTruncated()) {
+        files.put(path, file);
+      }
+    }
+    return files;
+  }
+
+  private Optional<FileObject> lookUpSinglePath(String path, String revision, RepositoryService repositoryService) throws IOException {
+    return read(path, 1, revision, repositoryService);
+  }
+
+  /**
+   * Reads the path non-recursively from the cache or from the backend. As the revision has been resolved before, a
+   * path, that cannot be found, does not exist.
+   */
+  private Optional<FileObject> read(String path, int limit, String revision, RepositoryService repositoryService) throws IOException {
+    String repositoryId = repositoryService.getRepository().getId();
+    Optional<FileObject> cachedTree = browseTreeCache.find(repositoryId, revision, path, false, limit);
+    if (cachedTree.isPresent()) {
+      log.trace("found tree for {} in cache", path);
+      return cachedTree;
+    }
+    FileObject tree;
+    try {
+      tree = RepositoryTree.browse(repositoryService, revision, path, false, limit).getFile();
+    } catch (NotFoundException e) {
+      log.trace("path {} does not exist", path);
+      return Optional.empty();
+    }
+    if (tree != null) {
+      browseTreeCache.put(repositoryId, revision, path, false, limit, tree);
+    }
+    return Optional.ofNullable(tree);
+  }
+
+  private ToolResult createResult(Map<String, Optional<FileObject>> files, String repositoryId, String revision) {
+    long existingPaths = files.values().stream().filter(Optional::isPresent).count();
+    OkResultRenderer resultRenderer = OkResultRenderer.success(String.format("Checked %s paths, %s of them exist.", files.size(), existingPaths));
+    resultRenderer.appendLine("Path | Type | Size | Content Type | Content Hash");
+    resultRenderer.appendLine("---|---|---|---|---");
+
+    Map<String, Object> structuredContent = new HashMap<>();
+    files.forEach((path, file) -> {
+      Map<String, Object> details = createDetails(path, file, repositoryId, revision);
+      resultRenderer.append(path.isEmpty() ? "/" : path).append(" | ")
+        .append(details.get("type")).append(" | ")
+        .append(details.getOrDefault("size", NOT_AVAILABLE)).append(" | ")
+        .append(details.getOrDefault("contentType", NOT_AVAILABLE)).append(" | ")
+        .appendLine(String.valueOf(details.getOrDefault("contentHash", NOT_AVAILABLE)));
+      structuredContent.put(path.isEmpty() ? "/" : path, details);
+    });
+
+    log.trace("paths checked");
+    return resultRenderer.render(structuredContent);
+  }
+
+  private Map<String, Object> createDetails(String path, Optional<FileObject> file, String repositoryId, String revision) {
+    Map<String, Object> details = new LinkedHashMap<>();
+    if (file.isEmpty()) {
+      details.put("type", "missing");
+    } else if (file.get().isDirectory()) {
+      details.put("type", "directory");
+    } else {
+      details.put("type", "file");
+      if (file.get().getLength().isPresent()) {
+        details.put("size", file.get().getLength().getAsLong());
+      }
+      BlobKey key = new BlobKey(repositoryId, revision, path);
+      // the content type detected from the content is more precise, but only known for files that have been read before
+      details.put("contentType", contentTypeCache.get(key)
+        .map(ContentTypeCache.DetectedContentType::raw)
+        .orElseGet(() -> contentTypeResolver.resolve(path).getRaw()));
+      contentHashCache.get(key)
+        .ifPresent(contentHash -> details.put("contentHash", contentHash));
+    }
+    return details;
+  }
+
+  private static String getDirectory(String path) {
+    return path.contains("/") ? path.substring(0, path.lastIndexOf('/')) : "";
+  }
+}
+
+@Data
+class StatPathsInput {
+  @NotNull
+  @Pattern(regexp = Validations.REPOSITORY_NAMESPACE_REGEX)
+  @JsonPropertyDescription("The namespace of the repository to check the paths in.")
+  private String namespace;
+
+  @NotNull
+  @Pattern(regexp = Validations.REPOSITORY_NAME_REGEX)
+  @JsonPropertyDescription("The name of the repository to check the paths in.")
+  private String name;
+
+  @JsonPropertyDescription("""
+    The revision to check the paths for. This can be either a 'real' revision, a branch, or a tag.
+    If this is omitted, the default branch of the repository will be taken.""")
+  private String revision;
+
+  @NotEmpty
+  @Size(max = ToolStatPaths.MAXIMUM_NUMBER_OF_PATHS)
+  @JsonPropertyDescription("The paths to check (at most 500). It is of no relevance, whether they start with a `/` or not.")
+  private List<String> paths;
+}
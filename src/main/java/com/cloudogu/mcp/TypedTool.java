@@ -72,6 +72,7 @@ public interface TypedTool<I> extends Tool {
       McpSchema.CallToolResult.Builder builder = builder()
         .textContent(result.getContent())
         .isError(false);
+      result.getAdditionalContent().forEach(builder::addContent);
 
       if (result.getStructuredContent() != null) {
         builder.structuredContent(result.getStructuredContent());
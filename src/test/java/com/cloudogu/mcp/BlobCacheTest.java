@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.api.CatCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlobCacheTest {
+
+  private static final BlobKey KEY = new BlobKey("42", "4a5b6c", "README.md");
+
+  @Mock
+  private RepositoryService repositoryService;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private CatCommandBuilder catCommandBuilder;
+
+  private final BlobCache cache = new BlobCache();
+
+  @BeforeEach
+  void mockCatCommand() {
+    when(repositoryService.getCatCommand()).thenReturn(catCommandBuilder);
+  }
+
+  @Test
+  void shouldServeSecondReadFromCache() throws IOException {
+    when(catCommandBuilder.getStream("README.md"))
+      .thenAnswer(invocation -> new ByteArrayInputStream("# Heart of Gold".getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(read()).isEqualTo("# Heart of Gold");
+    assertThat(read()).isEqualTo("# Heart of Gold");
+
+    verify(catCommandBuilder).setRevision("4a5b6c");
+    verify(catCommandBuilder).getStream("README.md");
+    assertThat(cache.getStatistics().hitCount()).isEqualTo(1);
+    assertThat(cache.getStatistics().missCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldNotCacheLargeFiles() throws IOException {
+    byte[] content = new byte[BlobCache.MAXIMUM_BLOB_SIZE + 42];
+    content[content.length - 1] = 42;
+    when(catCommandBuilder.getStream("README.md"))
+      .thenAnswer(invocation -> new ByteArrayInputStream(content));
+
+    for (int i = 0; i < 2; ++i) {
+      try (InputStream inputStream = cache.openStream(KEY, OptionalLong.empty(), repositoryService)) {
+        assertThat(inputStream.readAllBytes()).isEqualTo(content);
+      }
+    }
+
+    verify(catCommandBuilder, times(2)).getStream("README.md");
+    assertThat(cache.getStatistics().hitCount()).isZero();
+  }
+
+  @Test
+  void shouldPassFilesKnownToBeLargeStraightThrough() throws IOException {
+    InputStream stream = new ByteArrayInputStream(new byte[]{42});
+    when(catCommandBuilder.getStream("README.md")).thenReturn(stream);
+
+    try (InputStream inputStream = cache.openStream(KEY, OptionalLong.of(BlobCache.MAXIMUM_BLOB_SIZE + 1L), repositoryService)) {
+      assertThat(inputStream).isSameAs(stream);
+      assertThat(stream.available()).isEqualTo(1);
+    }
+    assertThat(cache.getStatistics().requestCount()).isZero();
+  }
+
+  private String read() throws IOException {
+    try (InputStream inputStream = cache.openStream(KEY, OptionalLong.of(15), repositoryService)) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedLineReaderTest {
+
+  @Test
+  void shouldReadLinesLikeBufferedReader() throws IOException {
+    try (BoundedLineReader reader = new BoundedLineReader(new StringReader("first\nsecond\r\nthird\r\n\nlast"), LineWindow.UNLIMITED)) {
+      assertThat(reader.readLine()).isEqualTo("first");
+      assertThat(reader.readLine()).isEqualTo("second");
+      assertThat(reader.readLine()).isEqualTo("third");
+      assertThat(reader.readLine()).isEmpty();
+      assertThat(reader.readLine()).isEqualTo("last");
+      assertThat(reader.readLine()).isNull();
+    }
+  }
+
+  @Test
+  void shouldSkipLines() throws IOException {
+    try (BoundedLineReader reader = new BoundedLineReader(new StringReader("first\r\nsecond\n"), LineWindow.UNLIMITED)) {
+      assertThat(reader.skipLine()).isTrue();
+      assertThat(reader.readLine()).isEqualTo("second");
+      assertThat(reader.skipLine()).isFalse();
+    }
+  }
+
+  @Test
+  void shouldCutLongLines() throws IOException {
+    String longLine = "x".repeat(100_000);
+    try (BoundedLineReader reader = new BoundedLineReader(new StringReader(longLine + "\nshort"), new LineWindow(1, 10))) {
+      assertThat(reader.readLine()).isEqualTo("xxxxxxxxxx…[99990 chars omitted]");
+      assertThat(reader.readLine()).isEqualTo("short");
+    }
+  }
+
+  @Test
+  void shouldShowWindowOfLine() throws IOException {
+    try (BoundedLineReader reader = new BoundedLineReader(new StringReader("0123456789\n0123\n01"), new LineWindow(3, 4))) {
+      assertThat(reader.readLine()).isEqualTo("…[2 chars omitted]2345…[4 chars omitted]");
+      assertThat(reader.readLine()).isEqualTo("…[2 chars omitted]23");
+      assertThat(reader.readLine()).isEqualTo("…[2 chars omitted]");
+    }
+  }
+
+  @Test
+  void shouldApplyWindowToCompleteLine() {
+    LineWindow window = new LineWindow(1, 5);
+
+    assertThat(window.apply("short")).isEqualTo("short");
+    assertThat(window.apply("longer line")).isEqualTo("longe…[6 chars omitted]");
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.github.sdorra.jse.ShiroExtension;
+import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.api.LogCommandBuilder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith({MockitoExtension.class, ShiroExtension.class})
+@SubjectAware(value = "trillian", permissions = "*")
+class ChangesetStreamerTest {
+
+  private static final long HOUR = 60 * 60 * 1000L;
+
+  @Mock(answer = Answers.RETURNS_SELF)
+  private LogCommandBuilder logCommandBuilder;
+
+  private final List<Changeset> history = new ArrayList<>();
+  private final List<String> requests = new ArrayList<>();
+  private final List<Integer> limits = new ArrayList<>();
+  private String startChangeset;
+  private int pagingStart;
+  private int pagingLimit;
+  private boolean reportTotal = true;
+
+  @BeforeEach
+  void mockLogCommand() throws IOException {
+    doAnswer(invocation -> {
+      startChangeset = invocation.getArgument(0);
+      return logCommandBuilder;
+    }).when(logCommandBuilder).setStartChangeset(any());
+    doAnswer(invocation -> {
+      pagingStart = invocation.getArgument(0);
+      return logCommandBuilder;
+    }).when(logCommandBuilder).setPagingStart(anyInt());
+    doAnswer(invocation -> {
+      pagingLimit = invocation.getArgument(0);
+      return logCommandBuilder;
+    }).when(logCommandBuilder).setPagingLimit(anyInt());
+    doAnswer(invocation -> {
+      requests.add(startChangeset + "@" + pagingStart);
+      limits.add(pagingLimit);
+      int start = startChangeset == null ? 0 : indexOf(startChangeset);
+      List<Changeset> log = history.subList(start, history.size());
+      int from = Math.min(pagingStart, log.size());
+      return new ChangesetPagingResult(reportTotal ? log.size() : -1, log.subList(from, Math.min(from + pagingLimit, log.size())));
+    }).when(logCommandBuilder).getChangesets();
+  }
+
+  @Test
+  void shouldContinueWithParentOfLastChangesetForLinearHistory() throws IOException {
+    createLinearHistory(50);
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 20, 20)
+      .fetchFiltered(changeset -> changeset.getId().equals("3"), 20);
+
+    assertThat(requests).containsExactly("null@0", "30@0", "10@0");
+    assertThat(result.matches()).extracting("id").containsExactly("3");
+    assertThat(result.totalSearched()).isEqualTo(50);
+    assertThat(result.overallCount()).isEqualTo(50);
+    assertThat(result.endOfHistory()).isTrue();
+  }
+
+  @Test
+  void shouldCountCompleteLogWhenBackendDoesNotReportTotal() throws IOException {
+    createLinearHistory(50);
+    reportTotal = false;
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 20, 20)
+      .fetchFiltered(changeset -> changeset.getId().equals("3"), 20);
+
+    assertThat(result.overallCount()).isEqualTo(50);
+  }
+
+  @Test
+  void shouldKeepTotalUnknownForPartialLog() throws IOException {
+    createLinearHistory(50);
+    reportTotal = false;
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 20, 20)
+      .fetchFiltered(changeset -> true, 10);
+
+    assertThat(result.overallCount()).isEqualTo(ChangesetStreamer.UNKNOWN_COUNT);
+  }
+
+  @Test
+  void shouldGrowChunksForSelectiveFilters() throws IOException {
+    createLinearHistory(200);
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 5, 1000)
+      .fetchFiltered(changeset -> changeset.getId().equals("10"), 10);
+
+    assertThat(limits).containsExactly(10, 20, 40, 80, 160);
+    assertThat(result.matches()).extracting("id").containsExactly("10");
+    assertThat(result.endOfHistory()).isTrue();
+  }
+
+  @Test
+  void shouldFetchChunkDirectlyIfBackgroundRequestHasNotBeenStarted() throws IOException {
+    createLinearHistory(200);
+    List<FutureTask<?>> backgroundRequests = new ArrayList<>();
+    SubjectAwareExecutor busyExecutor = mock(SubjectAwareExecutor.class);
+    when(busyExecutor.submit(any())).thenAnswer(invocation -> {
+      FutureTask<?> task = new FutureTask<>(invocation.getArgument(0, Callable.class));
+      backgroundRequests.add(task);
+      return task;
+    });
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, busyExecutor, 5, 1000)
+      .fetchFiltered(changeset -> changeset.getId().equals("10"), 10);
+    backgroundRequests.forEach(FutureTask::run);
+
+    assertThat(backgroundRequests).isNotEmpty();
+    assertThat(limits).containsExactly(10, 20, 40, 80, 160);
+    assertThat(result.matches()).extracting("id").containsExactly("10");
+  }
+
+  @Test
+  void shouldEstimateChunkSizeFromMatchRatio() throws IOException {
+    createLinearHistory(200);
+
+    // every second changeset matches
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 5, 1000)
+      .fetchFiltered(changeset -> Integer.parseInt(changeset.getId()) % 2 == 0, 40);
+
+    assertThat(limits).containsExactly(40, 40);
+    assertThat(result.matches()).hasSize(40);
+    assertThat(result.endOfHistory()).isFalse();
+  }
+
+  @Test
+  void shouldNotFetchMoreThanLimitForFirstChunk() throws IOException {
+    createLinearHistory(200);
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor())
+      .fetchFiltered(changeset -> true, 5);
+
+    assertThat(limits).containsExactly(5);
+    assertThat(result.matches()).extracting("id").containsExactly("200", "199", "198", "197", "196");
+  }
+
+  @Test
+  void shouldUseOffsetWhenMergeHasUnvisitedParents() throws IOException {
+    history.add(createChangeset("merge", "a2", "b1"));
+    history.add(createChangeset("a2", "a1"));
+    history.add(createChangeset("b1", "a1"));
+    history.add(createChangeset("a1"));
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 2, 2)
+      .fetchFiltered(changeset -> true, 10);
+
+    assertThat(requests).containsExactly("null@0", "null@2", "null@4");
+    assertThat(result.matches()).extracting("id").containsExactly("merge", "a2", "b1", "a1");
+  }
+
+  @Test
+  void shouldReturnToOriginalStartForOffset() throws IOException {
+    history.add(createChangeset("c4", "c3"));
+    history.add(createChangeset("c3", "c2"));
+    history.add(createChangeset("c2", "c1", "side"));
+    history.add(createChangeset("c1", "base"));
+    history.add(createChangeset("side", "base"));
+    history.add(createChangeset("base"));
+    // this is done by the list-commits tool, before the streamer is created
+    logCommandBuilder.setStartChangeset("c4");
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, "c4", new SubjectAwareExecutor(), 2, 2)
+      .fetchFiltered(changeset -> true, 10);
+
+    assertThat(requests).containsExactly("c4@0", "c2@0", "c4@4", "c4@6");
+    assertThat(result.matches()).extracting("id").containsExactly("c4", "c3", "c2", "c1", "side", "base");
+  }
+
+  @Test
+  void shouldContinueWithFirstParents() throws IOException {
+    history.add(createChangeset("c4", "c3"));
+    history.add(createChangeset("c3", "c2"));
+    history.add(createChangeset("c2", "c1", "side"));
+    history.add(createChangeset("c1", "base"));
+    history.add(createChangeset("side", "base"));
+    history.add(createChangeset("base"));
+    logCommandBuilder.setStartChangeset("c4");
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, "c4", new SubjectAwareExecutor(), 2, 2)
+      .firstParentOnly()
+      .fetchFiltered(changeset -> true, 10);
+
+    assertThat(requests).containsExactly("c4@0", "c2@0", "base@0");
+    assertThat(result.matches()).extracting("id").containsExactly("c4", "c3", "c2", "c1", "base");
+    assertThat(result.overallCount()).isEqualTo(5);
+    assertThat(result.endOfHistory()).isTrue();
+  }
+
+  @Test
+  void shouldSkipMergedBranchesForFirstParents() throws IOException {
+    history.add(createChangeset("merge", "a2", "b2"));
+    history.add(createChangeset("b2", "b1"));
+    history.add(createChangeset("b1", "a2"));
+    history.add(createChangeset("a2", "a1"));
+    history.add(createChangeset("a1"));
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 10, 10)
+      .firstParentOnly()
+      .fetchFiltered(changeset -> true, 10);
+
+    assertThat(result.matches()).extracting("id").containsExactly("merge", "a2", "a1");
+    assertThat(result.totalSearched()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldKeepTotalUnknownForPartialFirstParents() throws IOException {
+    createLinearHistory(50);
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 10, 10)
+      .firstParentOnly()
+      .fetchFiltered(changeset -> true, 10);
+
+    assertThat(result.overallCount()).isEqualTo(ChangesetStreamer.UNKNOWN_COUNT);
+  }
+
+  @Test
+  void shouldStopLogBeforeDateWindow() throws IOException {
+    createLinearHistory(100);
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 10, 10)
+      .stopBefore(Instant.ofEpochMilli(history.get(40).getDate()), Duration.ZERO)
+      .fetchFiltered(changeset -> true, 100);
+
+    assertThat(requests).containsExactly("null@0", "90@0", "80@0", "70@0", "60@0");
+    assertThat(result.matches()).hasSize(41);
+    assertThat(result.endOfHistory()).isTrue();
+  }
+
+  @Test
+  void shouldConsiderClockSkewTolerance() throws IOException {
+    createLinearHistory(100);
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 10, 10)
+      .stopBefore(Instant.ofEpochMilli(history.get(40).getDate()), Duration.ofHours(5))
+      .fetchFiltered(changeset -> true, 100);
+
+    assertThat(result.matches()).hasSize(46);
+  }
+
+  @Test
+  void shouldNotStopAtOldChangesetOfMergedBranch() throws IOException {
+    history.add(createChangeset("merge", 10, "old", "new"));
+    history.add(createChangeset("old", 1, "base"));
+    history.add(createChangeset("new", 9, "base"));
+    history.add(createChangeset("base", 0, "root"));
+    history.add(createChangeset("root", 0));
+    Instant bound = Instant.ofEpochMilli(HOUR * 5);
+
+    ChangesetStreamer.FilterResult result = new ChangesetStreamer(logCommandBuilder, null, new SubjectAwareExecutor(), 10, 10)
+      .stopBefore(bound, Duration.ZERO)
+      .fetchFiltered(changeset -> !Instant.ofEpochMilli(changeset.getDate()).isBefore(bound), 10);
+
+    assertThat(result.matches()).extracting("id").containsExactly("merge", "new");
+    assertThat(result.totalSearched()).isEqualTo(3);
+  }
+
+  private void createLinearHistory(int size) {
+    for (int i = size; i > 0; --i) {
+      history.add(i > 1 ? createChangeset(Integer.toString(i), i, Integer.toString(i - 1)) : createChangeset(Integer.toString(i), i));
+    }
+  }
+
+  private int indexOf(String id) {
+    for (int i = 0; i < history.size(); ++i) {
+      if (history.get(i).getId().equals(id)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("unknown changeset " + id);
+  }
+
+  private static Changeset createChangeset(String id, String... parents) {
+    return createChangeset(id, 0, parents);
+  }
+
+  private static Changeset createChangeset(String id, int hour, String... parents) {
+    Changeset changeset = new Changeset(id, HOUR * hour, new Person("Arthur Dent"));
+    changeset.setParents(List.of(parents));
+    return changeset;
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Person;
+
+import java.time.Instant;
+import java.util.List;
+
+import static com.cloudogu.mcp.CommitIndexTest.changeset;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommitFilterTest {
+
+  private static final Person ARTHUR = new Person("Arthur Dent", "dent@hog.org");
+  private static final Person TRILLIAN = new Person("Trillian McMillan", "trish@hog.org");
+
+  private static final Changeset ESCAPE = changeset(
+    "23", Instant.parse("1985-05-23T21:00:00Z").toEpochMilli(), ARTHUR, "Escape from Earth"
+  );
+  private static final Changeset FIX = changeset(
+    "42", Instant.parse("1985-06-01T16:00:00Z").toEpochMilli(), TRILLIAN, "Fix improbability drive", "23"
+  );
+
+  @Test
+  void shouldMatchEverythingWithoutFilter() {
+    CommitFilter filter = compile(new ListCommitsInput());
+
+    assertThat(filter.hasPredicates()).isFalse();
+    assertThat(filter.matches(ESCAPE)).isTrue();
+  }
+
+  @Test
+  void shouldMatchPlainTermsInMessageAndAuthor() {
+    CommitFilter filter = compile("dent");
+
+    assertThat(filter.matches(ESCAPE)).isTrue();
+    assertThat(filter.matches(FIX)).isFalse();
+    assertThat(compile("DRIVE").matches(FIX)).isTrue();
+  }
+
+  @Test
+  void shouldCombineTermsWithAndByDefault() {
+    assertThat(compile("fix drive").matches(FIX)).isTrue();
+    assertThat(compile("fix earth").matches(FIX)).isFalse();
+    assertThat(compile("fix AND drive").matches(FIX)).isTrue();
+  }
+
+  @Test
+  void shouldHandleOrAndNot() {
+    CommitFilter filter = compile("(author:arthur OR message:drive) -earth");
+
+    assertThat(filter.matches(FIX)).isTrue();
+    assertThat(filter.matches(ESCAPE)).isFalse();
+    assertThat(compile("NOT author:trillian").matches(ESCAPE)).isTrue();
+  }
+
+  @Test
+  void shouldMatchQuotedValues() {
+    assertThat(compile("message:\"improbability drive\"").matches(FIX)).isTrue();
+    assertThat(compile("message:\"drive improbability\"").matches(FIX)).isFalse();
+  }
+
+  @Test
+  void shouldMatchRegularExpressions() {
+    assertThat(compile("message:/^fix\\b/").matches(FIX)).isTrue();
+    assertThat(compile("message:/^drive/").matches(FIX)).isFalse();
+    assertThat(compile("id:/^4\\d$/").matches(FIX)).isTrue();
+  }
+
+  @Test
+  void shouldMatchKnownFieldsCaseInsensitive() {
+    assertThat(compile("Author:trillian").matches(FIX)).isTrue();
+    assertThat(compile("ID:23").matches(FIX)).isFalse();
+  }
+
+  @Test
+  void shouldMatchUnknownFieldsAsPlainText() {
+    Changeset typo = changeset("7", FIX.getDate(), ARTHUR, "fix: typo in http://hog.org/drive");
+
+    assertThat(compile("fix: typo").matches(typo)).isTrue();
+    assertThat(compile("fix: typo").matches(FIX)).isFalse();
+    assertThat(compile("http://hog.org").matches(typo)).isTrue();
+    assertThat(compile("committer:dent").matches(ESCAPE)).isFalse();
+  }
+
+  @Test
+  void shouldMatchDates() {
+    assertThat(compile("before:1985-06-01").matches(ESCAPE)).isTrue();
+    assertThat(compile("before:1985-06-01").matches(FIX)).isFalse();
+    assertThat(compile("after:1985-06-01T12:00:00Z").matches(FIX)).isTrue();
+  }
+
+  @Test
+  void shouldCombineWithLegacyFilters() {
+    ListCommitsInput input = new ListCommitsInput();
+    input.setAuthorFilter("trillian");
+    input.setFilter("earth OR drive");
+
+    CommitFilter filter = CommitFilter.compile(input);
+
+    assertThat(filter.matches(FIX)).isTrue();
+    assertThat(filter.matches(ESCAPE)).isFalse();
+  }
+
+  @Test
+  void shouldFilterMerges() {
+    Changeset merge = changeset("43", 0, TRILLIAN, "Merge drive fix", "42", "23");
+    ListCommitsInput input = new ListCommitsInput();
+
+    input.setMerges(ListCommitsInput.Merges.exclude);
+    assertThat(compile(input).matches(merge)).isFalse();
+    assertThat(compile(input).matches(FIX)).isTrue();
+
+    input.setMerges(ListCommitsInput.Merges.only);
+    assertThat(compile(input).matches(merge)).isTrue();
+    assertThat(compile(input).matches(ESCAPE)).isFalse();
+    assertThat(compile(input).matches(CommitIndex.of(List.of(merge, FIX, ESCAPE)), 0)).isTrue();
+  }
+
+  @Test
+  void shouldMatchRowsOfIndex() {
+    CommitIndex index = CommitIndex.of(List.of(FIX, ESCAPE));
+    CommitFilter filter = compile("author:dent");
+
+    assertThat(filter.matches(index, 0)).isFalse();
+    assertThat(filter.matches(index, 1)).isTrue();
+  }
+
+  @Nested
+  class Pushdown {
+
+    @Test
+    void shouldProvidePath() {
+      CommitFilter filter = compile("path:/src/main/ drive");
+
+      assertThat(filter.getPath()).contains("src/main");
+      assertThat(filter.hasPredicates()).isTrue();
+    }
+
+    @Test
+    void shouldMergePathWithPathInput() {
+      ListCommitsInput input = new ListCommitsInput();
+      input.setPath("src/main");
+      input.setFilter("path:src/main/");
+
+      assertThat(CommitFilter.compile(input).getPath()).contains("src/main");
+    }
+
+    @Test
+    void shouldProvideLatestLowerDateBound() {
+      ListCommitsInput input = new ListCommitsInput();
+      input.setCommittedAfter(Instant.parse("1985-01-01T00:00:00Z"));
+      input.setFilter("after:1985-05-01 before:1985-07-01");
+
+      assertThat(CommitFilter.compile(input).getLowerDateBound())
+        .contains(Instant.parse("1985-05-01T00:00:00Z"));
+    }
+
+    @Test
+    void shouldNotProvideLowerDateBoundFromAlternatives() {
+      CommitFilter filter = compile("after:1985-05-01 OR author:dent");
+
+      assertThat(filter.getLowerDateBound()).isEmpty();
+    }
+  }
+
+  @Nested
+  class InvalidExpressions {
+
+    @Test
+    void shouldRejectMissingParenthesis() {
+      assertThatThrownBy(() -> compile("(fix OR drive"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Missing `)` at position 14.");
+    }
+
+    @Test
+    void shouldRejectInvalidRegularExpression() {
+      assertThatThrownBy(() -> compile("message:/fix(/"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Invalid regular expression");
+    }
+
+    @Test
+    void shouldRejectInvalidDate() {
+      assertThatThrownBy(() -> compile("before:yesterday"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Invalid date `yesterday`");
+    }
+
+    @Test
+    void shouldRejectPathInAlternatives() {
+      assertThatThrownBy(() -> compile("path:src OR drive"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("The field `path` can only be combined with AND.");
+    }
+
+    @Test
+    void shouldRejectConflictingPaths() {
+      assertThatThrownBy(() -> compile("path:src path:docs"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Only one path can be given.");
+    }
+  }
+
+  private static CommitFilter compile(String expression) {
+    ListCommitsInput input = new ListCommitsInput();
+    input.setFilter(expression);
+    return CommitFilter.compile(input);
+  }
+
+  private static CommitFilter compile(ListCommitsInput input) {
+    return CommitFilter.compile(input);
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.mcp;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.github.sdorra.jse.ShiroExtension;
+import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Person;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.cloudogu.mcp.CommitIndexTest.changeset;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(ShiroExtension.class)
+@SubjectAware("trillian")
+class CommitIndexCacheTest {
+
+  private static final Person ARTHUR = new Person("Arthur Dent", "dent@hog.org");
+
+  private final CommitIndexCache cache = new CommitIndexCache(MoreExecutors.newDirectExecutorService());
+
+  @Test
+  void shouldKeepIndexOfMaximumSize() {
+    List<Changeset> history = new ArrayList<>(CommitIndexCache.MAXIMUM_COMMITS);
+    for (int i = CommitIndexCache.MAXIMUM_COMMITS; i > 0; --i) {
+      String message = "Change number " + i + "\n\n" + "Some explanation of the change. ".repeat(6);
+      history.add(i > 1 ? changeset(Integer.toString(i), i, ARTHUR, message, Integer.toString(i - 1)) : changeset("1", 1, ARTHUR, message));
+    }
+    CommitIndex index = CommitIndex.of(history);
+
+    cache.put("hog", index);
+
+    assertThat(cache.get("hog", Integer.toString(CommitIndexCache.MAXIMUM_COMMITS))).containsSame(index);
+  }
+
+  @Test
+  void shouldExtendIndexWithPushedChangesets() {
+    cache.put("hog", CommitIndex.of(List.of(changeset("1", 1000, ARTHUR, "Initial commit"))));
+
+    cache.extend("hog", List.of(
+      changeset("3", 3000, ARTHUR, "Second", "2"),
+      changeset("2", 2000, ARTHUR, "First", "1")
+    ));
+
+    assertThat(cache.get("hog", "3"))
+      .get()
+      .extracting(CommitIndex::size)
+      .isEqualTo(3);
+  }
+
+  @Test
+  void shouldExtendIndexOfFirstParentForMerges() {
+    cache.put("hog", CommitIndex.of(List.of(changeset("1", 1000, ARTHUR, "Initial commit"))));
+
+    cache.extend("hog", List.of(
+      changeset("3", 3000, ARTHUR, "Merge", "1", "2"),
+      changeset("2", 2000, ARTHUR, "Feature", "1")
+    ));
+
+    assertThat(cache.get("hog", "3")).get().satisfies(index -> {
+      assertThat(index.size()).isEqualTo(3);
+      assertThat(index.getId(1)).isEqualTo("2");
+      assertThat(index.getParents(0)).containsExactly(2, 1);
+      assertThat(index.getParents(1)).containsExactly(2);
+    });
+    assertThat(cache.get("hog", "2")).isEmpty();
+  }
+
+  @Test
+  void shouldTakeNewAncestorsFromIndexOfMergedHead() {
+    cache.put("hog", CommitIndex.of(List.of(changeset("1", 1000, ARTHUR, "Initial commit"))));
+    cache.put("hog", CommitIndex.of(List.of(
+      changeset("2", 2000, ARTHUR, "Feature", "1"),
+      changeset("1", 1000, ARTHUR, "Initial commit")
+    )));
+
+    cache.extend("hog", List.of(changeset("3", 3000, ARTHUR, "Merge", "1", "2")));
+
+    assertThat(cache.get("hog", "3")).get().satisfies(index -> {
+      assertThat(index.size()).isEqualTo(3);
+      assertThat(index.getMessage(1)).isEqualTo("Feature");
+      assertThat(index.getParents(0)).containsExactly(2, 1);
+    });
+  }
+
+  @Test
+  void shouldNotExtendIndexForMergesOfUnknownHistory() {
+    cache.put("hog", CommitIndex.of(List.of(changeset("1", 1000, ARTHUR, "Initial commit"))));
+
+    cache.extend("hog", List.of(changeset("3", 3000, ARTHUR, "Merge", "1", "2")));
+
+    assertThat(cache.get("hog", "3")).isEmpty();
+  }
+
+  @Test
+  void shouldNotExtendUnknownHistory() {
+    cache.extend("hog", List.of(changeset("2", 2000, ARTHUR, "First", "1")));
+
+    assertThat(cache.get("hog", "2")).isEmpty();
+  }
+
+  @Test
+  void shouldNotBuildIndexesForNewHeadsOfRepositoryWithTooLargeHistory() {
+    AtomicInteger builds = new AtomicInteger();
+    CommitIndexCache.IndexBuilder tooLarge = () -> {
+      builds.incrementAndGet();
+      return Optional.empty();
+    };
+
+    cache.buildInBackground("hog", "1", tooLarge);
+    cache.buildInBackground("hog", "2", tooLarge);
+
+    assertThat(builds).hasValue(1);
+  }
+
+  @Test
+  void shouldBuildIndexesAgainAfterHistoryHasBeenRewritten() {
+    AtomicInteger builds = new AtomicInteger();
+    CommitIndexCache.IndexBuilder tooLarge = () -> {
+      builds.incrementAndGet();
+      return Optional.empty();
+    };
+    cache.buildInBackground("hog", "1", tooLarge);
+
+    cache.extend("hog", List.of(changeset("a", 1000, ARTHUR, "New initial commit")));
+    cache.buildInBackground("hog", "a", tooLarge);
+
+    assertThat(builds).hasValue(2);
+  }
+
+  @Test
+  void shouldForgetInvalidatedRepository() {
+    AtomicInteger builds = new AtomicInteger();
+    cache.put("hog", CommitIndex.of(List.of(changeset("1", 1000, ARTHUR, "Initial commit"))));
+    cache.buildInBackground("hog", "2", () -> {
+      builds.incrementAndGet();
+      return Optional.empty();
+    });
+
+    cache.invalidate("hog");
+    cache.buildInBackground("hog", "2", () -> {
+      builds.incrementAndGet();
+      return Optional.empty();
+    });
+
+    assertThat(cache.get("hog", "1")).isEmpty();
+    assertThat(builds).hasValue(2);
+  }
+}
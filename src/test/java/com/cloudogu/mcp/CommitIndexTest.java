@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.mcp;
+
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Person;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommitIndexTest {
+
+  private static final Person ARTHUR = new Person("Arthur Dent", "dent@hog.org");
+  private static final Person TRILLIAN = new Person("Trillian McMillan", "trish@hog.org");
+
+  private final CommitIndex index = CommitIndex.of(
+    List.of(
+      changeset("4", 4000, ARTHUR, "Merge feature", "3", "2"),
+      changeset("3", 3000, TRILLIAN, "Fix drive", "1"),
+      changeset("2", 2000, ARTHUR, "Add feature", "1"),
+      changeset("1", 1000, TRILLIAN, "Initial commit")
+    )
+  );
+
+  @Test
+  void shouldKeepMetadata() {
+    assertThat(index.size()).isEqualTo(4);
+    assertThat(index.getHead()).isEqualTo("4");
+    assertThat(index.getId(1)).isEqualTo("3");
+    assertThat(index.getDate(1)).isEqualTo(3000);
+    assertThat(index.getAuthor(1)).isEqualTo(TRILLIAN.toString());
+    assertThat(index.getMessage(1)).isEqualTo("Fix drive");
+    assertThat(index.getMessage(3)).isEqualTo("Initial commit");
+  }
+
+  @Test
+  void shouldResolveParentsToRows() {
+    assertThat(index.getParents(0)).containsExactly(1, 2);
+    assertThat(index.getParents(2)).containsExactly(3);
+    assertThat(index.getParents(3)).isEmpty();
+    assertThat(index.getParentCount(0)).isEqualTo(2);
+    assertThat(index.getParentCount(3)).isZero();
+  }
+
+  @Test
+  void shouldFollowFirstParents() {
+    assertThat(index.getFirstParent(0)).isEqualTo(1);
+    assertThat(index.getFirstParent(3)).isEqualTo(CommitIndex.MISSING_PARENT);
+    assertThat(index.getFirstParentCount()).isEqualTo(3);
+    assertThat(index.findNextOnFirstParents(0, row -> index.getId(row).equals("1"))).isEqualTo(3);
+    assertThat(index.findNextOnFirstParents(0, row -> index.getId(row).equals("2"))).isEqualTo(-1);
+  }
+
+  @Test
+  void shouldFindNextMatchingRow() {
+    assertThat(index.findNext(0, row -> index.getAuthor(row).contains("Trillian"))).isEqualTo(1);
+    assertThat(index.findNext(2, row -> index.getAuthor(row).contains("Trillian"))).isEqualTo(3);
+    assertThat(index.findNext(0, row -> index.getMessage(row).contains("Nothing"))).isEqualTo(-1);
+  }
+
+  @Test
+  void shouldMarkMissingParents() {
+    CommitIndex partialIndex = CommitIndex.of(List.of(changeset("2", 2000, ARTHUR, "Add feature", "1")));
+
+    assertThat(partialIndex.getParents(0)).containsExactly(CommitIndex.MISSING_PARENT);
+  }
+
+  @Test
+  void shouldPrependNewChangesets() {
+    CommitIndex newIndex = index.prepend(
+      List.of(
+        changeset("6", 6000, TRILLIAN, "Second after merge", "5"),
+        changeset("5", 5000, ARTHUR, "First after merge", "4")
+      ).stream().map(CommitIndex.Row::of).toList()
+    );
+
+    assertThat(newIndex.size()).isEqualTo(6);
+    assertThat(newIndex.getHead()).isEqualTo("6");
+    assertThat(newIndex.getMessage(2)).isEqualTo("Merge feature");
+    assertThat(newIndex.getParents(1)).containsExactly(2);
+    assertThat(newIndex.getParents(2)).containsExactly(3, 4);
+    assertThat(index.size()).isEqualTo(4);
+  }
+
+  static Changeset changeset(String id, long date, Person author, String message, String... parents) {
+    Changeset changeset = new Changeset(id, date, author, message);
+    changeset.setParents(List.of(parents));
+    return changeset;
+  }
+}
@@ -108,6 +108,25 @@ class ContentFormatterTest {
         """);
   }
 
+  @Test
+  void shouldWriteTailWithLineNumbersFromEnd() {
+    ContentFormatter formatter = new ContentFormatter("README.md");
+
+    OkResultRenderer resultRenderer = formatter.writeTail(CONTENT, null);
+
+    assertThat(resultRenderer).asString()
+      .isEqualTo("""
+        STATUS: [TRUNCATED] Showing the last 4 lines of `README.md`. The lines are numbered from the end of the file, so that the last line has the number -1.
+        ---------------------------------------------------------
+        ```
+        -4 | # Heart of Gold
+        -3 |\s
+        -2 | A spacecraft equipped with
+        -1 | Infinite Improbability Drive.
+        ```
+        """);
+  }
+
   @Test
   void shouldFormatInfo() {
     ContentFormatter formatter = new ContentFormatter("README.md");
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GlobTest {
+
+  @Test
+  void shouldMatchNamesOnAnyLevel() {
+    Glob glob = Glob.compile("*.md");
+
+    assertThat(glob.matches("README.md")).isTrue();
+    assertThat(glob.matches("docs/index.md")).isTrue();
+    assertThat(glob.matches("docs/index.mdx")).isFalse();
+  }
+
+  @Test
+  void shouldMatchCompletePath() {
+    Glob glob = Glob.compile("src/*/Main.java");
+
+    assertThat(glob.matches("src/main/Main.java")).isTrue();
+    assertThat(glob.matches("src/main/java/Main.java")).isFalse();
+    assertThat(glob.matches("lib/src/main/Main.java")).isFalse();
+  }
+
+  @Test
+  void shouldMatchAnyNumberOfDirectories() {
+    Glob glob = Glob.compile("src/**/*.java");
+
+    assertThat(glob.matches("src/Main.java")).isTrue();
+    assertThat(glob.matches("src/main/java/com/cloudogu/Main.java")).isTrue();
+    assertThat(glob.matches("src/main/resources/Main.properties")).isFalse();
+  }
+
+  @Test
+  void shouldMatchDirectoryItselfWithTrailingWildcard() {
+    Glob glob = Glob.compile("build/**");
+
+    assertThat(glob.matches("build")).isTrue();
+    assertThat(glob.matches("build/libs/app.jar")).isTrue();
+    assertThat(glob.matches("buildSrc")).isFalse();
+  }
+
+  @Test
+  void shouldAnchorPatternsWithLeadingSlash() {
+    Glob glob = Glob.compile("/node_modules");
+
+    assertThat(glob.matches("node_modules")).isTrue();
+    assertThat(glob.matches("web/node_modules")).isFalse();
+  }
+
+  @Test
+  void shouldEscapeSpecialCharacters() {
+    Glob glob = Glob.compile("file(1).txt");
+
+    assertThat(glob.matches("file(1).txt")).isTrue();
+    assertThat(glob.matches("file1atxt")).isFalse();
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Added;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.Modifications;
+import sonia.scm.repository.Modified;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.Removed;
+import sonia.scm.repository.Renamed;
+import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.ModificationsCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LastCommitCollectorTest {
+
+  private final Changeset first = new Changeset("c1", 1700000000000L, new Person("Arthur Dent"));
+  private final Changeset second = new Changeset("c2", 1600000000000L, new Person("Ford Prefect"));
+  private final Changeset third = new Changeset("c3", 1500000000000L, new Person("Zaphod Beeblebrox"));
+
+  @Mock
+  private RepositoryService repositoryService;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private LogCommandBuilder logCommandBuilder;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private ModificationsCommandBuilder modificationsCommandBuilder;
+
+  @BeforeEach
+  void mockHistory() throws IOException {
+    when(repositoryService.getLogCommand()).thenReturn(logCommandBuilder);
+    when(logCommandBuilder.getChangesets())
+      .thenReturn(new ChangesetPagingResult(3, List.of(first, second, third)));
+    lenient().when(repositoryService.getModificationsCommand()).thenReturn(modificationsCommandBuilder);
+    lenient().when(modificationsCommandBuilder.getModifications())
+      .thenReturn(new Modifications("c1", new Modified("docs/index.md")))
+      .thenReturn(new Modifications("c2", new Renamed("README", "README.md")))
+      .thenReturn(new Modifications("c3", new Added("docs/guide.md")));
+  }
+
+  @Test
+  void shouldFindLastCommitsInSingleWalk() throws IOException {
+    Map<String, Changeset> lastCommits = new LastCommitCollector(Duration.ofMinutes(1))
+      .collect(repositoryService, "main", List.of("docs/index.md", "docs/guide.md", "README.md"), List.of("docs"));
+
+    assertThat(lastCommits)
+      .containsEntry("docs/index.md", first)
+      .containsEntry("docs", first)
+      .containsEntry("README.md", second)
+      .containsEntry("docs/guide.md", third);
+    verify(logCommandBuilder).setStartChangeset("main");
+  }
+
+  @Test
+  void shouldResolveDirectoriesOfRemovedFilesAndOldPathsOfRenamedFiles() throws IOException {
+    when(modificationsCommandBuilder.getModifications())
+      .thenReturn(new Modifications("c1", new Removed("docs/old.md")))
+      .thenReturn(new Modifications("c2", new Renamed("src/main/Old.java", "Main.java")))
+      .thenReturn(new Modifications("c3", new Added("src/main/App.java")));
+
+    Map<String, Changeset> lastCommits = new LastCommitCollector(Duration.ofMinutes(1))
+      .collect(repositoryService, "main", List.of(), List.of("docs", "src", "src/main"));
+
+    assertThat(lastCommits)
+      .containsEntry("docs", first)
+      .containsEntry("src", second)
+      .containsEntry("src/main", second);
+  }
+
+  @Test
+  void shouldStopWalkWhenAllPathsAreResolved() throws IOException {
+    new LastCommitCollector(Duration.ofMinutes(1))
+      .collect(repositoryService, null, List.of("docs/index.md"), List.of());
+
+    verify(modificationsCommandBuilder).revision("c1");
+    verify(modificationsCommandBuilder, never()).revision("c2");
+    verify(logCommandBuilder, never()).setStartChangeset(null);
+  }
+
+  @Test
+  void shouldStopWalkWhenTimeBudgetIsUsedUp() throws IOException {
+    Map<String, Changeset> lastCommits = new LastCommitCollector(Duration.ZERO)
+      .collect(repositoryService, "main", List.of("docs/index.md"), List.of("docs"));
+
+    assertThat(lastCommits).isEmpty();
+    verify(repositoryService, never()).getModificationsCommand();
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathIndexCacheTest {
+
+  private final PathIndexCache cache = new PathIndexCache();
+
+  @Test
+  void shouldKeepIndexOfMaximumSize() throws IOException {
+    List<String> paths = new ArrayList<>(ToolFindFiles.MAXIMUM_INDEX_SIZE);
+    for (int i = 0; i < ToolFindFiles.MAXIMUM_INDEX_SIZE; ++i) {
+      paths.add(String.format("modules/module-%03d/src/main/java/com/example/feature/File%06d.java", i % 1000, i));
+    }
+    PathIndex index = PathIndex.of(paths, true);
+
+    PathIndex builtIndex = cache.get("hog", "42", () -> index);
+    PathIndex cachedIndex = cache.get("hog", "42", () -> {
+      throw new IOException("index should have been cached");
+    });
+
+    assertThat(builtIndex).isSameAs(index);
+    assertThat(cachedIndex).isSameAs(index);
+    assertThat(cachedIndex.find("File000042.java", "", 10).paths())
+      .containsExactly("modules/module-042/src/main/java/com/example/feature/File000042.java");
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathIndexTest {
+
+  private final PathIndex index = PathIndex.of(
+    List.of(
+      "web/src/app.ts",
+      "core/src/main/java/Main.java",
+      "core/src/test/java/MainTest.java",
+      "core/pom.xml",
+      "pom.xml"
+    ),
+    true
+  );
+
+  @Test
+  void shouldFindPathsInDirectory() {
+    PathIndex.Matches matches = index.find("*.java", "core/src/test", 10);
+
+    assertThat(matches.paths()).containsExactly("core/src/test/java/MainTest.java");
+  }
+
+  @Test
+  void shouldNotFindPathsOutsideOfDirectory() {
+    PathIndex.Matches matches = index.find("web/**", "core", 10);
+
+    assertThat(matches.paths()).isEmpty();
+  }
+
+  @Test
+  void shouldUseLiteralPrefixOfGlob() {
+    PathIndex.Matches matches = index.find("core/src/**/*.java", "", 10);
+
+    assertThat(matches.paths()).containsExactly("core/src/main/java/Main.java", "core/src/test/java/MainTest.java");
+  }
+
+  @Test
+  void shouldCountAllMatches() {
+    PathIndex.Matches matches = index.find("POM", "", 1);
+
+    assertThat(matches.paths()).containsExactly("core/pom.xml");
+    assertThat(matches.overallCount()).isEqualTo(2);
+  }
+}
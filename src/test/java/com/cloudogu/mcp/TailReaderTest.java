@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TailReaderTest {
+
+  private static final String CONTENT = """
+    # Heart of Gold
+
+    A spacecraft equipped with
+    Infinite Improbability Drive.
+    """;
+
+  @Test
+  void shouldReadLastLinesBackwardsFromArray() throws IOException {
+    TailReader.TailResult result = new TailReader(2).read(stream(CONTENT));
+
+    assertThat(result.lines()).containsExactly("A spacecraft equipped with", "Infinite Improbability Drive.");
+    assertThat(result.overallLineCount()).isEmpty();
+    assertThat(result.firstLineNumber()).isEmpty();
+  }
+
+  @Test
+  void shouldReadLastLinesBackwardsFromFile(@TempDir Path tempDir) throws IOException {
+    Path file = tempDir.resolve("README.md");
+    Files.writeString(file, CONTENT);
+
+    try (InputStream stream = new FileInputStream(file.toFile())) {
+      TailReader.TailResult result = new TailReader(3).read(stream);
+
+      assertThat(result.lines()).containsExactly("", "A spacecraft equipped with", "Infinite Improbability Drive.");
+      assertThat(result.overallLineCount()).isEmpty();
+    }
+  }
+
+  @Test
+  void shouldCountLinesOfCopiedStream() throws IOException {
+    TailReader.TailResult result = new TailReader(2).read(new BufferedInputStream(stream(CONTENT)));
+
+    assertThat(result.lines()).containsExactly("A spacecraft equipped with", "Infinite Improbability Drive.");
+    assertThat(result.overallLineCount()).hasValue(4);
+    assertThat(result.firstLineNumber()).hasValue(3);
+  }
+
+  @Test
+  void shouldCopyLargeStreamToTemporaryFile() throws IOException {
+    String content = "Don't Panic\n".repeat(100_000) + "42\n";
+
+    TailReader.TailResult result = new TailReader(2).read(new BufferedInputStream(stream(content)));
+
+    assertThat(result.lines()).containsExactly("Don't Panic", "42");
+    assertThat(result.overallLineCount()).hasValue(100_001);
+  }
+
+  @Test
+  void shouldReadWholeFileIfItHasLessLines() throws IOException {
+    TailReader.TailResult result = new TailReader(10).read(stream("single line without line break"));
+
+    assertThat(result.lines()).containsExactly("single line without line break");
+    assertThat(result.firstLineNumber()).hasValue(1);
+  }
+
+  @Test
+  void shouldHandleWindowsLineBreaks() throws IOException {
+    TailReader.TailResult result = new TailReader(1).read(stream("first\r\nsecond\r\n"));
+
+    assertThat(result.lines()).containsExactly("second");
+    assertThat(result.overallLineCount()).isEmpty();
+  }
+
+  @Test
+  void shouldHandleCarriageReturnsLikeLineReader() throws IOException {
+    String content = "first\rsecond\r\rfourth\r";
+
+    TailReader.TailResult backwards = new TailReader(2).read(stream(content));
+    TailReader.TailResult copied = new TailReader(2).read(new BufferedInputStream(stream(content)));
+
+    assertThat(backwards.lines()).containsExactly("", "fourth");
+    assertThat(copied.lines()).containsExactly("", "fourth");
+    assertThat(copied.overallLineCount()).hasValue(4);
+  }
+
+  @Test
+  void shouldHandleMixedLineBreaks() throws IOException {
+    String content = "first\r\nsecond\rthird\n\r\nfifth";
+
+    TailReader.TailResult result = new TailReader(10).read(stream(content));
+
+    assertThat(result.lines()).containsExactly("first", "second", "third", "", "fifth");
+    assertThat(result.overallLineCount()).hasValue(5);
+  }
+
+  @Test
+  void shouldReadEmptyStream() throws IOException {
+    TailReader.TailResult result = new TailReader(5).read(stream(""));
+
+    assertThat(result.lines()).isEmpty();
+    assertThat(result.overallLineCount()).hasValue(0);
+  }
+
+  private static ByteArrayInputStream stream(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+}
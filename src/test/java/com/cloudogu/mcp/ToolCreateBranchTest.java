@@ -61,6 +61,7 @@ class ToolCreateBranchTest {
     when(branch.getName()).thenReturn("feature/answer");
     when(branch.getRevision()).thenReturn("42");
     when(repositoryService.getBranchCommand().from("main").branch("feature/answer")).thenReturn(branch);
+    when(linkResolver.createTemplate(repositoryService)).thenReturn(linkResolver::createLink);
     when(linkResolver.createLink(any())).thenReturn(
       FrontendLinkResult.of("branch", "feature/answer", "https://scm.example/repo/hitchhiker/HeartOfGold/code/sources/feature%2Fanswer", null)
     );
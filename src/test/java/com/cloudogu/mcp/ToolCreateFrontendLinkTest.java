@@ -31,6 +31,7 @@ import sonia.scm.repository.Branches;
 import sonia.scm.repository.InternalRepositoryException;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.api.Command;
+import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 import sonia.scm.repository.api.ScmProtocol;
 
@@ -42,8 +43,10 @@ import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -291,6 +294,24 @@ class ToolCreateFrontendLinkTest {
       .containsEntry("name", "hog");
   }
 
+  @Test
+  void shouldCreateMultipleLinksFromTemplate() {
+    RepositoryServiceFactory unusedFactory = mock(RepositoryServiceFactory.class);
+    RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName("hitchhiker", "hog"));
+    FrontendLinkTemplate template = new CommitFrontendLinkResolver(unusedFactory).createTemplate(repositoryService);
+
+    CreateFrontendLinkInput first = repositoryInput();
+    first.setTargetType("commit");
+    first.setRevision("123abc");
+    CreateFrontendLinkInput second = repositoryInput();
+    second.setTargetType("commit");
+    second.setRevision("456def");
+
+    assertThat(template.createLink(first).url()).isEqualTo("https://scm.hitchhiker.com/repo/hitchhiker/hog/code/changeset/123abc");
+    assertThat(template.createLink(second).url()).isEqualTo("https://scm.hitchhiker.com/repo/hitchhiker/hog/code/changeset/456def");
+    verifyNoInteractions(unusedFactory);
+  }
+
   @Test
   void shouldCreateEncodedBranchLink() {
     CreateFrontendLinkInput input = repositoryInput();
@@ -156,6 +156,27 @@ class ToolDiffTest {
           """);
       }
 
+      @Test
+      void shouldCutLongLines() throws IOException {
+        when(commandBuilder.getDiffResult()).thenReturn(createDiff(createDiffFile()));
+
+        ToolDiffInput input = new ToolDiffInput(REPOSITORY.getNamespace(),
+          REPOSITORY.getName(),
+          "42",
+          1000,
+          1000,
+          emptyList(),
+          false,
+          20
+        );
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0))
+          .contains("[    3 |    - ] -The Heart of Gold is…[24 chars omitted]\n")
+          .contains("[    - |    1 ] +# Heart Of Gold\n");
+      }
+
       @Test
       void shouldCreateLimitedDiff() throws IOException {
         when(commandBuilder.getDiffResult()).thenReturn(createDiff(createDiffFile()));
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.github.sdorra.jse.ShiroExtension;
+import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.PostReceiveRepositoryHookEvent;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.repository.api.BrowseCommandBuilder;
+import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith({MockitoExtension.class, ShiroExtension.class})
+@SubjectAware(value = "trillian", permissions = "*")
+class ToolFindFilesTest {
+
+  @Mock
+  private RepositoryServiceFactory repositoryServiceFactory;
+  @Mock
+  private RepositoryService repositoryService;
+  @Spy
+  private PathIndexCache pathIndexCache;
+
+  @InjectMocks
+  private ToolFindFiles tool;
+
+  @Mock(answer = Answers.RETURNS_SELF)
+  private BrowseCommandBuilder browseCommandBuilder;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private LogCommandBuilder logCommandBuilder;
+
+  @Nested
+  class WithRepository {
+
+    private static final Repository REPOSITORY = RepositoryTestData.createHeartOfGold();
+    private final FindFilesInput input = new FindFilesInput();
+
+    @BeforeEach
+    void mockRepository() throws IOException {
+      when(repositoryServiceFactory.create(new NamespaceAndName(REPOSITORY.getNamespace(), REPOSITORY.getName())))
+        .thenReturn(repositoryService);
+      when(repositoryService.getRepository())
+        .thenReturn(REPOSITORY);
+      lenient().when(repositoryService.getLogCommand())
+        .thenReturn(logCommandBuilder);
+      Changeset changeset = new Changeset();
+      changeset.setId("4a5b6c");
+      lenient().when(logCommandBuilder.getChangeset("main"))
+        .thenReturn(changeset);
+      lenient().when(repositoryService.getBrowseCommand())
+        .thenReturn(browseCommandBuilder);
+
+      FileObject root = createDirectory("");
+      root.setChildren(
+        List.of(
+          createDirectory("core", createFile("pom.xml"), createDirectory("src", createFile("UserController.java"), createFile("User.java"))),
+          createDirectory("web", createFile("pom.xml"), createFile("package.json")),
+          createFile("pom.xml"),
+          createFile("README.md")
+        )
+      );
+      lenient().when(browseCommandBuilder.getBrowserResult())
+        .thenReturn(new BrowserResult("4a5b6c", root));
+
+      input.setNamespace(REPOSITORY.getNamespace());
+      input.setName(REPOSITORY.getName());
+      input.setRevision("main");
+    }
+
+    @Test
+    void shouldFindFilesByGlobForPaths() throws IOException {
+      input.setPattern("**/pom.xml");
+
+      ToolResult result = tool.execute(input);
+
+      verify(browseCommandBuilder).setRevision("4a5b6c");
+      verify(browseCommandBuilder).setRecursive(true);
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [SUCCESS] Found 3 files matching `**/pom.xml`.
+          ---------------------------------------------------------
+          core/pom.xml
+          pom.xml
+          web/pom.xml
+          """);
+    }
+
+    @Test
+    void shouldFindFilesByGlobForNames() {
+      input.setPattern("*Controller.java");
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [SUCCESS] Found 1 files matching `*Controller.java`.
+          ---------------------------------------------------------
+          core/src/UserController.java
+          """);
+    }
+
+    @Test
+    void shouldFindFilesBySubstringInDirectory() {
+      input.setPattern("user");
+      input.setRoot("/core/src/");
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [SUCCESS] Found 2 files matching `user`.
+          ---------------------------------------------------------
+          core/src/User.java
+          core/src/UserController.java
+          """);
+    }
+
+    @Test
+    void shouldTruncateResult() {
+      input.setPattern("pom.xml");
+      input.setMaximumNumberOfResults(2);
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [TRUNCATED] Found 3 files matching `pom.xml`.
+          INFO: Only the first 2 files are shown; use a more specific pattern or `root` to narrow the search.
+          ---------------------------------------------------------
+          core/pom.xml
+          pom.xml
+          """);
+      assertThat(result.getStructuredContent()).containsEntry("maximumExceeded", true);
+    }
+
+    @Test
+    void shouldReportEmptyResult() {
+      input.setPattern("*.gradle");
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [EMPTY] No files found matching `*.gradle`.
+          """);
+    }
+
+    @Test
+    void shouldReuseIndex() throws IOException {
+      input.setPattern("pom.xml");
+      tool.execute(input);
+      input.setPattern("README");
+      tool.execute(input);
+
+      verify(browseCommandBuilder).getBrowserResult();
+      verify(logCommandBuilder).getChangeset("main");
+    }
+
+    @Test
+    void shouldResolveRevisionAgainAfterPush() throws IOException {
+      input.setPattern("pom.xml");
+      tool.execute(input);
+
+      PostReceiveRepositoryHookEvent event = mock(PostReceiveRepositoryHookEvent.class);
+      when(event.getRepository()).thenReturn(REPOSITORY);
+      new PathIndexUpdater(pathIndexCache).onPush(event);
+      tool.execute(input);
+
+      verify(logCommandBuilder, times(2)).getChangeset("main");
+    }
+
+    @Test
+    void shouldFailForUnknownRevision() {
+      input.setRevision("nothing");
+      input.setPattern("pom.xml");
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.isError()).isTrue();
+      assertThat(result.getMessage()).isEqualTo("The revision `nothing` could not be found.");
+    }
+  }
+
+  private FileObject createDirectory(String name, FileObject... children) {
+    FileObject directory = createFile(name);
+    directory.setDirectory(true);
+    directory.setChildren(List.of(children));
+    return directory;
+  }
+
+  private FileObject createFile(String name) {
+    FileObject file = new FileObject();
+    file.setName(name);
+    return file;
+  }
+}
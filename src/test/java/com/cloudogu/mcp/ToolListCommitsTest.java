@@ -31,11 +31,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.Modifications;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Person;
 import sonia.scm.repository.Repository;
+import sonia.scm.repository.Renamed;
 import sonia.scm.repository.RepositoryTestData;
 import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.ModificationsCommandBuilder;
 import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
@@ -55,10 +58,13 @@ import static java.util.Optional.of;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -76,6 +82,9 @@ class ToolListCommitsTest {
   private TagFrontendLinkResolver tagLinkResolver;
 
 
+  @Mock
+  private CommitIndexCache commitIndexCache;
+
   @Mock(answer = Answers.RETURNS_SELF)
   private LogCommandBuilder logCommandBuilder;
 
@@ -89,7 +98,7 @@ class ToolListCommitsTest {
 
     @BeforeEach
     void createTool() {
-      tool = new ToolListCommits(repositoryServiceFactory, commitLinkResolver, tagLinkResolver, emptySet());
+      tool = new ToolListCommits(repositoryServiceFactory, commitLinkResolver, tagLinkResolver, emptySet(), new SubjectAwareExecutor(), commitIndexCache);
     }
 
     @BeforeEach
@@ -107,6 +116,12 @@ class ToolListCommitsTest {
 
     @BeforeEach
     void mockLinkResolver() {
+      lenient()
+        .when(commitLinkResolver.createTemplate(repositoryService))
+        .thenReturn(commitLinkResolver::createLink);
+      lenient()
+        .when(tagLinkResolver.createTemplate(repositoryService))
+        .thenReturn(tagLinkResolver::createLink);
       lenient()
         .when(commitLinkResolver.createLink(any()))
         .thenAnswer(input -> {
@@ -134,9 +149,12 @@ class ToolListCommitsTest {
     @Nested
     class WithSimpleCommits {
 
+      private Changeset commit1;
+      private Changeset commit2;
+
       @BeforeEach
       void mockCommits() throws IOException {
-        Changeset commit1 = new Changeset
+        commit1 = new Changeset
           ("23",
             Instant.parse("1985-05-23T21:00:00.000Z").toEpochMilli(),
             new Person("Arthur Dent", "dent@hog.org"),
@@ -146,7 +164,7 @@ class ToolListCommitsTest {
               Just followed some old friend of mine.
               """);
         commit1.setTags(List.of("1.0"));
-        Changeset commit2 = new Changeset(
+        commit2 = new Changeset(
           "42",
           Instant.parse("1985-06-01T16:00:00.000Z").toEpochMilli(),
           new Person("Trillian McMillan", "trish@hog.org"),
@@ -265,6 +283,95 @@ class ToolListCommitsTest {
         assertThat(result.getStructuredContent().keySet()).containsExactly("42");
       }
 
+      @Test
+      void shouldListCommitsForFilterExpression() {
+        input.setFilter("author:dent OR message:/^fix\\b/");
+        input.setIncludeDetails(true);
+
+        ToolResult result = tool.execute(compositeInput);
+
+        assertThat(result.getContent().get(0))
+          .startsWith("STATUS: [SUCCESS] Found all 2 commits of 2 in total.");
+        assertThat(result.getStructuredContent().keySet()).containsExactlyInAnyOrder("42", "23");
+      }
+
+      @Test
+      void shouldRestrictLogToPathFromFilterExpression() {
+        input.setFilter("path:src/Main.java -earth");
+
+        ToolResult result = tool.execute(compositeInput);
+
+        verify(logCommandBuilder).setPath("src/Main.java");
+        assertThat(result.getContent().get(0))
+          .startsWith("STATUS: [SUCCESS] Found all 1 commits of 2 in total.");
+      }
+
+      @Test
+      void shouldRejectInvalidFilterExpression() {
+        input.setFilter("(author:dent");
+
+        ToolResult result = tool.execute(compositeInput);
+
+        assertThat(result.isError()).isTrue();
+        assertThat(result.getMessage()).isEqualTo("The filter is invalid: Missing `)` at position 13.");
+        verify(logCommandBuilder, never()).getChangesets();
+      }
+
+      @Test
+      void shouldListOnlyMerges() {
+        input.setMerges(ListCommitsInput.Merges.only);
+
+        ToolResult result = tool.execute(compositeInput);
+
+        assertThat(result.getContent().get(0))
+          .isEqualTo("STATUS: [SUCCESS] None of the commits match your input.\n");
+      }
+
+      @Test
+      void shouldRejectFirstParentWithPath() {
+        input.setFirstParent(true);
+        input.setPath("src");
+
+        ToolResult result = tool.execute(compositeInput);
+
+        assertThat(result.isError()).isTrue();
+        assertThat(result.getMessage()).isEqualTo("The option `firstParent` cannot be combined with a path.");
+      }
+
+      @Test
+      void shouldBuildCommitIndexInBackgroundForFilters() {
+        input.setAuthorFilter("trillian");
+
+        tool.execute(compositeInput);
+
+        verify(commitIndexCache).buildInBackground(eq(REPOSITORY.getId()), eq("42"), any());
+      }
+
+      @Test
+      void shouldListCommitsFromCommitIndex() throws IOException {
+        when(commitIndexCache.get(REPOSITORY.getId(), "42"))
+          .thenReturn(Optional.of(CommitIndex.of(List.of(commit2, commit1))));
+        when(logCommandBuilder.getChangeset("42")).thenReturn(commit2);
+        input.setAuthorFilter("trillian");
+        input.setIncludeDetails(true);
+
+        ToolResult result = tool.execute(compositeInput);
+
+        assertThat(result.getContent().get(0))
+          .startsWith("STATUS: [SUCCESS] Found all 1 commits of 2 in total.");
+        assertThat(result.getStructuredContent().keySet()).containsExactly("42");
+        verify(logCommandBuilder, never()).getChangeset("23");
+      }
+
+      @Test
+      void shouldRestrictLogToPath() {
+        input.setPath("/src/Main.java/");
+
+        tool.execute(compositeInput);
+
+        verify(logCommandBuilder).setPath("src/Main.java");
+      }
+
       @Test
       void shouldHandleEmptyResult() {
         input.setCommitMessageFilter("Vogons");
@@ -342,7 +449,9 @@ class ToolListCommitsTest {
               firstExtension,
               secondExtension,
               thirdExtension
-            )
+            ),
+            new SubjectAwareExecutor(),
+            commitIndexCache
           );
         }
 
@@ -385,6 +494,20 @@ class ToolListCommitsTest {
                 "format" : "date-time",
                 "description" : "Filter for commits committed before this timestamp (ISO 8601 format, e.g. 2024-01-01T10:00:00Z)."
               },
+              "filter" : {
+                "type" : "string",
+                "description" : "Filter expression for commits. Terms can be combined with `AND` (or simply a space), `OR`, `NOT` (or a leading `-`)\\nand parentheses. A plain term matches the commit message or the author. Terms can be qualified with one of the fields\\nauthor, message, id, before, after, or path, like `author:dent` or `after:2024-01-01`. Values can be quoted\\n(`message:\\"fix drive\\"`) or regular expressions (`message:/fix(ed)?/`). Text terms are case insensitive.\\nThe field `path` can only be combined with `AND`."
+              },
+              "firstParent" : {
+                "type" : "boolean",
+                "description" : "If set to `true`, only the first parents of merge commits are followed (like `git log --first-parent`), so that the\\ncommits of merged branches are skipped. This cannot be combined with `path`.",
+                "default" : false
+              },
+              "followRenames" : {
+                "type" : "boolean",
+                "description" : "If set to `true` together with `path`, the history is continued with the former path, when the file has been\\nrenamed (at most 5 renames will be followed).",
+                "default" : false
+              },
               "includeDetails" : {
                 "type" : "boolean",
                 "description" : "If set to `true`, details for the commits will be sent as structured data.\\nIf `false`, only the commit log like `git log` would produce will be returned.",
@@ -396,6 +519,12 @@ class ToolListCommitsTest {
                 "default" : 20,
                 "minimum" : 1
               },
+              "merges" : {
+                "type" : "string",
+                "enum" : [ "include", "exclude", "only" ],
+                "description" : "Which commits to list with respect to merges: `include` (the default) lists all commits, `exclude` skips merge\\ncommits (commits with more than one parent), and `only` lists merge commits only.",
+                "default" : "include"
+              },
               "name" : {
                 "type" : "string",
                 "description" : "The name of the repository",
@@ -408,6 +537,10 @@ class ToolListCommitsTest {
                 "minLength" : 1,
                 "pattern" : "^(?:(?:[^:/?#;&=\\\\s@%\\\\\\\\][^:/?#;&=%\\\\\\\\]*[^:/?#;&=\\\\s%\\\\\\\\])|(?:[^:/?#;&=\\\\s@%\\\\\\\\]))$"
               },
+              "path" : {
+                "type" : "string",
+                "description" : "If set, only commits changing this file or directory will be listed."
+              },
               "revision" : {
                 "type" : "string",
                 "description" : "The revision to list the commits for. This can be either a 'real' revision, a branch, or a tag.\\nIf this is omitted, the default branch of the repository will be taken."
@@ -483,6 +616,25 @@ class ToolListCommitsTest {
           assertThat(result.getContent()).first().asString().contains("None of the commits match your input");
         }
 
+        @Test
+        void shouldCheckChunkOfCommitsAtOnce() {
+          ToolResult result = tool.execute(compositeInput);
+
+          assertThat(result.getContent()).first().asString().contains("Found all 2 commits");
+          verify(firstExtension, times(1)).includeCommits(any(), any(), any());
+          verify(secondExtension, times(2)).includeCommit(any(), any(), any());
+        }
+
+        @Test
+        void shouldEnhanceStructuredResultForAllCommitsAtOnce() {
+          input.setIncludeDetails(true);
+
+          tool.execute(compositeInput);
+
+          verify(firstExtension, times(1)).enhanceStructuredResults(any(), any(), any(), any());
+          verify(firstExtension, times(2)).enhanceStructuredResult(any(), any(), any(), any());
+        }
+
         @Test
         void shouldEnhanceStructuredResult() {
           input.setIncludeDetails(true);
@@ -532,7 +684,7 @@ class ToolListCommitsTest {
           if (pagingStart >= 100) {
             return new ChangesetPagingResult(commits.size(), emptyList());
           }
-          return new ChangesetPagingResult(commits.size(), commits.subList(pagingStart, pagingStart + pagingLimit));
+          return new ChangesetPagingResult(commits.size(), commits.subList(pagingStart, Math.min(pagingStart + pagingLimit, commits.size())));
         }).when(logCommandBuilder).getChangesets();
       }
 
@@ -569,5 +721,67 @@ class ToolListCommitsTest {
           .startsWith("STATUS: [SUCCESS] Found all 9 commits of 100 in total.");
       }
     }
+
+    @Nested
+    class WithRenamedFile {
+
+      @Mock(answer = Answers.RETURNS_SELF)
+      private ModificationsCommandBuilder modificationsCommandBuilder;
+
+      private String currentPath;
+
+      @BeforeEach
+      void mockCommits() throws IOException {
+        Changeset rename = new Changeset(
+          "42",
+          Instant.parse("1985-06-01T16:00:00.000Z").toEpochMilli(),
+          new Person("Trillian McMillan", "trish@hog.org"),
+          "Rename file");
+        rename.setParents(List.of("23"));
+        Changeset creation = new Changeset(
+          "23",
+          Instant.parse("1985-05-23T21:00:00.000Z").toEpochMilli(),
+          new Person("Arthur Dent", "dent@hog.org"),
+          "Create file");
+
+        doAnswer(invocationOnMock -> {
+          currentPath = invocationOnMock.getArgument(0, String.class);
+          return logCommandBuilder;
+        }).when(logCommandBuilder).setPath(any());
+        doAnswer(invocationOnMock -> {
+          if ("New.java".equals(currentPath)) {
+            return new ChangesetPagingResult(1, List.of(rename));
+          }
+          return new ChangesetPagingResult(1, List.of(creation));
+        }).when(logCommandBuilder).getChangesets();
+
+        lenient().when(repositoryService.getModificationsCommand()).thenReturn(modificationsCommandBuilder);
+        lenient().when(modificationsCommandBuilder.getModifications())
+          .thenReturn(new Modifications("42", new Renamed("Old.java", "New.java")));
+
+        input.setPath("New.java");
+        input.setIncludeDetails(true);
+      }
+
+      @Test
+      void shouldStopAtRenameByDefault() {
+        ToolResult result = tool.execute(compositeInput);
+
+        assertThat(result.getStructuredContent().keySet()).containsExactly("42");
+        verify(repositoryService, never()).getModificationsCommand();
+      }
+
+      @Test
+      void shouldFollowRename() {
+        input.setFollowRenames(true);
+
+        ToolResult result = tool.execute(compositeInput);
+
+        assertThat(result.getStructuredContent().keySet()).containsExactlyInAnyOrder("42", "23");
+        verify(modificationsCommandBuilder).revision("42");
+        verify(logCommandBuilder).setPath("Old.java");
+        verify(logCommandBuilder).setStartChangeset("23");
+      }
+    }
   }
 }
@@ -25,20 +25,35 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.Added;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.FileObject;
+import sonia.scm.repository.Modifications;
+import sonia.scm.repository.Modified;
 import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Person;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryTestData;
 import sonia.scm.repository.api.BrowseCommandBuilder;
+import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.ModificationsCommandBuilder;
 import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -50,12 +65,18 @@ class ToolListFilesTest {
   private RepositoryServiceFactory repositoryServiceFactory;
   @Mock
   private RepositoryService repositoryService;
+  @Spy
+  private BrowseTreeCache browseTreeCache;
 
   @InjectMocks
   private ToolListFiles tool;
 
   @Mock(answer = Answers.RETURNS_SELF)
   private BrowseCommandBuilder browseCommandBuilder;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private LogCommandBuilder logCommandBuilder;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private ModificationsCommandBuilder modificationsCommandBuilder;
 
   @Nested
   class WithRepository {
@@ -71,11 +92,34 @@ class ToolListFilesTest {
         .thenReturn(browseCommandBuilder);
       when(repositoryService.getRepository())
         .thenReturn(REPOSITORY);
+      when(repositoryService.getLogCommand())
+        .thenReturn(logCommandBuilder);
 
       input.setNamespace(REPOSITORY.getNamespace());
       input.setName(REPOSITORY.getName());
     }
 
+    /**
+     * Answers browse commands like the backend, so that non-recursive commands only get the direct children of the
+     * requested directory.
+     */
+    private void mockBrowseCommand(FileObject root) throws IOException {
+      AtomicReference<String> path = new AtomicReference<>("/");
+      AtomicBoolean recursive = new AtomicBoolean();
+      when(browseCommandBuilder.setPath(anyString()))
+        .thenAnswer(invocation -> {
+          path.set(invocation.getArgument(0));
+          return browseCommandBuilder;
+        });
+      when(browseCommandBuilder.setRecursive(anyBoolean()))
+        .thenAnswer(invocation -> {
+          recursive.set(invocation.getArgument(0));
+          return browseCommandBuilder;
+        });
+      when(browseCommandBuilder.getBrowserResult())
+        .thenAnswer(invocation -> new BrowserResult("4a5b6c", findDirectory(root, path.get(), recursive.get())));
+    }
+
     @Test
     void shouldListRoot() throws IOException {
       FileObject root = createDirectory("");
@@ -198,6 +242,465 @@ class ToolListFilesTest {
               └── README.md
           """);
     }
+
+    @Test
+    void shouldCreateBreadthFirstOverview() throws IOException {
+      input.setOverview(true);
+      input.setMaximumNumberOfFiles(5);
+      FileObject root = createDirectory("");
+      FileObject docsDir = createDirectory("docs");
+      docsDir.setChildren(
+        List.of(
+          createFile("index.md"),
+          createFile("guide.md")
+        )
+      );
+      FileObject srcDir = createDirectory("src");
+      FileObject srcMainDir = createDirectory("main");
+      srcMainDir.setChildren(
+        List.of(
+          createFile("Main.java"),
+          createFile("Util.java")
+        )
+      );
+      FileObject srcTestDir = createDirectory("test");
+      srcTestDir.setChildren(
+        List.of(
+          createFile("MainTest.java")
+        )
+      );
+      srcDir.setChildren(
+        List.of(
+          srcMainDir,
+          srcTestDir
+        )
+      );
+      root.setChildren(
+        List.of(
+          docsDir,
+          srcDir,
+          createFile("README.md")
+        )
+      );
+      mockBrowseCommand(root);
+
+      ToolResult result = tool.execute(input);
+
+      verify(browseCommandBuilder, never()).setRecursive(true);
+      verify(browseCommandBuilder, never()).setPath("src/main");
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [OVERVIEW] Maximum file limit reached, the tree is shown breadth-first.
+          INFO: Displaying 2 directories and 3 files. 1 directories are collapsed and only the number of their direct children is shown; use them as `root` to list them in detail.
+          ---------------------------------------------------------
+          └── /
+              ├── docs/
+              │   ├── index.md
+              │   └── guide.md
+              ├── src/ (collapsed: 2 directories, 0 files)
+              └── README.md
+          """);
+      assertThat(result.getStructuredContent()).containsEntry("maximumExceeded", true);
+    }
+
+    @Test
+    void shouldShowCompleteTreeInOverviewIfPossible() throws IOException {
+      input.setOverview(true);
+      FileObject root = createDirectory("");
+      FileObject docsDir = createDirectory("docs");
+      docsDir.setChildren(
+        List.of(
+          createFile("index.md")
+        )
+      );
+      root.setChildren(
+        List.of(
+          docsDir,
+          createFile("README.md")
+        )
+      );
+      mockBrowseCommand(root);
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [SUCCESS] File listing complete.
+          INFO: Found 1 directories and 2 files. The result is complete.
+          ---------------------------------------------------------
+          └── /
+              ├── docs/
+              │   └── index.md
+              └── README.md
+          """);
+    }
+
+    @Test
+    void shouldReportTruncatedDirectoriesInOverview() throws IOException {
+      input.setOverview(true);
+      input.setMaximumNumberOfFiles(3);
+      FileObject root = createDirectory("");
+      FileObject docsDir = createDirectory("docs");
+      docsDir.setTruncated(true);
+      docsDir.setChildren(
+        List.of(
+          createFile("index.md"),
+          createFile("guide.md")
+        )
+      );
+      root.setChildren(
+        List.of(
+          docsDir,
+          createFile("README.md")
+        )
+      );
+      mockBrowseCommand(root);
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [OVERVIEW] Maximum file limit reached, the tree is shown breadth-first.
+          INFO: Displaying 1 directories and 1 files. 1 directories are collapsed and only the number of their direct children is shown; use them as `root` to list them in detail. Some directories contain too many entries to be read completely, so that the overview is incomplete.
+          ---------------------------------------------------------
+          └── /
+              ├── docs/ (collapsed: 0 directories, 2 files)
+              └── README.md
+          """);
+    }
+
+    @Nested
+    class WithResolvedRevision {
+
+      @BeforeEach
+      void mockRevision() throws IOException {
+        input.setRevision("main");
+
+        FileObject root = createDirectory("");
+        FileObject srcDir = createDirectory("src");
+        FileObject srcMainDir = createDirectory("main");
+        srcMainDir.setChildren(
+          List.of(
+            createFile("Main.java"),
+            createFile("Util.java")
+          )
+        );
+        srcDir.setChildren(
+          List.of(
+            srcMainDir
+          )
+        );
+        root.setChildren(
+          List.of(
+            srcDir,
+            createFile("README.md", 42)
+          )
+        );
+        mockBrowseCommand(root);
+      }
+
+      @Test
+      void shouldBrowseRequestedRevisionWithRequestedLimit() throws IOException {
+        input.setRecursive(true);
+
+        tool.execute(input);
+
+        verify(browseCommandBuilder).setRevision("main");
+        verify(browseCommandBuilder).setLimit(100);
+        verify(logCommandBuilder, never()).getChangeset(anyString());
+      }
+
+      @Test
+      void shouldWalkWithRevisionFromFirstBrowserResult() throws IOException {
+        input.setRecursive(true);
+        input.setExclude(List.of("docs"));
+
+        tool.execute(input);
+
+        verify(browseCommandBuilder).setRevision("main");
+        verify(browseCommandBuilder, times(2)).setRevision("4a5b6c");
+        verify(logCommandBuilder, never()).getChangeset(anyString());
+      }
+
+      @Test
+      void shouldBrowseWithPrefetchLimitForFilters() throws IOException {
+        input.setRecursive(true);
+        input.setInclude(List.of("*.java"));
+
+        tool.execute(input);
+
+        verify(browseCommandBuilder).setLimit(5000);
+      }
+
+      @Test
+      void shouldAnswerLowerLimitFromCachedTruncatedTree() throws IOException {
+        mockTruncatedTree();
+        input.setMaximumNumberOfFiles(2);
+        tool.execute(input);
+
+        input.setRevision("4a5b6c");
+        input.setMaximumNumberOfFiles(1);
+        ToolResult result = tool.execute(input);
+
+        verify(repositoryService).getBrowseCommand();
+        assertThat(result.getContent().get(0))
+          .isEqualTo("""
+            STATUS: [TRUNCATED] Maximum file limit reached.
+            INFO: Displaying the first 1 directories and 0 files.
+            ---------------------------------------------------------
+            └── /
+                └── src/
+            """);
+      }
+
+      @Test
+      void shouldBrowseAgainForHigherLimitThanCachedTruncatedTree() throws IOException {
+        mockTruncatedTree();
+        input.setMaximumNumberOfFiles(2);
+        tool.execute(input);
+
+        input.setRevision("4a5b6c");
+        input.setMaximumNumberOfFiles(3);
+        tool.execute(input);
+
+        verify(repositoryService, times(2)).getBrowseCommand();
+        verify(browseCommandBuilder).setLimit(3);
+      }
+
+      private void mockTruncatedTree() throws IOException {
+        FileObject root = createDirectory("");
+        root.setTruncated(true);
+        root.setChildren(
+          List.of(
+            createDirectory("src"),
+            createFile("README.md")
+          )
+        );
+        when(browseCommandBuilder.getBrowserResult())
+          .thenReturn(new BrowserResult("4a5b6c", root));
+      }
+
+      @Test
+      void shouldLimitTreeFromBrowseCommand() {
+        input.setRecursive(true);
+        input.setMaximumNumberOfFiles(3);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0))
+          .isEqualTo("""
+            STATUS: [TRUNCATED] Maximum file limit reached.
+            INFO: Displaying the first 2 directories and 1 files.
+            ---------------------------------------------------------
+            └── /
+                └── src/
+                    └── main/
+                        └── Main.java
+            """);
+      }
+
+      @Test
+      void shouldAnswerSubPathFromCachedParentTree() {
+        input.setRecursive(true);
+        tool.execute(input);
+
+        input.setRevision("4a5b6c");
+        input.setRoot("/src");
+        input.setRecursive(false);
+        ToolResult result = tool.execute(input);
+
+        verify(repositoryService).getBrowseCommand();
+        assertThat(result.getContent().get(0))
+          .isEqualTo("""
+            STATUS: [SUCCESS] File listing complete.
+            INFO: Found 1 directories and 0 files. The result is complete.
+            ---------------------------------------------------------
+            └── src/
+                └── main/
+            """);
+      }
+
+      @Test
+      void shouldSkipExcludedDirectories() {
+        input.setRecursive(true);
+        input.setExclude(List.of("src"));
+
+        ToolResult result = tool.execute(input);
+
+        verify(browseCommandBuilder).setPath("/");
+        verify(browseCommandBuilder, never()).setPath("src");
+
+        assertThat(result.getContent().get(0))
+          .isEqualTo("""
+            STATUS: [SUCCESS] File listing complete.
+            INFO: Found 0 directories and 1 files. The result is complete.
+            ---------------------------------------------------------
+            └── /
+                └── README.md
+            """);
+      }
+
+      @Test
+      void shouldListOnlyIncludedFiles() {
+        input.setRecursive(true);
+        input.setInclude(List.of("src/**/*.java"));
+        input.setExclude(List.of("Util.*"));
+        input.setMaximumNumberOfFiles(3);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0))
+          .isEqualTo("""
+            STATUS: [SUCCESS] File listing complete.
+            INFO: Found 2 directories and 1 files. The result is complete.
+            ---------------------------------------------------------
+            └── /
+                └── src/
+                    └── main/
+                        └── Main.java
+            """);
+      }
+
+      @Test
+      void shouldLimitDepth() {
+        input.setRecursive(true);
+        input.setMaxDepth(2);
+
+        ToolResult result = tool.execute(input);
+
+        verify(browseCommandBuilder, never()).setRecursive(true);
+        verify(browseCommandBuilder, never()).setPath("src/main");
+
+        assertThat(result.getContent().get(0))
+          .isEqualTo("""
+            STATUS: [SUCCESS] File listing complete.
+            INFO: Found 2 directories and 1 files. The result is complete.
+            ---------------------------------------------------------
+            └── /
+                ├── src/
+                │   └── main/
+                └── README.md
+            """);
+      }
+
+      @Test
+      void shouldBrowseNonRecursivelyForDepthOne() throws IOException {
+        input.setRecursive(true);
+        input.setMaxDepth(1);
+
+        tool.execute(input);
+
+        verify(browseCommandBuilder).setRecursive(false);
+      }
+
+      @Test
+      void shouldRenderFlatPaths() {
+        input.setRecursive(true);
+        input.setFormat(ListFilesInput.Format.flat);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0))
+          .isEqualTo("""
+            STATUS: [SUCCESS] File listing complete.
+            INFO: Found 2 directories and 3 files. The result is complete.
+            ---------------------------------------------------------
+            src/
+            src/main/
+            src/main/Main.java
+            src/main/Util.java
+            README.md
+            """);
+      }
+
+      @Test
+      void shouldRenderPathsGroupedByDirectory() {
+        input.setRecursive(true);
+        input.setFormat(ListFilesInput.Format.grouped);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0))
+          .isEqualTo("""
+            STATUS: [SUCCESS] File listing complete.
+            INFO: Found 2 directories and 3 files. The result is complete.
+            ---------------------------------------------------------
+            /
+              src/
+              README.md
+            src/
+              main/
+            src/main/
+              Main.java
+              Util.java
+            """);
+      }
+
+      @Test
+      void shouldShowSizesAndLastCommits() throws IOException {
+        Changeset newest = new Changeset("c1", 1700000000000L, new Person("Arthur Dent"));
+        Changeset oldest = new Changeset("c2", 1600000000000L, new Person("Ford Prefect"));
+        when(logCommandBuilder.getChangesets())
+          .thenReturn(new ChangesetPagingResult(2, List.of(newest, oldest)));
+        when(repositoryService.getModificationsCommand())
+          .thenReturn(modificationsCommandBuilder);
+        when(modificationsCommandBuilder.getModifications())
+          .thenReturn(new Modifications("c1", new Modified("src/main/Main.java")))
+          .thenReturn(new Modifications("c2", new Added("src/main/Util.java")));
+        input.setRecursive(true);
+        input.setFormat(ListFilesInput.Format.flat);
+        input.setIncludeSize(true);
+        input.setIncludeLastModified(true);
+        input.setIncludeLastCommit(true);
+
+        ToolResult result = tool.execute(input);
+
+        verify(logCommandBuilder).setStartChangeset("4a5b6c");
+        assertThat(result.getContent().get(0))
+          .isEqualTo("""
+            STATUS: [SUCCESS] File listing complete.
+            INFO: Found 2 directories and 3 files. The result is complete. The last commit could not be determined for 1 entries.
+            ---------------------------------------------------------
+            src/ [modified 2023-11-14T22:13:20Z, last commit c1 by Arthur Dent]
+            src/main/ [modified 2023-11-14T22:13:20Z, last commit c1 by Arthur Dent]
+            src/main/Main.java [modified 2023-11-14T22:13:20Z, last commit c1 by Arthur Dent]
+            src/main/Util.java [modified 2020-09-13T12:26:40Z, last commit c2 by Ford Prefect]
+            README.md [42 bytes, last commit unknown]
+            """);
+      }
+
+      @Test
+      void shouldNotAnswerRecursiveRequestFromFlatTree() {
+        tool.execute(input);
+
+        input.setRecursive(true);
+        tool.execute(input);
+
+        verify(repositoryService, times(2)).getBrowseCommand();
+      }
+    }
+  }
+
+  private FileObject findDirectory(FileObject root, String path, boolean recursive) {
+    FileObject directory = root;
+    for (String name : path.split("/")) {
+      if (!name.isEmpty()) {
+        directory = directory.getChildren().stream().filter(child -> child.getName().equals(name)).findFirst().orElseThrow();
+      }
+    }
+    if (recursive) {
+      return directory;
+    }
+    FileObject flatDirectory = createDirectory(directory.getName());
+    flatDirectory.setTruncated(directory.isTruncated());
+    flatDirectory.setChildren(
+      directory.getChildren().stream().map(child -> {
+        FileObject flatChild = createFile(child.getName());
+        flatChild.setDirectory(child.isDirectory());
+        return flatChild;
+      }).toList()
+    );
+    return flatDirectory;
   }
 
   private FileObject createDirectory(String path) {
@@ -211,4 +714,10 @@ class ToolListFilesTest {
     file.setName(path);
     return file;
   }
+
+  private FileObject createFile(String path, long length) {
+    FileObject file = createFile(path);
+    file.setLength(length);
+    return file;
+  }
 }
@@ -72,6 +72,9 @@ class ToolModifyFilesTest {
     when(repositoryService.getModifyCommand()).thenReturn(modifyCommandBuilder);
     when(modifyCommandBuilder.setCommitMessage("Test changes")).thenReturn(modifyCommandBuilder);
     when(modifyCommandBuilder.execute()).thenReturn("42");
+    when(commitLinkResolver.createTemplate(repositoryService)).thenReturn(commitLinkResolver::createLink);
+    when(fileLinkResolver.createTemplate(repositoryService)).thenReturn(fileLinkResolver::createLink);
+    when(repositoryLinkResolver.createTemplate(repositoryService)).thenReturn(repositoryLinkResolver::createLink);
     when(commitLinkResolver.createLink(any())).thenReturn(link("https://scm.example/commit/42"));
     when(repositoryLinkResolver.createLink(any())).thenReturn(link("https://scm.example/repository"));
   }
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.github.sdorra.jse.ShiroExtension;
+import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.io.ContentType;
+import sonia.scm.io.ContentTypeResolver;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.repository.api.BrowseCommandBuilder;
+import sonia.scm.repository.api.CatCommandBuilder;
+import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith({MockitoExtension.class, ShiroExtension.class})
+@SubjectAware(value = "trillian", permissions = "*")
+class ToolReadDirectoryTest {
+
+  @Mock
+  private RepositoryServiceFactory repositoryServiceFactory;
+  @Mock
+  private RepositoryService repositoryService;
+  @Mock
+  private RepositoryService readingRepositoryService;
+  @Mock
+  private ContentTypeResolver contentTypeResolver;
+  @Spy
+  private BrowseTreeCache browseTreeCache;
+  @Spy
+  private BlobCache blobCache;
+  @Spy
+  private SubjectAwareExecutor executor;
+  @Spy
+  private ContentTypeCache contentTypeCache;
+
+  @InjectMocks
+  private ToolReadDirectory tool;
+
+  @Mock(answer = Answers.RETURNS_SELF)
+  private BrowseCommandBuilder browseCommandBuilder;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private LogCommandBuilder logCommandBuilder;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private CatCommandBuilder catCommandBuilder;
+
+  @Nested
+  class WithRepository {
+
+    private static final Repository REPOSITORY = RepositoryTestData.createHeartOfGold();
+    private final ReadDirectoryInput input = new ReadDirectoryInput();
+
+    @BeforeEach
+    void mockRepository() throws IOException {
+      when(repositoryServiceFactory.create(new NamespaceAndName(REPOSITORY.getNamespace(), REPOSITORY.getName())))
+        .thenReturn(repositoryService);
+      when(repositoryService.getRepository())
+        .thenReturn(REPOSITORY);
+      when(repositoryService.getLogCommand())
+        .thenReturn(logCommandBuilder);
+      Changeset changeset = new Changeset();
+      changeset.setId("4a5b6c");
+      when(logCommandBuilder.getChangeset("main"))
+        .thenReturn(changeset);
+      when(repositoryService.getBrowseCommand())
+        .thenReturn(browseCommandBuilder);
+      lenient().when(repositoryServiceFactory.create(REPOSITORY))
+        .thenReturn(readingRepositoryService);
+      lenient().when(readingRepositoryService.getCatCommand())
+        .thenReturn(catCommandBuilder);
+
+      FileObject config = createDirectory("config",
+        createFile("app.yml"),
+        createFile("empty.yml"),
+        createFile("logo.png"),
+        createDirectory("sub", createFile("db.yml"), createFile("cache.yml"))
+      );
+      when(browseCommandBuilder.getBrowserResult())
+        .thenReturn(new BrowserResult("4a5b6c", config));
+
+      mockContent("config/app.yml", "server:\n  port: 8080\n");
+      mockContent("config/empty.yml", "");
+      mockContent("config/logo.png", "\u0089PNG");
+      mockContent("config/sub/db.yml", "db:\n  url: jdbc:h2\n  user: sa\n");
+      mockContent("config/sub/cache.yml", "cache:\n  size: 42\n");
+      lenient().when(contentTypeResolver.resolve(anyString(), any()))
+        .thenAnswer(invocation -> createContentType(!invocation.getArgument(0, String.class).endsWith(".png")));
+
+      input.setNamespace(REPOSITORY.getNamespace());
+      input.setName(REPOSITORY.getName());
+      input.setRevision("main");
+      input.setPath("config");
+    }
+
+    private void mockContent(String path, String content) throws IOException {
+      lenient().when(catCommandBuilder.getStream(path))
+        .thenAnswer(invocation -> new ByteArrayInputStream(content.getBytes(UTF_8)));
+    }
+
+    @Test
+    void shouldReadAllTextFilesInOrder() {
+      ToolResult result = tool.execute(input);
+
+      verify(browseCommandBuilder).setRevision("4a5b6c");
+      verify(browseCommandBuilder).setRecursive(true);
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [SUCCESS] Read 4 files from `config`.
+          INFO: 1 binary files have been skipped.
+          ---------------------------------------------------------
+          STATUS: [COMPLETE] Showing all lines 1-2 of `config/app.yml`.
+          ---------------------------------------------------------
+          ```
+          1 | server:
+          2 |   port: 8080
+          ```
+
+          STATUS: [EMPTY] The file `config/empty.yml` is empty.
+
+          STATUS: [COMPLETE] Showing all lines 1-3 of `config/sub/db.yml`.
+          ---------------------------------------------------------
+          ```
+          1 | db:
+          2 |   url: jdbc:h2
+          3 |   user: sa
+          ```
+
+          STATUS: [COMPLETE] Showing all lines 1-2 of `config/sub/cache.yml`.
+          ---------------------------------------------------------
+          ```
+          1 | cache:
+          2 |   size: 42
+          ```
+          """);
+      assertThat(result.getStructuredContent().get("files"))
+        .isEqualTo(Map.of(
+          "config/app.yml", "COMPLETE",
+          "config/empty.yml", "COMPLETE",
+          "config/logo.png", "BINARY",
+          "config/sub/db.yml", "COMPLETE",
+          "config/sub/cache.yml", "COMPLETE"
+        ));
+    }
+
+    @Test
+    void shouldReadFilesWithOwnRepositoryServices() throws IOException {
+      tool.execute(input);
+
+      verify(repositoryService, never()).getCatCommand();
+      verify(readingRepositoryService, times(5)).close();
+    }
+
+    @Test
+    void shouldSkipKnownBinaryFilesWithoutReadingThem() throws IOException {
+      contentTypeCache.put(
+        new BlobKey(REPOSITORY.getId(), "4a5b6c", "config/logo.png"),
+        new ContentTypeCache.DetectedContentType("image/png", false, null, false)
+      );
+
+      tool.execute(input);
+
+      verify(catCommandBuilder, never()).getStream("config/logo.png");
+      verify(contentTypeResolver, never()).resolve(eq("config/logo.png"), any());
+    }
+
+    @Test
+    void shouldLimitLinesPerFile() {
+      input.setInclude(List.of("db.yml"));
+      input.setMaximumLinesPerFile(1);
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [SUCCESS] Read 1 files from `config`.
+          INFO: 1 files have been truncated; use `read-file` to read further lines.
+          ---------------------------------------------------------
+          STATUS: [TRUNCATED] Showing lines 1-1 of `config/sub/db.yml`. The file contains 3 lines in total.
+          ---------------------------------------------------------
+          ```
+          1 | db:
+          ```
+          """);
+    }
+
+    @Test
+    void shouldStopWhenOverallLineLimitIsReached() throws IOException {
+      input.setExclude(List.of("*.png", "empty.yml"));
+      input.setMaximumNumberOfLines(4);
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [TRUNCATED] Read 2 files from `config`.
+          INFO: 1 files have been truncated; use `read-file` to read further lines. 1 further files have not been read, because the maximum number of lines has been reached.
+          ---------------------------------------------------------
+          STATUS: [COMPLETE] Showing all lines 1-2 of `config/app.yml`.
+          ---------------------------------------------------------
+          ```
+          1 | server:
+          2 |   port: 8080
+          ```
+
+          STATUS: [TRUNCATED] Showing lines 1-2 of `config/sub/db.yml`. The file contains 3 lines in total.
+          ---------------------------------------------------------
+          ```
+          1 | db:
+          2 |   url: jdbc:h2
+          ```
+          """);
+      assertThat(result.getStructuredContent().get("maximumExceeded")).isEqualTo(true);
+      verify(catCommandBuilder, never()).getStream("config/logo.png");
+    }
+
+    @Test
+    void shouldNotReadFilesBeyondLineLimit() throws IOException {
+      FileObject[] files = new FileObject[10];
+      for (int i = 0; i < files.length; ++i) {
+        files[i] = createFile("file" + i + ".txt");
+        mockContent("config/file" + i + ".txt", "1\n2\n3\n");
+      }
+      when(browseCommandBuilder.getBrowserResult())
+        .thenReturn(new BrowserResult("4a5b6c", createDirectory("config", files)));
+      input.setMaximumNumberOfLines(3);
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .startsWith("""
+          STATUS: [TRUNCATED] Read 1 files from `config`.
+          INFO: 9 further files have not been read, because the maximum number of lines has been reached.
+          """);
+      verify(catCommandBuilder).getStream("config/file0.txt");
+      verify(catCommandBuilder, never()).getStream("config/file9.txt");
+    }
+
+    @Test
+    void shouldIgnoreEmptyGlobs() {
+      input.setInclude(List.of("", "db.yml"));
+      input.setExclude(List.of(""));
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .startsWith("""
+          STATUS: [SUCCESS] Read 1 files from `config`.
+          ---------------------------------------------------------
+          STATUS: [COMPLETE] Showing all lines 1-3 of `config/sub/db.yml`.
+          """);
+    }
+
+    @Test
+    void shouldLimitNumberOfFiles() {
+      input.setInclude(List.of("config/sub/*"));
+      input.setMaximumNumberOfFiles(1);
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .startsWith("""
+          STATUS: [TRUNCATED] Read 1 files from `config`.
+          INFO: There are more files in this directory; use `include`, `exclude`, or a more specific path to select other files.
+          ---------------------------------------------------------
+          STATUS: [COMPLETE] Showing all lines 1-3 of `config/sub/db.yml`.
+          """);
+    }
+
+    @Test
+    void shouldRejectFiles() {
+      input.setPath("config/app.yml");
+      FileObject file = createFile("app.yml");
+      when(browseCommandBuilder.getBrowserResult())
+        .thenReturn(new BrowserResult("4a5b6c", file));
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.isError()).isTrue();
+      assertThat(result.getMessage())
+        .isEqualTo("The path `config/app.yml` is not a directory; use `read-file` to read it.");
+    }
+  }
+
+  private FileObject createDirectory(String name, FileObject... children) {
+    FileObject directory = new FileObject();
+    directory.setName(name);
+    directory.setDirectory(true);
+    directory.setChildren(List.of(children));
+    return directory;
+  }
+
+  private FileObject createFile(String name) {
+    FileObject file = new FileObject();
+    file.setName(name);
+    return file;
+  }
+
+  private static ContentType createContentType(boolean isText) {
+    ContentType contentType = mock(ContentType.class);
+    lenient().when(contentType.isText()).thenReturn(isText);
+    return contentType;
+  }
+}
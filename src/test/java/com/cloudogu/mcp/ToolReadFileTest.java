@@ -16,6 +16,7 @@
 
 package com.cloudogu.mcp;
 
+import io.modelcontextprotocol.spec.McpSchema;
 import org.github.sdorra.jse.ShiroExtension;
 import org.github.sdorra.jse.SubjectAware;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,19 +26,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.io.ContentType;
 import sonia.scm.io.ContentTypeResolver;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.FileObject;
 import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Person;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.repository.api.BrowseCommandBuilder;
 import sonia.scm.repository.api.CatCommandBuilder;
+import sonia.scm.repository.api.LogCommandBuilder;
 import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Optional;
 
 import static java.util.Optional.empty;
@@ -45,6 +54,11 @@ import static java.util.Optional.of;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith({MockitoExtension.class, ShiroExtension.class})
@@ -57,30 +71,68 @@ class ToolReadFileTest {
   private RepositoryService repositoryService;
   @Mock
   private ContentTypeResolver contentTypeResolver;
+
+  @Spy
+  private ContentHashCache contentHashCache;
+  @Spy
+  private BlobCache blobCache;
+  @Spy
+  private LineRangeCache lineRangeCache;
+  @Spy
+  private ContentTypeCache contentTypeCache;
+  @Mock
+  private PrefetchExecutor prefetchExecutor;
   @InjectMocks
   private ToolReadFile tool;
 
   @Mock(answer = Answers.RETURNS_SELF)
   private CatCommandBuilder catCommandBuilder;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private BrowseCommandBuilder browseCommandBuilder;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private LogCommandBuilder logCommandBuilder;
 
   @Nested
   class WithRepository {
 
     private static final Repository REPOSITORY = RepositoryTestData.createHeartOfGold();
 
+    private final FileObject file = new FileObject();
+
     @BeforeEach
-    void mockRepositoryServiceFactory() {
+    void mockRepositoryServiceFactory() throws IOException {
       when(repositoryServiceFactory.create(new NamespaceAndName(REPOSITORY.getNamespace(), REPOSITORY.getName())))
         .thenReturn(repositoryService);
-      when(repositoryService.getCatCommand())
+      lenient().when(repositoryService.getCatCommand())
         .thenReturn(catCommandBuilder);
       when(repositoryService.getRepository())
         .thenReturn(REPOSITORY);
+      when(repositoryService.getBrowseCommand())
+        .thenReturn(browseCommandBuilder);
+      when(browseCommandBuilder.getBrowserResult())
+        .thenAnswer(invocation -> new BrowserResult("4a5b6c", file));
+    }
+
+    @Test
+    void shouldNotReadDirectory() {
+      file.setDirectory(true);
+
+      ReadFilesInput input = new ReadFilesInput();
+      input.setNamespace("hitchhiker");
+      input.setName("HeartOfGold");
+      input.setPath("src");
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.isError()).isTrue();
+      assertThat(result.getMessage()).isEqualTo("The path `src` is a directory and not a file.");
     }
 
     @Nested
     class WithSimpleContent {
 
+      private static final String CONTENT_HASH = "df6ac69ca1c80d3e4896f3317ee7cab5ea347a37122411f3d4f4beba615df5b9";
+
       private ReadFilesInput input;
 
       @BeforeEach
@@ -107,7 +159,7 @@ class ToolReadFileTest {
         assertThat(result.isError()).isFalse();
         assertThat(result.getContent().get(0)).isEqualTo("""
           STATUS: [COMPLETE] Showing all lines 1-4 of `README.md`.
-          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown.
+          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown. The content hash is `df6ac69ca1c80d3e4896f3317ee7cab5ea347a37122411f3d4f4beba615df5b9`.
           ---------------------------------------------------------
           ```
           1 | # Heart of Gold
@@ -118,6 +170,16 @@ class ToolReadFileTest {
           """);
       }
 
+      @Test
+      void shouldDetectContentTypeOnlyOnce() {
+        tool.execute(input);
+        ToolResult result = tool.execute(input);
+
+        verify(contentTypeResolver).resolve(eq("README.md"), any());
+        assertThat(result.getContent().get(0))
+          .contains("The content type for this file is text/x-web-markdown. The detected language is Markdown.");
+      }
+
       @Test
       void readFileWithLeadingSlash() {
         input.setPath("/README.md");
@@ -137,7 +199,7 @@ class ToolReadFileTest {
         assertThat(result.isError()).isFalse();
         assertThat(result.getContent().get(0)).isEqualTo("""
           STATUS: [TRUNCATED] Showing lines 1-3 of `README.md`. The file contains 4 lines in total.
-          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown.
+          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown. The content hash is `df6ac69ca1c80d3e4896f3317ee7cab5ea347a37122411f3d4f4beba615df5b9`.
           ---------------------------------------------------------
           ```
           1 | # Heart of Gold
@@ -156,7 +218,7 @@ class ToolReadFileTest {
         assertThat(result.isError()).isFalse();
         assertThat(result.getContent().get(0)).isEqualTo("""
           STATUS: [TRUNCATED] Showing lines 2-3 of `README.md`. The file contains 4 lines in total.
-          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown.
+          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown. The content hash is `df6ac69ca1c80d3e4896f3317ee7cab5ea347a37122411f3d4f4beba615df5b9`.
           ---------------------------------------------------------
           ```
           2 |\s
@@ -165,6 +227,72 @@ class ToolReadFileTest {
           """);
       }
 
+      @Test
+      void shouldPrefetchNextRange() {
+        doAnswer(invocation -> {
+          invocation.getArgument(0, Runnable.class).run();
+          return null;
+        }).when(prefetchExecutor).execute(any());
+        when(repositoryServiceFactory.create(REPOSITORY)).thenReturn(repositoryService);
+        input.setLineRange("1-2");
+        input.setPrefetch(true);
+
+        tool.execute(input);
+
+        assertThat(lineRangeCache.get(new BlobKey(REPOSITORY.getId(), "4a5b6c", "README.md"), 3, 4, new LineWindow(1, 1000)))
+          .contains(new LineRangeCache.Lines(List.of("A spacecraft equipped with", "Infinite Improbability Drive."), 4));
+      }
+
+      @Test
+      void shouldNotPrefetchAfterLastRange() {
+        input.setLineRange("3-4");
+        input.setPrefetch(true);
+
+        tool.execute(input);
+
+        verify(prefetchExecutor, never()).execute(any());
+      }
+
+      @Test
+      void shouldNotPrefetchWithoutRequest() {
+        input.setLineRange("1-2");
+
+        tool.execute(input);
+
+        verify(prefetchExecutor, never()).execute(any());
+      }
+
+      @Test
+      void shouldNotPrefetchFilesTooLargeForCache() {
+        file.setLength(BlobCache.MAXIMUM_BLOB_SIZE + 1L);
+        input.setLineRange("1-2");
+        input.setPrefetch(true);
+
+        tool.execute(input);
+
+        verify(prefetchExecutor, never()).execute(any());
+      }
+
+      @Test
+      void shouldUsePrefetchedLines() {
+        BlobKey key = new BlobKey(REPOSITORY.getId(), "4a5b6c", "README.md");
+        contentHashCache.put(key, CONTENT_HASH);
+        lineRangeCache.put(key, 3, 4, new LineWindow(1, 1000), new LineRangeCache.Lines(List.of("prefetched", "lines"), 4));
+        input.setLineRange("3-4");
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0)).isEqualTo("""
+          STATUS: [COMPLETE] Showing all lines 3-4 of `README.md`.
+          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown. The content hash is `df6ac69ca1c80d3e4896f3317ee7cab5ea347a37122411f3d4f4beba615df5b9`.
+          ---------------------------------------------------------
+          ```
+          3 | prefetched
+          4 | lines
+          ```
+          """);
+      }
+
       @Test
       void readEndOfFile() {
         input.setLineRange("2-5");
@@ -174,7 +302,7 @@ class ToolReadFileTest {
         assertThat(result.isError()).isFalse();
         assertThat(result.getContent().get(0)).isEqualTo("""
           STATUS: [COMPLETE] Showing all lines 2-4 of `README.md`.
-          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown.
+          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown. The content hash is `df6ac69ca1c80d3e4896f3317ee7cab5ea347a37122411f3d4f4beba615df5b9`.
           ---------------------------------------------------------
           ```
           2 |\s
@@ -193,7 +321,7 @@ class ToolReadFileTest {
         assertThat(result.isError()).isFalse();
         assertThat(result.getContent().get(0)).isEqualTo("""
           STATUS: [COMPLETE] Showing all lines 1-4 of `README.md`.
-          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown.
+          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown. The content hash is `df6ac69ca1c80d3e4896f3317ee7cab5ea347a37122411f3d4f4beba615df5b9`.
           ---------------------------------------------------------
           ```
           1 | # Heart of Gold
@@ -204,6 +332,153 @@ class ToolReadFileTest {
           """);
       }
 
+      @Test
+      void readTailOfFile() {
+        input.setTailLines(2);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.isError()).isFalse();
+        assertThat(result.getContent().get(0)).isEqualTo("""
+          STATUS: [TRUNCATED] Showing lines 3-4 of `README.md`. The file contains 4 lines in total.
+          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown. The content hash is `df6ac69ca1c80d3e4896f3317ee7cab5ea347a37122411f3d4f4beba615df5b9`.
+          ---------------------------------------------------------
+          ```
+          3 | A spacecraft equipped with
+          4 | Infinite Improbability Drive.
+          ```
+          """);
+      }
+
+      @Test
+      void readTailOfKnownFileWithLineNumbersFromEnd() {
+        contentHashCache.put(new BlobKey(REPOSITORY.getId(), "4a5b6c", "README.md"), CONTENT_HASH);
+        input.setTailLines(2);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0)).isEqualTo("""
+          STATUS: [TRUNCATED] Showing the last 2 lines of `README.md`. The lines are numbered from the end of the file, so that the last line has the number -1.
+          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown. The content hash is `df6ac69ca1c80d3e4896f3317ee7cab5ea347a37122411f3d4f4beba615df5b9`.
+          ---------------------------------------------------------
+          ```
+          -2 | A spacecraft equipped with
+          -1 | Infinite Improbability Drive.
+          ```
+          """);
+      }
+
+      @Test
+      void readTailLargerThanFile() {
+        input.setTailLines(10);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.isError()).isFalse();
+        assertThat(result.getContent().get(0)).startsWith("""
+          STATUS: [COMPLETE] Showing all lines 1-4 of `README.md`.
+          """);
+      }
+
+      @Test
+      void shouldReturnContentHash() {
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getStructuredContent()).containsEntry("contentHash", CONTENT_HASH);
+      }
+
+      @Test
+      void shouldReadWithRevisionFromLookup() throws IOException {
+        input.setRevision("main");
+
+        tool.execute(input);
+
+        verify(browseCommandBuilder).setRevision("main");
+        verify(browseCommandBuilder).setPath("README.md");
+        verify(catCommandBuilder).setRevision("4a5b6c");
+      }
+
+      @Test
+      void shouldResolveRevisionIfLookupHasNone() throws IOException {
+        when(browseCommandBuilder.getBrowserResult())
+          .thenAnswer(invocation -> new BrowserResult(null, file));
+        when(repositoryService.getLogCommand())
+          .thenReturn(logCommandBuilder);
+        when(logCommandBuilder.getChangeset("main"))
+          .thenReturn(new Changeset("4a5b6c", 1700000000000L, new Person("Arthur Dent")));
+        input.setRevision("main");
+
+        tool.execute(input);
+
+        verify(catCommandBuilder).setRevision("4a5b6c");
+        assertThat(contentHashCache.get(new BlobKey(REPOSITORY.getId(), "4a5b6c", "README.md"))).contains(CONTENT_HASH);
+      }
+
+      @Test
+      void shouldNotCacheContentOfUnresolvedRevision() throws IOException {
+        when(browseCommandBuilder.getBrowserResult())
+          .thenAnswer(invocation -> new BrowserResult(null, file));
+        when(repositoryService.getLogCommand())
+          .thenReturn(logCommandBuilder);
+        input.setRevision("main");
+        input.setLineRange("1-2");
+        input.setPrefetch(true);
+
+        tool.execute(input);
+        input.setIfNoneMatch(CONTENT_HASH);
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0)).startsWith("STATUS: [UNCHANGED]");
+        verify(catCommandBuilder, times(4)).getStream("README.md");
+        verify(contentHashCache, never()).put(any(), any());
+        verify(contentTypeCache, never()).put(any(), any());
+        assertThat(blobCache.getStatistics().requestCount()).isZero();
+        verify(prefetchExecutor, never()).execute(any());
+      }
+
+      @Test
+      void shouldReturnUnchangedWithoutReadingContentAgain() throws IOException {
+        tool.execute(input);
+        input.setIfNoneMatch(CONTENT_HASH);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0)).isEqualTo("""
+          STATUS: [UNCHANGED] The content of `README.md` has not changed and still has the content hash `%s`.
+          """.formatted(CONTENT_HASH));
+        verify(catCommandBuilder).getStream("README.md");
+      }
+
+      @Test
+      void shouldReturnUnchangedForUnknownContent() {
+        input.setIfNoneMatch(CONTENT_HASH);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0)).startsWith("STATUS: [UNCHANGED]");
+      }
+
+      @Test
+      void shouldReturnContentIfHashDiffers() {
+        input.setIfNoneMatch("42");
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0)).startsWith("STATUS: [COMPLETE]");
+      }
+
+      @Test
+      void readWithWindowForLongLines() {
+        input.setLineRange("1-1");
+        input.setStartColumn(3);
+        input.setMaxLineLength(5);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0))
+          .contains("1 | …[2 chars omitted]Heart…[8 chars omitted]\n");
+      }
+
       @Test
       void readOutOfBounds() {
         input.setLineRange("6-10");
@@ -213,7 +488,7 @@ class ToolReadFileTest {
         assertThat(result.isError()).isFalse();
         assertThat(result.getContent().get(0)).isEqualTo("""
           STATUS: [EMPTY] Range outside of file bounds of `README.md`.
-          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown.
+          INFO: The content type for this file is text/x-web-markdown. The detected language is Markdown. The content hash is `df6ac69ca1c80d3e4896f3317ee7cab5ea347a37122411f3d4f4beba615df5b9`.
           """);
       }
     }
@@ -257,8 +532,91 @@ class ToolReadFileTest {
       assertThat(result.isError()).isFalse();
       assertThat(result.getContent().get(0)).isEqualTo("""
         STATUS: [BINARY FILE] The file `jars/commons.jar` has binary content and cannot be displayed as text.
-        INFO: The detected content type of this file is `application/java-archive`.
+        INFO: The detected content type of this file is `application/java-archive`. Use `byteOffset` and `byteLength` to read a range of bytes as base64 encoded resource.
         """);
+      assertThat(result.getAdditionalContent()).isEmpty();
+    }
+
+    @Nested
+    class WithBinaryContent {
+
+      private final byte[] content = new byte[]{0x50, 0x4b, 0x03, 0x04, 0x14, 0x00, 0x08, 0x00, 0x00, 0x00};
+
+      private ReadFilesInput input;
+
+      @BeforeEach
+      void mockContent() throws IOException {
+        when(catCommandBuilder.getStream("images/logo.png"))
+          .thenAnswer(x -> new ByteArrayInputStream(content));
+        when(contentTypeResolver.resolve(eq("images/logo.png"), any()))
+          .thenReturn(createContentType("image/png", false, empty()));
+
+        input = new ReadFilesInput();
+        input.setNamespace("hitchhiker");
+        input.setName("HeartOfGold");
+        input.setPath("images/logo.png");
+      }
+
+      @Test
+      void shouldReadRangeAsEmbeddedResource() {
+        input.setByteOffset(2L);
+        input.setByteLength(4);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.isError()).isFalse();
+        assertThat(result.getContent().get(0)).isEqualTo("""
+          STATUS: [BINARY RANGE TRUNCATED] Read 4 bytes of `images/logo.png` starting at offset 2. The bytes are attached as embedded resource `scm://hitchhiker/HeartOfGold/4a5b6c/images/logo.png`.
+          INFO: The detected content type of this file is `image/png`. There are more bytes available; to read them, use `byteOffset` 6.
+          """);
+        assertThat(result.getStructuredContent())
+          .containsEntry("byteOffset", 2L)
+          .containsEntry("byteLength", 4)
+          .containsEntry("moreAvailable", true);
+        assertThat(result.getAdditionalContent())
+          .singleElement()
+          .isInstanceOfSatisfying(McpSchema.EmbeddedResource.class, resource -> {
+            McpSchema.BlobResourceContents blob = (McpSchema.BlobResourceContents) resource.resource();
+            assertThat(blob.uri()).isEqualTo("scm://hitchhiker/HeartOfGold/4a5b6c/images/logo.png");
+            assertThat(blob.mimeType()).isEqualTo("image/png");
+            assertThat(blob.blob()).isEqualTo("AwQUAA==");
+          });
+      }
+
+      @Test
+      void shouldReadUpToEndOfFile() {
+        input.setByteOffset(8L);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.getContent().get(0)).isEqualTo("""
+          STATUS: [BINARY RANGE COMPLETE] Read 2 bytes of `images/logo.png` starting at offset 8. The bytes are attached as embedded resource `scm://hitchhiker/HeartOfGold/4a5b6c/images/logo.png`.
+          INFO: The detected content type of this file is `image/png`. The file has 10 bytes.
+          """);
+        assertThat(result.getAdditionalContent()).hasSize(1);
+      }
+
+      @Test
+      void shouldNotCacheFilesKnownToBeLarge() {
+        file.setLength(BlobCache.MAXIMUM_BLOB_SIZE + 1L);
+        input.setByteOffset(2L);
+        input.setByteLength(4);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.isError()).isFalse();
+        assertThat(blobCache.getStatistics().requestCount()).isZero();
+      }
+
+      @Test
+      void shouldFailForOffsetBehindEndOfFile() {
+        input.setByteOffset(42L);
+
+        ToolResult result = tool.execute(input);
+
+        assertThat(result.isError()).isTrue();
+        assertThat(result.getMessage()).isEqualTo("The offset 42 is beyond the end of the file `images/logo.png`.");
+      }
     }
   }
 
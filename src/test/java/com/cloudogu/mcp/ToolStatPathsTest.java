@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.mcp;
+
+import org.github.sdorra.jse.ShiroExtension;
+import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.NotFoundException;
+import sonia.scm.io.ContentType;
+import sonia.scm.io.ContentTypeResolver;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.repository.api.BrowseCommandBuilder;
+import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+
+@ExtendWith({MockitoExtension.class, ShiroExtension.class})
+@SubjectAware(value = "trillian", permissions = "*")
+class ToolStatPathsTest {
+
+  @Mock
+  private RepositoryServiceFactory repositoryServiceFactory;
+  @Mock
+  private RepositoryService repositoryService;
+  @Mock
+  private ContentTypeResolver contentTypeResolver;
+  @Spy
+  private BrowseTreeCache browseTreeCache;
+  @Spy
+  private ContentHashCache contentHashCache;
+  @Spy
+  private ContentTypeCache contentTypeCache;
+
+  @InjectMocks
+  private ToolStatPaths tool;
+
+  @Mock(answer = Answers.RETURNS_SELF)
+  private BrowseCommandBuilder browseCommandBuilder;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private LogCommandBuilder logCommandBuilder;
+
+  @Nested
+  class WithRepository {
+
+    private static final Repository REPOSITORY = RepositoryTestData.createHeartOfGold();
+    private final StatPathsInput input = new StatPathsInput();
+
+    @BeforeEach
+    void mockRepository() throws IOException {
+      when(repositoryServiceFactory.create(new NamespaceAndName(REPOSITORY.getNamespace(), REPOSITORY.getName())))
+        .thenReturn(repositoryService);
+      when(repositoryService.getRepository())
+        .thenReturn(REPOSITORY);
+      when(repositoryService.getLogCommand())
+        .thenReturn(logCommandBuilder);
+      Changeset changeset = new Changeset();
+      changeset.setId("4a5b6c");
+      when(logCommandBuilder.getChangeset("main"))
+        .thenReturn(changeset);
+      lenient().when(repositoryService.getBrowseCommand())
+        .thenReturn(browseCommandBuilder);
+      ContentType contentType = mock(ContentType.class);
+      lenient().when(contentType.getRaw()).thenReturn("text/x-java");
+      lenient().when(contentTypeResolver.resolve(anyString())).thenReturn(contentType);
+
+      input.setNamespace(REPOSITORY.getNamespace());
+      input.setName(REPOSITORY.getName());
+      input.setRevision("main");
+    }
+
+    /**
+     * Answers browse commands with the requested part of the tree or fails like the backend, if it does not exist.
+     */
+    private void mockBrowseCommand(FileObject root) throws IOException {
+      AtomicReference<String> path = new AtomicReference<>("/");
+      when(browseCommandBuilder.setPath(anyString()))
+        .thenAnswer(invocation -> {
+          path.set(invocation.getArgument(0));
+          return browseCommandBuilder;
+        });
+      when(browseCommandBuilder.getBrowserResult())
+        .thenAnswer(invocation -> new BrowserResult(
+          "4a5b6c",
+          BrowseTreeCache.findChild(root, RepositoryTree.normalize(path.get()))
+            .orElseThrow(() -> notFound(entity("Path", path.get()).in(REPOSITORY.getNamespaceAndName())))
+        ));
+    }
+
+    @Test
+    void shouldCheckPathsOfSameDirectoryWithSingleListing() throws IOException {
+      mockBrowseCommand(createDirectory("",
+        createDirectory("src",
+          createDirectory("main", createFile("Main.java", 42)),
+          createDirectory("test", createFile("MainTest.java", 23))
+        )
+      ));
+      contentHashCache.put(new BlobKey(REPOSITORY.getId(), "4a5b6c", "src/main/Main.java"), "abc");
+      input.setPaths(List.of("/src/main/Main.java", "src/test/MainTest.java", "src/test", "src/test/Other.java"));
+
+      ToolResult result = tool.execute(input);
+
+      verify(browseCommandBuilder).setPath("src/test");
+      verify(browseCommandBuilder).setPath("src/main/Main.java");
+      verify(browseCommandBuilder, never()).setPath("src");
+      verify(browseCommandBuilder, never()).setRecursive(true);
+      verify(browseCommandBuilder, times(2)).setRevision("4a5b6c");
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [SUCCESS] Checked 4 paths, 3 of them exist.
+          ---------------------------------------------------------
+          Path | Type | Size | Content Type | Content Hash
+          ---|---|---|---|---
+          src/main/Main.java | file | 42 | text/x-java | abc
+          src/test/MainTest.java | file | 23 | text/x-java | -
+          src/test | directory | - | - | -
+          src/test/Other.java | missing | - | - | -
+          """);
+      assertThat(result.getStructuredContent().get("src/main/Main.java"))
+        .isEqualTo(Map.of("type", "file", "size", 42L, "contentType", "text/x-java", "contentHash", "abc"));
+    }
+
+    @Test
+    void shouldUseContentTypeDetectedBefore() throws IOException {
+      mockBrowseCommand(createDirectory("", createFile("run", 42)));
+      contentTypeCache.put(
+        new BlobKey(REPOSITORY.getId(), "4a5b6c", "run"),
+        new ContentTypeCache.DetectedContentType("text/x-shellscript", true, "Shell", false)
+      );
+      input.setPaths(List.of("run"));
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .contains("run | file | 42 | text/x-shellscript | -");
+    }
+
+    @Test
+    void shouldUseCachedTree() throws IOException {
+      mockBrowseCommand(createDirectory("", createFile("README.md", 42)));
+      input.setPaths(List.of("README.md"));
+
+      tool.execute(input);
+      tool.execute(input);
+
+      verify(browseCommandBuilder).getBrowserResult();
+    }
+
+    @Test
+    void shouldMarkPathsInMissingDirectoryAsMissing() throws IOException {
+      when(browseCommandBuilder.getBrowserResult())
+        .thenThrow(NotFoundException.class);
+      input.setPaths(List.of("docs/index.md", "docs/guide.md"));
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.getContent().get(0))
+        .isEqualTo("""
+          STATUS: [SUCCESS] Checked 2 paths, 0 of them exist.
+          ---------------------------------------------------------
+          Path | Type | Size | Content Type | Content Hash
+          ---|---|---|---|---
+          docs/index.md | missing | - | - | -
+          docs/guide.md | missing | - | - | -
+          """);
+    }
+
+    @Test
+    void shouldLookUpPathsMissingInTruncatedListingOneByOne() throws IOException {
+      FileObject src = createDirectory("src", createFile("A.java", 42));
+      src.setTruncated(true);
+      mockBrowseCommand(createDirectory("", src));
+      input.setPaths(List.of("src/A.java", "src/B.java"));
+
+      ToolResult result = tool.execute(input);
+
+      verify(browseCommandBuilder).setPath("src");
+      verify(browseCommandBuilder).setPath("src/B.java");
+      verify(browseCommandBuilder, never()).setPath("src/A.java");
+      assertThat(result.getContent().get(0))
+        .contains("src/A.java | file | 42 | text/x-java | -")
+        .contains("src/B.java | missing | - | - | -");
+    }
+
+    @Test
+    void shouldFailForUnknownRevision() {
+      when(logCommandBuilder.getChangeset("main"))
+        .thenReturn(null);
+      input.setPaths(List.of("README.md"));
+
+      ToolResult result = tool.execute(input);
+
+      assertThat(result.isError()).isTrue();
+      assertThat(result.getMessage()).isEqualTo("The revision `main` could not be found.");
+      verify(browseCommandBuilder, never()).getBrowserResult();
+    }
+  }
+
+  private FileObject createDirectory(String name, FileObject... children) {
+    FileObject directory = new FileObject();
+    directory.setName(name);
+    directory.setDirectory(true);
+    directory.setChildren(List.of(children));
+    return directory;
+  }
+
+  private FileObject createFile(String name, long length) {
+    FileObject file = new FileObject();
+    file.setName(name);
+    file.setLength(length);
+    return file;
+  }
+}